@@ -3,6 +3,8 @@ package com.learn.aiintelligenttourism.Model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.util.Map;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 public record TravelRequirements(
     String destination, // 目的地
@@ -15,4 +17,23 @@ public record TravelRequirements(
         return destination == null || destination.isBlank() || 
                travelDate == null || travelDate.isBlank();
     }
+
+    // 辅助方法：从 Graph 状态中还原（Checkpoint 持久化后可能被反序列化为 Map）
+    public static TravelRequirements from(Object value) {
+        if (value instanceof TravelRequirements requirements) {
+            return requirements;
+        }
+        if (value instanceof Map<?, ?> map) {
+            return new TravelRequirements(
+                    stringOf(map.get("destination")),
+                    stringOf(map.get("travelDate")),
+                    stringOf(map.get("budget")),
+                    stringOf(map.get("preference")));
+        }
+        return null;
+    }
+
+    private static String stringOf(Object value) {
+        return value == null ? null : value.toString();
+    }
 }
\ No newline at end of file
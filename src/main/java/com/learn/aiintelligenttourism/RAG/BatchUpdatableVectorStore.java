@@ -0,0 +1,18 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.List;
+
+/**
+ * 支持原子批量更新的向量库
+ * 检索要么看到更新前的全部文档，要么看到更新后的全部文档，不会看到只新增了一半、或新旧版本同时存在的中间状态
+ */
+public interface BatchUpdatableVectorStore extends VectorStore {
+
+    /**
+     * 在一次原子替换中新增 toAdd、删除 toDelete（按文档 ID）
+     */
+    void update(List<Document> toAdd, List<String> toDelete);
+}
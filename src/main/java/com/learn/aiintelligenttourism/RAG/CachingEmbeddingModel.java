@@ -0,0 +1,94 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 带缓存的 EmbeddingModel（装饰器）
+ * 按规范化后的文本缓存向量，同一个问题（如“京都避坑”）只调用一次 Embedding 接口；
+ * 文档入库（embed(Document) 以及 VectorStore 使用的批量 embed）直接交给原模型，不进缓存，避免大段正文挤占查询的缓存空间
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final Cache<String, float[]> cache;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, long maximumSize) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions().stream()
+                .map(CachingEmbeddingModel::normalize)
+                .toList();
+        float[][] vectors = new float[texts.size()][];
+        List<String> misses = new ArrayList<>();
+        List<Integer> missIndexes = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            vectors[i] = cache.getIfPresent(texts.get(i));
+            if (vectors[i] == null) {
+                misses.add(texts.get(i));
+                missIndexes.add(i);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            // 只为未命中的文本调用模型（缓存按文本区分，同一应用只使用一个 Embedding 模型）
+            List<Embedding> computed = delegate.call(new EmbeddingRequest(misses, request.getOptions())).getResults();
+            for (int i = 0; i < computed.size(); i++) {
+                float[] vector = computed.get(i).getOutput();
+                vectors[missIndexes.get(i)] = vector;
+                cache.put(misses.get(i), vector);
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        return delegate.embed(documents, options, batchingStrategy);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    public void bindMetrics(MeterRegistry meterRegistry, String cacheName) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, cacheName);
+    }
+
+    /**
+     * 去掉首尾空白并合并连续空白
+     */
+    static String normalize(String text) {
+        return text == null ? "" : text.strip().replaceAll("\\s+", " ");
+    }
+}
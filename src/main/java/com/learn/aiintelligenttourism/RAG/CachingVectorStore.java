@@ -0,0 +1,123 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 带检索结果缓存的 VectorStore（装饰器）
+ * 结果按 规范化查询 + topK + 相似度阈值 + 过滤条件 缓存；
+ * 通过本装饰器写入或删除文档（重新入库）时清空全部缓存，另有写入后过期兜底（库被其他进程修改的情况）
+ */
+@Slf4j
+public class CachingVectorStore implements BatchUpdatableVectorStore {
+
+    private final VectorStore delegate;
+    private final Cache<SearchKey, List<Document>> cache;
+
+    public CachingVectorStore(VectorStore delegate, long maximumSize, Duration expireAfterWrite) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        SearchKey key = new SearchKey(
+                CachingEmbeddingModel.normalize(request.getQuery()),
+                request.getTopK(),
+                request.getSimilarityThreshold(),
+                request.getFilterExpression());
+        return cache.get(key, k -> List.copyOf(delegate.similaritySearch(request)));
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        try {
+            delegate.add(documents);
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        try {
+            delegate.delete(idList);
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        try {
+            delegate.delete(filterExpression);
+        } finally {
+            invalidate();
+        }
+    }
+
+    /**
+     * 被装饰的向量库支持原子批量更新时直接委托，否则退化为先新增再删除
+     */
+    @Override
+    public void update(List<Document> toAdd, List<String> toDelete) {
+        try {
+            if (delegate instanceof BatchUpdatableVectorStore batchUpdatable) {
+                batchUpdatable.update(toAdd, toDelete);
+            } else {
+                if (!toAdd.isEmpty()) {
+                    delegate.add(toAdd);
+                }
+                if (!toDelete.isEmpty()) {
+                    delegate.delete(toDelete);
+                }
+            }
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public <T> Optional<T> getNativeClient() {
+        return delegate.getNativeClient();
+    }
+
+    /**
+     * 文档变更后清空检索结果缓存
+     */
+    public void invalidate() {
+        log.info("知识库文档已变更，清空检索结果缓存（{} 条）", cache.estimatedSize());
+        cache.invalidateAll();
+    }
+
+    public VectorStore getDelegate() {
+        return delegate;
+    }
+
+    public void bindMetrics(MeterRegistry meterRegistry, String cacheName) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, cacheName);
+    }
+
+    private record SearchKey(String query, int topK, double similarityThreshold, Filter.Expression filterExpression) {
+    }
+}
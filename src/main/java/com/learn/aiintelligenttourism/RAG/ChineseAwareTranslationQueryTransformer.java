@@ -0,0 +1,96 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+
+/**
+ * 只在需要时才翻译的查询转换器
+ * 先用本地的文字系统检测判断查询是否已经是中文，是则直接跳过大模型翻译；
+ * 需要翻译的结果按查询文本缓存。指标 tourism.rag.translation（outcome=skipped/cached/translated）
+ */
+@Slf4j
+public class ChineseAwareTranslationQueryTransformer implements QueryTransformer {
+
+    // 汉字占比达到该值即视为中文
+    private static final double CHINESE_RATIO = 0.5;
+
+    private final QueryTransformer translator;
+    private final Cache<String, String> translations;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * translations 可由多个实例共享，缓存指标由创建方注册（同一个缓存名只能注册一次）
+     */
+    public ChineseAwareTranslationQueryTransformer(QueryTransformer translator, Cache<String, String> translations,
+                                                   MeterRegistry meterRegistry) {
+        this.translator = translator;
+        this.translations = translations;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Query transform(Query query) {
+        String text = query.text();
+        if (isChinese(text)) {
+            record("skipped");
+            return query;
+        }
+
+        String key = CachingEmbeddingModel.normalize(text);
+        String cached = translations.getIfPresent(key);
+        if (cached != null) {
+            record("cached");
+            return query.mutate().text(cached).build();
+        }
+
+        Query translated = translator.transform(query);
+        translations.put(key, translated.text());
+        record("translated");
+        log.debug("查询已翻译: {} -> {}", text, translated.text());
+        return translated;
+    }
+
+    /**
+     * 按文字系统判断是否为中文：汉字逐字计数，拉丁字母按单词计数（“去Tokyo玩”仍是中文）；
+     * 出现假名视为日文，没有任何文字（纯数字、符号）时无需翻译
+     */
+    static boolean isChinese(String text) {
+        int han = 0;
+        int foreign = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+            boolean letter = Character.isLetter(codePoint);
+            if (script == Character.UnicodeScript.HIRAGANA || script == Character.UnicodeScript.KATAKANA) {
+                return false;
+            }
+            if (script == Character.UnicodeScript.HAN) {
+                han++;
+                inWord = false;
+            } else if (script == Character.UnicodeScript.LATIN && letter) {
+                if (!inWord) {
+                    foreign++;
+                    inWord = true;
+                }
+            } else if (letter) {
+                foreign++;
+                inWord = false;
+            } else {
+                inWord = false;
+            }
+        }
+        if (han + foreign == 0) {
+            return true;
+        }
+        return (double) han / (han + foreign) >= CHINESE_RATIO;
+    }
+
+    private void record(String outcome) {
+        meterRegistry.counter("tourism.rag.translation", "outcome", outcome).increment();
+    }
+}
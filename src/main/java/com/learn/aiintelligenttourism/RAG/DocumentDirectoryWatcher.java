@@ -0,0 +1,125 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * 外部文档目录监听（知识库热更新）
+ * 监听 tourism.rag.documents.external-dir 下 *.md 的新增、修改、删除，
+ * 事件在 debounce 时间内合并为一次增量入库；入库期间检索继续使用旧的索引快照，直到新快照原子替换
+ */
+@Slf4j
+@Component
+public class DocumentDirectoryWatcher {
+
+    private final TourismAppDocumentReader tourismAppDocumentReader;
+    private final DocumentIngestionService documentIngestionService;
+    private final Duration debounce;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "knowledge-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private WatchService watchService;
+    private Thread watchThread;
+    private ScheduledFuture<?> pendingReload;
+
+    public DocumentDirectoryWatcher(TourismAppDocumentReader tourismAppDocumentReader,
+                                    DocumentIngestionService documentIngestionService,
+                                    @Value("${tourism.rag.documents.debounce:2s}") Duration debounce) {
+        this.tourismAppDocumentReader = tourismAppDocumentReader;
+        this.documentIngestionService = documentIngestionService;
+        this.debounce = debounce;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path directory = tourismAppDocumentReader.externalDirectory();
+        if (directory == null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        watchThread = new Thread(this::watch, "knowledge-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        log.info("开始监听外部文档目录: {}", directory);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // OVERFLOW 表示事件丢失，保守起见也触发一次入库
+                    if (event.kind() == OVERFLOW || event.context().toString().endsWith(".md")) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    scheduleReload();
+                }
+                if (!key.reset()) {
+                    log.warn("外部文档目录已不可访问，停止监听");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 应用关闭
+        }
+    }
+
+    /**
+     * debounce：连续的文件事件（编辑器保存、批量拷贝）只在最后一次事件之后触发一次入库
+     */
+    private synchronized void scheduleReload() {
+        if (pendingReload != null) {
+            pendingReload.cancel(false);
+        }
+        pendingReload = scheduler.schedule(this::reload, debounce.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void reload() {
+        try {
+            IngestionReport report = documentIngestionService.ingest();
+            log.info("外部文档变更，知识库已增量更新：{}", report);
+        } catch (RuntimeException e) {
+            log.error("外部文档变更后入库失败", e);
+        }
+    }
+}
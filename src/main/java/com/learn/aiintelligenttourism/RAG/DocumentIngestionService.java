@@ -0,0 +1,314 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * 增量文档入库
+ * 每个文档片段按 正文 + 元数据 计算 SHA-256，文档 ID 由哈希确定性生成；
+ * 清单（manifest）记录 哈希 -> 文档 ID，只有新增或内容变化的片段才会 Embedding 并写入，
+ * 源文件中已不存在的片段从向量库删除。
+ * 向量库是进程内实现（HNSW）时每次启动都是空库，清单只保存在内存中，启动时总是入库；
+ * 外部向量库（pgvector）默认不在启动时入库（tourism.rag.ingestion.on-startup），避免首次部署时与已有数据重复；
+ * 内存映射快照向量库（{@link MappedSnapshotVectorStore}）的清单取自快照本身；
+ * 向量库支持原子批量更新（{@link BatchUpdatableVectorStore}）时新增与删除一次性替换，检索不会看到中间状态。
+ * 每次入库后用当前全部片段重建 BM25 关键词索引（{@link KeywordIndex}，与向量库使用相同的文档 ID）和地名表（{@link LocationFilterResolver}），
+ * 有片段新增或删除时发布 {@link KnowledgeBaseChangedEvent}。
+ * Embedding 与分批写入由 {@link IngestionExecutor} 并发执行（有限的进行中请求数、每批独立重试）
+ */
+@Slf4j
+@Service
+public class DocumentIngestionService implements ApplicationRunner {
+
+    public static final String CONTENT_HASH = "content_hash";
+
+    private final VectorStore vectorStore;
+    private final TourismAppDocumentReader tourismAppDocumentReader;
+    private final KeywordIndex keywordIndex;
+    private final LocationFilterResolver locationFilterResolver;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IngestionExecutor ingestionExecutor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path manifestPath;
+    private final boolean persistentManifest;
+    private final boolean onStartup;
+
+    // 内存中的清单：内容哈希 -> 文档 ID
+    private Map<String, String> manifest;
+    // 上次入库的片段：内容哈希 -> 片段，用于找回被删除片段的元数据
+    private Map<String, Document> lastChunks = Map.of();
+
+    public DocumentIngestionService(VectorStore vectorStore,
+                                    TourismAppDocumentReader tourismAppDocumentReader,
+                                    KeywordIndex keywordIndex,
+                                    LocationFilterResolver locationFilterResolver,
+                                    ApplicationEventPublisher eventPublisher,
+                                    IngestionExecutor ingestionExecutor,
+                                    @Value("${tourism.rag.ingestion.manifest:data/ingestion-manifest.json}") String manifestPath,
+                                    @Value("${tourism.rag.ingestion.on-startup:false}") boolean onStartup) {
+        this.vectorStore = vectorStore;
+        this.tourismAppDocumentReader = tourismAppDocumentReader;
+        this.keywordIndex = keywordIndex;
+        this.locationFilterResolver = locationFilterResolver;
+        this.eventPublisher = eventPublisher;
+        this.ingestionExecutor = ingestionExecutor;
+        this.manifestPath = Path.of(manifestPath);
+        this.persistentManifest = !isInProcess(vectorStore);
+        // 进程内向量库启动时为空（或清单取自快照），入库不会产生重复数据
+        this.onStartup = onStartup || !persistentManifest;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // 内存映射快照在后台校验失败时，入库清单（取自快照）已不可信，重新全量入库写出新快照
+        if (unwrap(vectorStore) instanceof MappedSnapshotVectorStore mapped) {
+            mapped.onCorrupted(() -> Thread.ofVirtual().name("snapshot-rebuild").start(this::rebuildCorruptedSnapshot));
+        }
+        if (onStartup) {
+            IngestionReport report = ingest();
+            log.info("知识库入库完成：{}", report);
+        } else {
+            // 不入库向量库时关键词索引和地名表仍需构建（不调用 Embedding）
+            rebuildIndexes(List.copyOf(loadChunks().values()));
+        }
+    }
+
+    /**
+     * 读取全部知识库文档（classpath 下的 document/*.md 以及外部文档目录）并增量入库
+     * 文档读取失败时直接抛出异常，向量库和清单都不变，避免把读取失败的文档当作已删除
+     */
+    public synchronized IngestionReport ingest() {
+        long start = System.nanoTime();
+        Map<String, Document> current = loadChunks();
+        // 关键词索引只依赖原文，先于向量库更新，向量库写入失败时关键词检索仍能回答
+        rebuildIndexes(List.copyOf(current.values()));
+
+        Map<String, String> previous = loadManifest();
+        List<Document> toAdd = current.entrySet().stream()
+                .filter(entry -> !previous.containsKey(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .toList();
+        List<String> staleHashes = previous.keySet().stream()
+                .filter(hash -> !current.containsKey(hash))
+                .toList();
+
+        Map<String, String> next = new HashMap<>(previous);
+        ingestionExecutor.begin(toAdd.size());
+        IngestionReport report = unwrap(vectorStore) instanceof BatchUpdatableVectorStore
+                && vectorStore instanceof BatchUpdatableVectorStore batchUpdatable
+                ? updateAtomically(batchUpdatable, current.size(), toAdd, staleHashes, previous, next, start)
+                : updateInBatches(current.size(), toAdd, staleHashes, previous, next, start);
+
+        if (report.added() > 0 || report.deleted() > 0) {
+            publishChanged(toAdd, staleHashes);
+        }
+        lastChunks = current;
+        return report;
+    }
+
+    private void rebuildCorruptedSnapshot() {
+        try {
+            IngestionReport report = ingest();
+            log.info("向量快照校验失败后重新入库完成：{}", report);
+        } catch (RuntimeException e) {
+            log.error("向量快照校验失败后重新入库失败", e);
+        }
+    }
+
+    /**
+     * 变更的片段：新增的片段 + 上次入库时记录的被删除片段
+     */
+    private void publishChanged(List<Document> added, List<String> staleHashes) {
+        List<Document> changed = new ArrayList<>(added);
+        boolean complete = true;
+        for (String hash : staleHashes) {
+            Document removed = lastChunks.get(hash);
+            if (removed == null) {
+                complete = false;
+            } else {
+                changed.add(removed);
+            }
+        }
+        eventPublisher.publishEvent(new KnowledgeBaseChangedEvent(changed, complete));
+    }
+
+    /**
+     * 分批并行写入，全部写入成功后再删除过期片段
+     */
+    private IngestionReport updateInBatches(int total, List<Document> toAdd, List<String> staleHashes,
+                                            Map<String, String> previous, Map<String, String> next, long start) {
+        int failed = addInBatches(toAdd, next);
+
+        int deleted = 0;
+        if (failed == 0 && !staleHashes.isEmpty()) {
+            // 新内容全部写入成功后才删除旧片段，避免文档更新失败时知识库出现空档
+            List<String> staleIds = staleHashes.stream().map(previous::get).toList();
+            vectorStore.delete(staleIds);
+            staleHashes.forEach(next::remove);
+            deleted = staleIds.size();
+        }
+        saveManifest(next);
+
+        int added = toAdd.size() - failed;
+        return new IngestionReport(total, added, total - toAdd.size(), deleted, failed,
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private void rebuildIndexes(List<Document> chunks) {
+        keywordIndex.rebuild(chunks);
+        locationFilterResolver.rebuild(chunks);
+    }
+
+    /**
+     * 读取全部片段并生成内容 ID，按内容哈希去重
+     */
+    private Map<String, Document> loadChunks() {
+        Map<String, Document> chunks = new LinkedHashMap<>();
+        for (Document chunk : tourismAppDocumentReader.loadMarkdowns()) {
+            Document identified = withContentId(chunk);
+            chunks.putIfAbsent((String) identified.getMetadata().get(CONTENT_HASH), identified);
+        }
+        return chunks;
+    }
+
+    /**
+     * 新增与删除在一次原子替换中完成，失败时整批下次重试
+     */
+    private IngestionReport updateAtomically(BatchUpdatableVectorStore store, int total, List<Document> toAdd,
+                                             List<String> staleHashes, Map<String, String> previous,
+                                             Map<String, String> next, long start) {
+        int added = 0;
+        int deleted = 0;
+        int failed = 0;
+        if (!toAdd.isEmpty() || !staleHashes.isEmpty()) {
+            try {
+                store.update(toAdd, staleHashes.stream().map(previous::get).toList());
+                toAdd.forEach(document -> next.put((String) document.getMetadata().get(CONTENT_HASH), document.getId()));
+                staleHashes.forEach(next::remove);
+                added = toAdd.size();
+                deleted = staleHashes.size();
+            } catch (RuntimeException e) {
+                log.error("知识库原子更新失败（新增 {} 个、删除 {} 个片段），下次入库时重试", toAdd.size(), staleHashes.size(), e);
+                failed = toAdd.size();
+            }
+        }
+        saveManifest(next);
+        return new IngestionReport(total, added, total - toAdd.size(), deleted, failed,
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * 并发分批写入（每批一次 Embedding 调用，失败的批次单独重试），成功的批次记入清单，返回失败的片段数
+     */
+    private int addInBatches(List<Document> documents, Map<String, String> manifest) {
+        return ingestionExecutor.write(documents, batch -> {
+            vectorStore.add(batch);
+            synchronized (manifest) {
+                batch.forEach(document -> manifest.put((String) document.getMetadata().get(CONTENT_HASH), document.getId()));
+            }
+        });
+    }
+
+    /**
+     * 以内容哈希生成确定性的 UUID 作为文档 ID（pgvector 的 id 列为 uuid 类型）
+     */
+    static Document withContentId(Document chunk) {
+        Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+        metadata.remove(CONTENT_HASH);
+        String hash = sha256(chunk.getText() + "\n" + new TreeMap<>(metadata));
+        metadata.put(CONTENT_HASH, hash);
+        return Document.builder()
+                .id(UUID.nameUUIDFromBytes(hash.getBytes(StandardCharsets.UTF_8)).toString())
+                .text(chunk.getText())
+                .metadata(metadata)
+                .build();
+    }
+
+    /**
+     * 入库清单；内存映射快照校验失败时丢弃缓存的清单，从快照重新读取（校验失败的快照返回空清单，即全量入库）
+     */
+    private Map<String, String> loadManifest() {
+        boolean corrupted = unwrap(vectorStore) instanceof MappedSnapshotVectorStore mapped && mapped.isCorrupted();
+        if (manifest != null && !corrupted) {
+            return manifest;
+        }
+        if (!persistentManifest) {
+            return manifest = unwrap(vectorStore) instanceof MappedSnapshotVectorStore mapped
+                    ? new HashMap<>(mapped.contentManifest())
+                    : new HashMap<>();
+        }
+        try {
+            manifest = objectMapper.readValue(Files.readString(manifestPath), new TypeReference<Map<String, String>>() {
+            });
+        } catch (NoSuchFileException e) {
+            log.info("入库清单不存在，将全量入库: {}", manifestPath);
+            manifest = new HashMap<>();
+        } catch (IOException e) {
+            throw new IllegalStateException("入库清单读取失败: " + manifestPath, e);
+        }
+        return manifest;
+    }
+
+    private void saveManifest(Map<String, String> next) {
+        manifest = next;
+        if (!persistentManifest) {
+            return;
+        }
+        try {
+            Path directory = manifestPath.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, "manifest-", ".tmp");
+            try {
+                Files.writeString(tmp, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(new TreeMap<>(next)));
+                Files.move(tmp, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.error("入库清单保存失败: {}", manifestPath, e);
+        }
+    }
+
+    private static boolean isInProcess(VectorStore vectorStore) {
+        return unwrap(vectorStore) instanceof HnswVectorStore || unwrap(vectorStore) instanceof MappedSnapshotVectorStore;
+    }
+
+    private static VectorStore unwrap(VectorStore vectorStore) {
+        return vectorStore instanceof CachingVectorStore caching ? caching.getDelegate() : vectorStore;
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
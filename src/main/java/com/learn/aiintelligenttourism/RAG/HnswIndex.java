@@ -0,0 +1,351 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * 内存 HNSW 索引（余弦相似度）
+ * 向量归一化后连续存放在一个 float[] 中，相似度即点积；节点删除为软删除（仍参与图遍历，但不出现在结果中）。
+ * 本类不是线程安全的：写操作需要外部同步，且不能与读并发；需要边读边写时在 {@link #copy()} 的副本上写，写完再替换
+ */
+public class HnswIndex {
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private float[] vectors;
+    // links[node][level] = [邻居数, 邻居1, 邻居2, ...]
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private final BitSet deleted = new BitSet();
+
+    public HnswIndex(int dimension, int m, int efConstruction) {
+        this(dimension, m, efConstruction, 42L);
+    }
+
+    public HnswIndex(int dimension, int m, int efConstruction, long seed) {
+        if (dimension <= 0 || m < 2 || efConstruction < m) {
+            throw new IllegalArgumentException("invalid HNSW parameters");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new Random(seed);
+        this.vectors = new float[dimension * 16];
+        this.links = new int[16][][];
+    }
+
+    /**
+     * 深拷贝（写时复制）：在副本上插入、删除不影响正在读取原索引的检索
+     */
+    public HnswIndex copy() {
+        HnswIndex copy = new HnswIndex(dimension, m, efConstruction, random.nextLong());
+        copy.vectors = Arrays.copyOf(vectors, vectors.length);
+        copy.links = new int[links.length][][];
+        for (int node = 0; node < size; node++) {
+            int[][] levels = links[node];
+            copy.links[node] = new int[levels.length][];
+            for (int l = 0; l < levels.length; l++) {
+                copy.links[node][l] = levels[l].clone();
+            }
+        }
+        copy.size = size;
+        copy.entryPoint = entryPoint;
+        copy.maxLevel = maxLevel;
+        copy.deleted.or(deleted);
+        return copy;
+    }
+
+    /**
+     * 插入向量，返回节点编号（从 0 开始连续递增）
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("expected dimension " + dimension + " but got " + vector.length);
+        }
+        int node = size;
+        ensureCapacity(node + 1);
+        float[] normalized = normalize(vector);
+        System.arraycopy(normalized, 0, vectors, node * dimension, dimension);
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + (l == 0 ? maxM0 : m)];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(normalized, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Scored> candidates = searchLayer(normalized, ep, efConstruction, l, null);
+            int[] selected = selectNeighbors(candidates, m);
+            int[] own = links[node][l];
+            own[0] = selected.length;
+            System.arraycopy(selected, 0, own, 1, selected.length);
+            for (int neighbor : selected) {
+                connect(neighbor, node, l);
+            }
+            ep = candidates.get(0).node();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * 软删除节点
+     */
+    public void delete(int node) {
+        deleted.set(node);
+    }
+
+    public boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int deletedCount() {
+        return deleted.cardinality();
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 归一化后的向量副本
+     */
+    public float[] vector(int node) {
+        return Arrays.copyOfRange(vectors, node * dimension, (node + 1) * dimension);
+    }
+
+    /**
+     * 近似 top-k 检索，accept 为空时不过滤；结果按相似度从高到低排列
+     */
+    public List<Scored> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        float[] normalized = normalize(query);
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedyClosest(normalized, ep, l);
+        }
+        IntPredicate live = node -> !deleted.get(node) && (accept == null || accept.test(node));
+        List<Scored> results = searchLayer(normalized, ep, Math.max(ef, k), 0, live);
+        return results.size() > k ? results.subList(0, k) : results;
+    }
+
+    /**
+     * 精确 top-k（暴力扫描），用于过滤后候选很少的情况以及召回率对比
+     */
+    public List<Scored> bruteForce(float[] query, int k, IntPredicate accept) {
+        float[] normalized = normalize(query);
+        PriorityQueue<Scored> top = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+        for (int node = 0; node < size; node++) {
+            if (deleted.get(node) || (accept != null && !accept.test(node))) {
+                continue;
+            }
+            top.offer(new Scored(node, dot(normalized, node)));
+            if (top.size() > k) {
+                top.poll();
+            }
+        }
+        List<Scored> results = new ArrayList<>(top);
+        results.sort(Comparator.comparingDouble(Scored::score).reversed());
+        return results;
+    }
+
+    private int greedyClosest(float[] query, int ep, int level) {
+        int current = ep;
+        float best = dot(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float score = dot(query, neighbors[i]);
+                if (score > best) {
+                    best = score;
+                    current = neighbors[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层 beam search；accept 只影响结果集合，不影响遍历（保证过滤时图依然连通）
+     */
+    private List<Scored> searchLayer(float[] query, int ep, int ef, int level, IntPredicate accept) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(Comparator.comparingDouble(Scored::score).reversed());
+        PriorityQueue<Scored> results = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+
+        Scored start = new Scored(ep, dot(query, ep));
+        visited.set(ep);
+        candidates.offer(start);
+        if (accept == null || accept.test(ep)) {
+            results.offer(start);
+        }
+
+        while (!candidates.isEmpty()) {
+            Scored current = candidates.poll();
+            if (results.size() >= ef && current.score() < results.peek().score()) {
+                break;
+            }
+            int[] neighbors = links[current.node()][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float score = dot(query, neighbor);
+                if (results.size() < ef || score > results.peek().score()) {
+                    candidates.offer(new Scored(neighbor, score));
+                    if (accept == null || accept.test(neighbor)) {
+                        results.offer(new Scored(neighbor, score));
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Scored> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Scored::score).reversed());
+        return sorted;
+    }
+
+    /**
+     * 启发式选邻居：候选比已选邻居更靠近当前节点才保留，使邻居分布在不同方向；不足时用被淘汰的候选补齐
+     */
+    private int[] selectNeighbors(List<Scored> candidates, int max) {
+        List<Scored> selected = new ArrayList<>(max);
+        List<Scored> pruned = new ArrayList<>();
+        for (Scored candidate : candidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean diverse = true;
+            for (Scored chosen : selected) {
+                if (dot(candidate.node(), chosen.node()) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < max; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected.stream().mapToInt(Scored::node).toArray();
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] neighbors = links[from][level];
+        int capacity = neighbors.length - 1;
+        if (neighbors[0] < capacity) {
+            neighbors[++neighbors[0]] = to;
+            return;
+        }
+        // 邻居已满：在原邻居和新节点中重新挑选
+        List<Scored> candidates = new ArrayList<>(capacity + 1);
+        for (int i = 1; i <= neighbors[0]; i++) {
+            candidates.add(new Scored(neighbors[i], dot(from, neighbors[i])));
+        }
+        candidates.add(new Scored(to, dot(from, to)));
+        candidates.sort(Comparator.comparingDouble(Scored::score).reversed());
+        int[] selected = selectNeighbors(candidates, capacity);
+        neighbors[0] = selected.length;
+        System.arraycopy(selected, 0, neighbors, 1, selected.length);
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > links.length) {
+            int capacity = Math.max(required, links.length * 2);
+            links = Arrays.copyOf(links, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+        }
+    }
+
+    private float dot(float[] query, int node) {
+        int offset = node * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[i] * vectors[offset + i];
+        }
+        return sum;
+    }
+
+    private float dot(int a, int b) {
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += vectors[offsetA + i] * vectors[offsetB + i];
+        }
+        return sum;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * 检索结果：节点编号 + 余弦相似度
+     */
+    public record Scored(int node, float score) {
+    }
+}
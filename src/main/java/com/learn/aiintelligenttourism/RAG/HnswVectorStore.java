@@ -0,0 +1,312 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 进程内 HNSW 向量库（spring.ai.vectorstore.type=hnsw）
+ * 适合中小规模语料：向量保存在 {@link HnswIndex} 的 float[] 中，检索不经过网络和数据库；
+ * 过滤条件与 SimpleVectorStore 一致（转换为 SpEL 在 metadata 上求值），
+ * 过滤后候选较少时直接对候选暴力计算，避免在 HNSW 图上大范围搜索。
+ * 文档按分区字段（{@link LocationFilterResolver#PARTITION_KEYS}，即 country / city）预先分区，
+ * 过滤条件中对分区字段的等值 / in 条件直接取对应分区的节点集合，只对分区内的文档求值过滤条件。
+ * <p>
+ * 写时复制：写操作在当前快照的副本上进行，完成后原子替换快照；检索始终读取不可变快照，不加锁、不会被写操作阻塞
+ */
+@Slf4j
+public class HnswVectorStore implements BatchUpdatableVectorStore {
+
+    // 过滤后候选数不超过该值时直接暴力计算
+    private static final int BRUTE_FORCE_THRESHOLD = 2000;
+
+    private final EmbeddingModel embeddingModel;
+    private final BatchingStrategy batchingStrategy = new TokenCountBatchingStrategy();
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    // 入库时的并发分批 Embedding（为空时按 batchingStrategy 顺序 Embedding）
+    private final IngestionExecutor ingestionExecutor;
+
+    // 写操作串行执行；检索只读取 volatile 快照
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, int m, int efConstruction, int efSearch) {
+        this(embeddingModel, m, efConstruction, efSearch, null);
+    }
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, int m, int efConstruction, int efSearch,
+                           IngestionExecutor ingestionExecutor) {
+        this.embeddingModel = embeddingModel;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.ingestionExecutor = ingestionExecutor;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        update(documents, List.of());
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        update(List.of(), idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        MetadataFilter filter = new MetadataFilter(filterExpression);
+        writeLock.lock();
+        try {
+            List<String> ids = new ArrayList<>();
+            for (Document document : snapshot.documents()) {
+                if (document != null && filter.test(document)) {
+                    ids.add(document.getId());
+                }
+            }
+            update(List.of(), ids);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void update(List<Document> toAdd, List<String> toDelete) {
+        if (toAdd.isEmpty() && toDelete.isEmpty()) {
+            return;
+        }
+        // 先在锁外完成 Embedding（网络调用）
+        List<float[]> embeddings = toAdd.isEmpty() ? List.of()
+                : ingestionExecutor != null ? ingestionExecutor.embed(embeddingModel, toAdd)
+                : embeddingModel.embed(toAdd, EmbeddingOptionsBuilder.builder().build(), batchingStrategy);
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            HnswIndex index = current.index() == null
+                    ? (embeddings.isEmpty() ? null : new HnswIndex(embeddings.get(0).length, m, efConstruction))
+                    : current.index().copy();
+            List<Document> documents = new ArrayList<>(current.documents());
+            Map<String, Integer> nodeById = new HashMap<>(current.nodeById());
+            Map<String, Map<Object, BitSet>> partitions = copy(current.partitions());
+
+            for (String id : toDelete) {
+                Integer node = nodeById.remove(id);
+                if (node != null) {
+                    unpartition(partitions, documents.get(node), node);
+                    documents.set(node, null);
+                    index.delete(node);
+                }
+            }
+            for (int i = 0; i < toAdd.size(); i++) {
+                Document document = toAdd.get(i);
+                // 同 id 覆盖写入：旧节点软删除
+                Integer previous = nodeById.remove(document.getId());
+                if (previous != null) {
+                    unpartition(partitions, documents.get(previous), previous);
+                    documents.set(previous, null);
+                    index.delete(previous);
+                }
+                int node = index.add(embeddings.get(i));
+                documents.add(document);
+                nodeById.put(document.getId(), node);
+                partition(partitions, document, node);
+            }
+
+            snapshot = compactIfNeeded(new Snapshot(index, documents, nodeById, partitions));
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("HNSW 向量库更新：新增 {} 个、删除 {} 个文档，当前共 {} 个", toAdd.size(), toDelete.size(), size());
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = embeddingModel.embed(request.getQuery());
+        Snapshot current = snapshot;
+        if (current.index() == null) {
+            return List.of();
+        }
+        List<Document> documents = current.documents();
+        HnswIndex index = current.index();
+
+        List<HnswIndex.Scored> hits;
+        if (request.hasFilterExpression()) {
+            MetadataFilter filter = new MetadataFilter(request.getFilterExpression());
+            // 只在过滤条件涉及的分区内求值，无法按分区缩小范围时扫描全部文档
+            BitSet candidates = candidates(request.getFilterExpression(), current.partitions());
+            BitSet accepted = new BitSet(documents.size());
+            for (int node = candidates == null ? 0 : candidates.nextSetBit(0);
+                 node >= 0 && node < documents.size();
+                 node = candidates == null ? node + 1 : candidates.nextSetBit(node + 1)) {
+                Document document = documents.get(node);
+                if (document != null && filter.test(document)) {
+                    accepted.set(node);
+                }
+            }
+            hits = accepted.cardinality() <= BRUTE_FORCE_THRESHOLD
+                    ? index.bruteForce(query, request.getTopK(), accepted::get)
+                    : index.search(query, request.getTopK(), efSearch, accepted::get);
+        } else {
+            hits = index.search(query, request.getTopK(), efSearch, null);
+        }
+
+        List<Document> results = new ArrayList<>(hits.size());
+        for (HnswIndex.Scored hit : hits) {
+            if (hit.score() < request.getSimilarityThreshold()) {
+                continue;
+            }
+            results.add(withScore(documents.get(hit.node()), hit.score()));
+        }
+        return results;
+    }
+
+    @Override
+    public String getName() {
+        return "HnswVectorStore";
+    }
+
+    public int size() {
+        return snapshot.nodeById().size();
+    }
+
+    /**
+     * 软删除的节点超过存活节点时重建索引，回收空间并恢复图质量
+     */
+    private Snapshot compactIfNeeded(Snapshot candidate) {
+        HnswIndex index = candidate.index();
+        if (index == null || index.deletedCount() <= Math.max(1000, candidate.nodeById().size())) {
+            return candidate;
+        }
+        HnswIndex rebuilt = new HnswIndex(index.dimension(), m, efConstruction);
+        List<Document> liveDocuments = new ArrayList<>(candidate.nodeById().size());
+        Map<String, Integer> liveNodes = new HashMap<>();
+        Map<String, Map<Object, BitSet>> livePartitions = new HashMap<>();
+        for (int node = 0; node < candidate.documents().size(); node++) {
+            Document document = candidate.documents().get(node);
+            if (document != null) {
+                int liveNode = rebuilt.add(index.vector(node));
+                liveNodes.put(document.getId(), liveNode);
+                liveDocuments.add(document);
+                partition(livePartitions, document, liveNode);
+            }
+        }
+        log.info("HNSW 索引重建：清理 {} 个已删除节点", index.deletedCount());
+        return new Snapshot(rebuilt, liveDocuments, liveNodes, livePartitions);
+    }
+
+    /**
+     * 由过滤条件推导候选节点集合（超集，仍需逐个求值），无法推导时返回 null。
+     * 分区字段上的 == / in 取对应分区；AND 取交集（一侧无法推导时取另一侧）；OR 取并集（任一侧无法推导则整体无法推导）
+     */
+    static BitSet candidates(Filter.Expression expression, Map<String, Map<Object, BitSet>> partitions) {
+        return switch (expression.type()) {
+            case AND -> {
+                BitSet left = candidates((Filter.Expression) expression.left(), partitions);
+                BitSet right = candidates((Filter.Expression) expression.right(), partitions);
+                if (left == null || right == null) {
+                    yield left == null ? right : left;
+                }
+                BitSet result = (BitSet) left.clone();
+                result.and(right);
+                yield result;
+            }
+            case OR -> {
+                BitSet left = candidates((Filter.Expression) expression.left(), partitions);
+                BitSet right = candidates((Filter.Expression) expression.right(), partitions);
+                if (left == null || right == null) {
+                    yield null;
+                }
+                BitSet result = (BitSet) left.clone();
+                result.or(right);
+                yield result;
+            }
+            case EQ, IN -> {
+                if (!(expression.left() instanceof Filter.Key key) || !partitions.containsKey(key.key())
+                        || !(expression.right() instanceof Filter.Value value)) {
+                    yield null;
+                }
+                Map<Object, BitSet> partition = partitions.get(key.key());
+                BitSet result = new BitSet();
+                List<?> values = value.value() instanceof List<?> list ? list : List.of(value.value());
+                for (Object v : values) {
+                    BitSet nodes = partition.get(String.valueOf(v));
+                    if (nodes != null) {
+                        result.or(nodes);
+                    }
+                }
+                yield result;
+            }
+            default -> null;
+        };
+    }
+
+    private static void partition(Map<String, Map<Object, BitSet>> partitions, Document document, int node) {
+        for (String key : LocationFilterResolver.PARTITION_KEYS) {
+            Object value = document.getMetadata().get(key);
+            if (value != null) {
+                partitions.computeIfAbsent(key, k -> new HashMap<>())
+                        .computeIfAbsent(value.toString(), v -> new BitSet())
+                        .set(node);
+            }
+        }
+    }
+
+    private static void unpartition(Map<String, Map<Object, BitSet>> partitions, Document document, int node) {
+        for (String key : LocationFilterResolver.PARTITION_KEYS) {
+            Object value = document.getMetadata().get(key);
+            Map<Object, BitSet> partition = partitions.get(key);
+            if (value != null && partition != null && partition.containsKey(value.toString())) {
+                partition.get(value.toString()).clear(node);
+            }
+        }
+    }
+
+    /**
+     * 写时复制：分区位图是可变的，新快照使用深拷贝
+     */
+    private static Map<String, Map<Object, BitSet>> copy(Map<String, Map<Object, BitSet>> partitions) {
+        Map<String, Map<Object, BitSet>> copy = new HashMap<>();
+        partitions.forEach((key, partition) -> {
+            Map<Object, BitSet> values = new HashMap<>();
+            partition.forEach((value, nodes) -> values.put(value, (BitSet) nodes.clone()));
+            copy.put(key, values);
+        });
+        return copy;
+    }
+
+    /**
+     * 返回带相似度的副本（与 SimpleVectorStore 一致，metadata 中附带 distance）
+     */
+    private static Document withScore(Document document, float score) {
+        Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+        metadata.put("distance", 1 - score);
+        return Document.builder()
+                .id(document.getId())
+                .text(document.getText())
+                .metadata(metadata)
+                .score((double) score)
+                .build();
+    }
+
+    /**
+     * 不可变快照：索引 + 节点编号对应的文档（已删除为 null） + 文档 ID 到节点编号 + 分区字段 -> 值 -> 节点集合
+     */
+    private record Snapshot(HnswIndex index, List<Document> documents, Map<String, Integer> nodeById,
+                            Map<String, Map<Object, BitSet>> partitions) {
+        private static final Snapshot EMPTY = new Snapshot(null, List.of(), Map.of(), Map.of());
+    }
+}
@@ -0,0 +1,27 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 进程内 HNSW 向量库配置
+ * spring.ai.vectorstore.type=hnsw 时生效（此时 pgvector 自动配置不会创建 VectorStore），
+ * 启动时由 {@link DocumentIngestionService} 加载 document/*.md 并建立索引，无需数据库
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.ai.vectorstore.type", havingValue = "hnsw")
+public class HnswVectorStoreConfig {
+
+    @Bean
+    public VectorStore hnswVectorStore(EmbeddingModel embeddingModel,
+                                       IngestionExecutor ingestionExecutor,
+                                       @Value("${tourism.rag.hnsw.m:16}") int m,
+                                       @Value("${tourism.rag.hnsw.ef-construction:200}") int efConstruction,
+                                       @Value("${tourism.rag.hnsw.ef-search:64}") int efSearch) {
+        return new HnswVectorStore(embeddingModel, m, efConstruction, efSearch, ingestionExecutor);
+    }
+}
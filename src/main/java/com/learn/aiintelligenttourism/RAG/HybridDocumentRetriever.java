@@ -0,0 +1,116 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 混合检索：BM25 关键词检索 + 向量检索，按倒数排名融合（RRF）
+ * 关键词检索在内存中完成（微秒级），向量检索在独立线程上执行并设置超时；
+ * 向量检索超时或失败时仅返回关键词检索结果，知识库问答不会因为向量库变慢或不可用而中断。
+ * 查询上下文中的过滤条件（{@link VectorStoreDocumentRetriever#FILTER_EXPRESSION}）同时作用于两路检索
+ */
+@Slf4j
+public class HybridDocumentRetriever implements DocumentRetriever {
+
+    // RRF 常数（论文取值），排名靠后的结果贡献迅速衰减
+    static final int RRF_K = 60;
+
+    // 向量检索在虚拟线程上执行，超时的调用不占用平台线程
+    private static final ExecutorService VECTOR_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final DocumentRetriever vectorRetriever;
+    private final KeywordIndex keywordIndex;
+    private final int topK;
+    private final Duration vectorTimeout;
+    private final MeterRegistry meterRegistry;
+
+    public HybridDocumentRetriever(DocumentRetriever vectorRetriever, KeywordIndex keywordIndex, int topK,
+                                   Duration vectorTimeout, MeterRegistry meterRegistry) {
+        this.vectorRetriever = vectorRetriever;
+        this.keywordIndex = keywordIndex;
+        this.topK = topK;
+        this.vectorTimeout = vectorTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        CompletableFuture<List<Document>> vectorFuture = CompletableFuture
+                .supplyAsync(() -> vectorRetriever.retrieve(query), VECTOR_EXECUTOR)
+                .orTimeout(vectorTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        Filter.Expression filterExpression = filterExpression(query);
+        List<Document> keywordResults = keywordIndex.search(query.text(), topK,
+                filterExpression == null ? null : new MetadataFilter(filterExpression));
+
+        List<Document> vectorResults;
+        try {
+            vectorResults = vectorFuture.join();
+        } catch (CompletionException e) {
+            log.warn("向量检索失败或超时（{}），仅使用关键词检索结果: {}", vectorTimeout, e.getCause().toString());
+            meterRegistry.counter("tourism.rag.hybrid", "outcome", "keyword_only").increment();
+            return keywordResults;
+        }
+        meterRegistry.counter("tourism.rag.hybrid", "outcome", "fused").increment();
+        return fuse(List.of(vectorResults, keywordResults), topK);
+    }
+
+    /**
+     * 与 VectorStoreDocumentRetriever 相同：上下文中的过滤条件可以是 Filter.Expression 或文本表达式
+     */
+    private static Filter.Expression filterExpression(Query query) {
+        Object value = query.context().get(VectorStoreDocumentRetriever.FILTER_EXPRESSION);
+        if (value instanceof Filter.Expression expression) {
+            return expression;
+        }
+        if (value != null && !value.toString().isBlank()) {
+            return new FilterExpressionTextParser().parse(value.toString());
+        }
+        return null;
+    }
+
+    /**
+     * 倒数排名融合：score(d) = Σ 1 / (RRF_K + rank)，rank 从 1 开始；同一片段在各路结果中的得分相加。
+     * 按正文而不是 ID 合并：外部向量库中按旧流程写入的文档是随机 ID，关键词索引用内容哈希作 ID，同一片段两边 ID 不同
+     */
+    static List<Document> fuse(List<List<Document>> rankings, int topK) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                documents.putIfAbsent(document.getText(), document);
+                scores.merge(document.getText(), 1.0 / (RRF_K + rank + 1), Double::sum);
+            }
+        }
+        List<Document> fused = new ArrayList<>(documents.size());
+        documents.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, Document> entry) -> scores.get(entry.getKey())).reversed())
+                .limit(topK)
+                .forEach(entry -> fused.add(Document.builder()
+                        .id(entry.getValue().getId())
+                        .text(entry.getValue().getText())
+                        .metadata(entry.getValue().getMetadata())
+                        .score(scores.get(entry.getKey()))
+                        .build()));
+        return fused;
+    }
+}
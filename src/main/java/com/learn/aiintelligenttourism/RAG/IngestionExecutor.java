@@ -0,0 +1,209 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 文档入库执行器
+ * 入库的 Embedding 和向量库写入都按批在虚拟线程上并发执行，信号量限制同时进行中的请求数（tourism.rag.ingestion.parallelism），
+ * 一个批次完成后下一个批次立即开始（流水线），单个慢批次或失败批次不会阻塞其他批次；
+ * 每个批次失败后按指数退避重试，重试耗尽才算失败。
+ * 指标：tourism.rag.ingestion.progress（当前入库已处理的片段比例）、tourism.rag.ingestion.throughput（片段/秒）、
+ * tourism.rag.ingestion.batches（outcome=success/retry/failed）
+ */
+@Slf4j
+@Component
+public class IngestionExecutor {
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int embeddingBatchSize;
+    private final Semaphore inFlight;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final BatchingStrategy batchingStrategy = new TokenCountBatchingStrategy();
+
+    // 当前（或最近一次）入库的进度
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private volatile long startedAt = System.nanoTime();
+    private volatile long finishedAt = startedAt;
+
+    public IngestionExecutor(MeterRegistry meterRegistry,
+                             @Value("${tourism.rag.ingestion.batch-size:20}") int batchSize,
+                             @Value("${tourism.rag.ingestion.embedding-batch-size:32}") int embeddingBatchSize,
+                             @Value("${tourism.rag.ingestion.parallelism:4}") int parallelism,
+                             @Value("${tourism.rag.ingestion.max-attempts:3}") int maxAttempts,
+                             @Value("${tourism.rag.ingestion.retry-backoff:500ms}") Duration retryBackoff) {
+        this.meterRegistry = meterRegistry;
+        this.batchSize = Math.max(1, batchSize);
+        this.embeddingBatchSize = Math.max(1, embeddingBatchSize);
+        this.inFlight = new Semaphore(Math.max(1, parallelism));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+        Gauge.builder("tourism.rag.ingestion.progress", this, IngestionExecutor::progress)
+                .register(meterRegistry);
+        Gauge.builder("tourism.rag.ingestion.throughput", this, IngestionExecutor::throughput)
+                .baseUnit("chunks/s")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 开始一次入库，重置进度
+     */
+    public void begin(int chunks) {
+        total.set(chunks);
+        processed.set(0);
+        startedAt = System.nanoTime();
+        finishedAt = chunks == 0 ? startedAt : 0;
+    }
+
+    /**
+     * 并发分批 Embedding，结果与 documents 一一对应；任一批次重试耗尽时抛出异常（调用方整批放弃）
+     */
+    public List<float[]> embed(EmbeddingModel embeddingModel, List<Document> documents) {
+        List<CompletableFuture<List<float[]>>> futures = partition(documents, embeddingBatchSize).stream()
+                .map(batch -> submit(() -> retry("Embedding", batch.size(),
+                        () -> embeddingModel.embed(batch, EmbeddingOptionsBuilder.builder().build(), batchingStrategy))))
+                .toList();
+        List<float[]> embeddings = new ArrayList<>(documents.size());
+        try {
+            futures.forEach(future -> embeddings.addAll(future.join()));
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        return embeddings;
+    }
+
+    /**
+     * 并发分批写入，writer 对每批调用一次（失败的批次会以同一批文档重试），返回重试耗尽后仍失败的片段数
+     */
+    public int write(List<Document> documents, Consumer<List<Document>> writer) {
+        List<CompletableFuture<Integer>> futures = partition(documents, batchSize).stream()
+                .map(batch -> submit(() -> {
+                    try {
+                        retry("写入", batch.size(), () -> {
+                            writer.accept(batch);
+                            return null;
+                        });
+                        return 0;
+                    } catch (RuntimeException e) {
+                        log.error("文档批次写入失败（{} 个片段），下次入库时重试", batch.size(), e);
+                        return batch.size();
+                    }
+                }))
+                .toList();
+        return futures.stream().mapToInt(CompletableFuture::join).sum();
+    }
+
+    /**
+     * 当前入库已处理（成功或失败）的片段比例
+     */
+    public double progress() {
+        long chunks = total.get();
+        return chunks == 0 ? 1 : Math.min(1, (double) processed.get() / chunks);
+    }
+
+    /**
+     * 当前入库的吞吐（片段/秒），入库结束后保持最后一次的值
+     */
+    public double throughput() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        double seconds = (end - startedAt) / 1e9;
+        return seconds <= 0 ? 0 : processed.get() / seconds;
+    }
+
+    /**
+     * 在虚拟线程上执行，进行中的请求数受信号量限制
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            inFlight.acquireUninterruptibly();
+            try {
+                return task.get();
+            } finally {
+                inFlight.release();
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * 失败后按 retryBackoff * 2^(n-1) 退避重试，重试耗尽抛出最后一次的异常；无论成败都计入进度
+     */
+    private <T> T retry(String operation, int size, Supplier<T> action) {
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    T result = action.get();
+                    meterRegistry.counter("tourism.rag.ingestion.batches", "outcome", "success").increment();
+                    return result;
+                } catch (RuntimeException e) {
+                    if (attempt >= maxAttempts) {
+                        meterRegistry.counter("tourism.rag.ingestion.batches", "outcome", "failed").increment();
+                        throw e;
+                    }
+                    long backoff = retryBackoff.toMillis() << (attempt - 1);
+                    log.warn("{}批次失败（{} 个片段，第 {} 次），{} ms 后重试: {}", operation, size, attempt, backoff, e.getMessage());
+                    meterRegistry.counter("tourism.rag.ingestion.batches", "outcome", "retry").increment();
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            advance(size);
+        }
+    }
+
+    /**
+     * 累加进度，每跨过 10% 打印一次日志
+     */
+    private void advance(int size) {
+        long chunks = total.get();
+        long done = processed.addAndGet(size);
+        if (chunks == 0) {
+            return;
+        }
+        if (done >= chunks) {
+            finishedAt = System.nanoTime();
+        }
+        if ((done - size) * 10 / chunks != done * 10 / chunks) {
+            log.info("入库进度 {}/{}（{}%），{} 片段/秒", Math.min(done, chunks), chunks,
+                    Math.min(100, done * 100 / chunks), String.format("%.1f", throughput()));
+        }
+    }
+
+    private static List<List<Document>> partition(List<Document> documents, int size) {
+        List<List<Document>> batches = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i += size) {
+            batches.add(documents.subList(i, Math.min(i + size, documents.size())));
+        }
+        return batches;
+    }
+}
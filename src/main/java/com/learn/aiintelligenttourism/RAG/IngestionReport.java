@@ -0,0 +1,29 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import java.time.Duration;
+
+/**
+ * 一次文档入库的统计
+ *
+ * @param total     本次读取到的文档片段数
+ * @param added     新增或内容有变化、已重新 Embedding 的片段数
+ * @param unchanged 内容未变、跳过的片段数
+ * @param deleted   已删除的过期片段数
+ * @param failed    写入失败（下次入库时重试）的片段数
+ * @param elapsed   总耗时
+ */
+public record IngestionReport(int total, int added, int unchanged, int deleted, int failed, Duration elapsed) {
+
+    /**
+     * 写入吞吐（新增片段数 / 总耗时）
+     */
+    public double chunksPerSecond() {
+        return elapsed.isZero() ? 0 : added * 1e9 / elapsed.toNanos();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("片段 %d 个：新增 %d，未变 %d，删除 %d，失败 %d，耗时 %d ms，吞吐 %.1f 片段/秒",
+                total, added, unchanged, deleted, failed, elapsed.toMillis(), chunksPerSecond());
+    }
+}
@@ -0,0 +1,181 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * 内存 BM25 倒排索引（关键词检索）
+ * 分词适配中文：连续汉字切分为相邻二字（bigram），不使用单字（单字几乎命中所有片段），
+ * 含虚词、代词的 bigram（怎么、你好、什么）作为停用词丢弃；字母数字按单词切分并转小写。
+ * 地名（岚山、长沙）、政策关键词（Visit Japan Web）这类精确词命中比向量检索更稳定。
+ * BM25 分数低于 {@link #MIN_SCORE} 的结果（只命中了大多数片段都有的常见词）不返回，闲聊类输入不会带出无关片段。
+ * 入库时整体重建并原子替换，检索读取不可变快照
+ */
+@Slf4j
+@Component
+public class KeywordIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // BM25 分数下限：只命中出现在一半以上片段中的词项时 idf 低于该值
+    static final double MIN_SCORE = 0.5;
+
+    // 含这些字的 bigram 不作为词项（疑问词、代词、助词、礼貌用语）
+    private static final String STOP_CHARACTERS = "的了么吗呢吧啊呀是在和与或我你他她它们这那怎什哪谁个些也都就还很请帮给好";
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * 用全部文档片段重建索引
+     */
+    public void rebuild(List<Document> documents) {
+        Map<String, List<int[]>> postingLists = new HashMap<>();
+        int[] lengths = new int[documents.size()];
+        long totalLength = 0;
+        for (int doc = 0; doc < documents.size(); doc++) {
+            List<String> tokens = tokenize(documents.get(doc).getText());
+            lengths[doc] = tokens.size();
+            totalLength += tokens.size();
+            Map<String, Integer> termFrequencies = new HashMap<>();
+            tokens.forEach(token -> termFrequencies.merge(token, 1, Integer::sum));
+            int docId = doc;
+            termFrequencies.forEach((term, tf) -> postingLists.computeIfAbsent(term, t -> new ArrayList<>()).add(new int[]{docId, tf}));
+        }
+
+        Map<String, Posting> postings = new HashMap<>(postingLists.size());
+        postingLists.forEach((term, list) -> {
+            int[] docIds = new int[list.size()];
+            int[] frequencies = new int[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                docIds[i] = list.get(i)[0];
+                frequencies[i] = list.get(i)[1];
+            }
+            postings.put(term, new Posting(docIds, frequencies));
+        });
+        double averageLength = documents.isEmpty() ? 0 : (double) totalLength / documents.size();
+        snapshot = new Snapshot(List.copyOf(documents), postings, lengths, averageLength);
+        log.info("关键词索引已重建：{} 个片段，{} 个词项", documents.size(), postings.size());
+    }
+
+    public List<Document> search(String query, int topK) {
+        return search(query, topK, null);
+    }
+
+    /**
+     * BM25 检索，accept 为空时不过滤（如 {@link MetadataFilter}）；结果的 score 为 BM25 分数
+     */
+    public List<Document> search(String query, int topK, Predicate<Document> accept) {
+        Snapshot current = snapshot;
+        if (current.documents().isEmpty() || topK <= 0) {
+            return List.of();
+        }
+        int n = current.documents().size();
+        double[] scores = new double[n];
+        boolean[] hit = new boolean[n];
+        IntPredicate accepted = accept == null ? doc -> true : doc -> accept.test(current.documents().get(doc));
+
+        for (String term : tokenize(query).stream().distinct().toList()) {
+            Posting posting = current.postings().get(term);
+            if (posting == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (n - posting.docIds().length + 0.5) / (posting.docIds().length + 0.5));
+            for (int i = 0; i < posting.docIds().length; i++) {
+                int doc = posting.docIds()[i];
+                int tf = posting.frequencies()[i];
+                double norm = K1 * (1 - B + B * current.lengths()[doc] / current.averageLength());
+                scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                hit[doc] = true;
+            }
+        }
+
+        PriorityQueue<Integer> top = new PriorityQueue<>((a, b) -> Double.compare(scores[a], scores[b]));
+        for (int doc = 0; doc < n; doc++) {
+            if (hit[doc] && scores[doc] >= MIN_SCORE && accepted.test(doc)) {
+                top.offer(doc);
+                if (top.size() > topK) {
+                    top.poll();
+                }
+            }
+        }
+        Integer[] ranked = top.toArray(Integer[]::new);
+        Arrays.sort(ranked, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        List<Document> results = new ArrayList<>(ranked.length);
+        for (int doc : ranked) {
+            Document document = current.documents().get(doc);
+            results.add(Document.builder()
+                    .id(document.getId())
+                    .text(document.getText())
+                    .metadata(document.getMetadata())
+                    .score(scores[doc])
+                    .build());
+        }
+        return results;
+    }
+
+    public int size() {
+        return snapshot.documents().size();
+    }
+
+    /**
+     * 中文按 bigram（含停用字的丢弃），字母数字按单词（小写）
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        int previousHan = -1;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+                flushWord(word, tokens);
+                if (previousHan >= 0 && !isStopCharacter(previousHan) && !isStopCharacter(codePoint)) {
+                    tokens.add(new String(Character.toChars(previousHan)) + new String(Character.toChars(codePoint)));
+                }
+                previousHan = codePoint;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                word.appendCodePoint(Character.toLowerCase(codePoint));
+                previousHan = -1;
+            } else {
+                flushWord(word, tokens);
+                previousHan = -1;
+            }
+        }
+        flushWord(word, tokens);
+        return tokens;
+    }
+
+    private static boolean isStopCharacter(int codePoint) {
+        return STOP_CHARACTERS.indexOf(codePoint) >= 0;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (!word.isEmpty()) {
+            tokens.add(word.toString().toLowerCase(Locale.ROOT));
+            word.setLength(0);
+        }
+    }
+
+    private record Posting(int[] docIds, int[] frequencies) {
+    }
+
+    private record Snapshot(List<Document> documents, Map<String, Posting> postings, int[] lengths, double averageLength) {
+        private static final Snapshot EMPTY = new Snapshot(List.of(), Map.of(), new int[0], 0);
+    }
+}
@@ -0,0 +1,14 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * 知识库内容变更事件（增量入库新增或删除了片段后发布）
+ *
+ * @param changedDocuments 新增以及被删除的片段（含元数据：filename、country、city）
+ * @param complete         是否列全了变更的片段；重启后首次入库删除的旧片段只有 ID、没有元数据，此时为 false
+ */
+public record KnowledgeBaseChangedEvent(List<Document> changedDocuments, boolean complete) {
+}
@@ -0,0 +1,38 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按目的地过滤后没有结果时，去掉过滤条件再检索一次
+ * 分区字段（country / city）只在新版入库流程写入；外部向量库（pgvector）中按旧流程写入的文档没有这两个字段，
+ * 过滤检索会把它们全部排除。未重新入库前，过滤结果为空时退回不过滤的检索，避免知识库问答整体失效
+ */
+@Slf4j
+public class LocationFallbackDocumentRetriever implements DocumentRetriever {
+
+    private final DocumentRetriever delegate;
+
+    public LocationFallbackDocumentRetriever(DocumentRetriever delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        List<Document> documents = delegate.retrieve(query);
+        if (!documents.isEmpty() || !query.context().containsKey(VectorStoreDocumentRetriever.FILTER_EXPRESSION)) {
+            return documents;
+        }
+        log.debug("按目的地过滤后没有检索结果，改为不过滤检索: {}", query.text());
+        Map<String, Object> context = new HashMap<>(query.context());
+        context.remove(VectorStoreDocumentRetriever.FILTER_EXPRESSION);
+        return delegate.retrieve(query.mutate().context(context).build());
+    }
+}
@@ -0,0 +1,42 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按目的地自动生成检索过滤条件
+ * 目的地取自查询上下文的 {@link LocationFilterResolver#DESTINATION}（调用方由 TravelRequirements 传入），
+ * 没有时从查询文本中识别；生成的条件写入上下文 {@link VectorStoreDocumentRetriever#FILTER_EXPRESSION}，
+ * 向量检索和关键词检索都只在对应地区的文档中进行。调用方已显式传入过滤条件时不做处理。
+ * 需放在翻译之后，按中文地名识别
+ */
+@Slf4j
+public class LocationFilterQueryTransformer implements QueryTransformer {
+
+    private final LocationFilterResolver locationFilterResolver;
+
+    public LocationFilterQueryTransformer(LocationFilterResolver locationFilterResolver) {
+        this.locationFilterResolver = locationFilterResolver;
+    }
+
+    @Override
+    public Query transform(Query query) {
+        if (query.context().containsKey(VectorStoreDocumentRetriever.FILTER_EXPRESSION)) {
+            return query;
+        }
+        Object destination = query.context().get(LocationFilterResolver.DESTINATION);
+        return locationFilterResolver.resolve(destination == null ? null : destination.toString(), query.text())
+                .map(expression -> {
+                    log.debug("检索过滤条件: {}", expression);
+                    Map<String, Object> context = new HashMap<>(query.context());
+                    context.put(VectorStoreDocumentRetriever.FILTER_EXPRESSION, expression);
+                    return query.mutate().context(context).build();
+                })
+                .orElse(query);
+    }
+}
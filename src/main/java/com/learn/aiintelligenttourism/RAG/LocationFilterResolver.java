@@ -0,0 +1,167 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 目的地 -> 元数据过滤条件
+ * 入库时由 Front Matter 的 location（如 "日本, 京都, 岚山"）拆分出 country / city 两个分区字段，
+ * 并用知识库中出现过的地名建立地名表；检索时从目的地（TravelRequirements 或工具参数）或查询文本中识别地名，
+ * 生成只覆盖对应分区的过滤条件。没有 location 的文档归入「全球」分区，任何目的地都会检索到
+ */
+@Slf4j
+@Component
+public class LocationFilterResolver {
+
+    public static final String COUNTRY = "country";
+    public static final String CITY = "city";
+    public static final String CATEGORY = "category";
+    // 未标注 location 的通用文档
+    public static final String GLOBAL = "全球";
+    // 只标注了国家、适用于该国所有城市的文档
+    public static final String ANY_CITY = "*";
+    // 向量库按这些字段预先分区
+    public static final List<String> PARTITION_KEYS = List.of(COUNTRY, CITY);
+
+    // 检索上下文中的目的地（调用方从 TravelRequirements 传入）
+    public static final String DESTINATION = "destination";
+
+    private volatile Map<String, Place> gazetteer = Map.of();
+
+    /**
+     * 由 Front Matter 的 location 生成分区字段
+     */
+    public static Map<String, Object> partition(Object location) {
+        List<String> parts = split(location);
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(COUNTRY, parts.isEmpty() ? GLOBAL : parts.get(0));
+        metadata.put(CITY, parts.size() < 2 ? ANY_CITY : parts.get(1));
+        return metadata;
+    }
+
+    /**
+     * 用全部文档片段的 location 重建地名表；城市以下的地名（如 岚山）归到所在城市
+     */
+    public void rebuild(List<Document> documents) {
+        Map<String, Place> places = new HashMap<>();
+        for (Document document : documents) {
+            List<String> parts = split(document.getMetadata().get("location"));
+            if (parts.isEmpty() || GLOBAL.equals(parts.get(0))) {
+                continue;
+            }
+            String country = parts.get(0);
+            places.putIfAbsent(country, new Place(country, null));
+            for (int i = 1; i < parts.size(); i++) {
+                places.putIfAbsent(parts.get(i), new Place(country, parts.get(1)));
+            }
+        }
+        gazetteer = Map.copyOf(places);
+        log.info("地名表已重建：{} 个地名", places.size());
+    }
+
+    public Optional<Filter.Expression> resolve(String destination, String query) {
+        return resolve(destination, null, query);
+    }
+
+    /**
+     * 优先识别目的地，目的地为空或不在地名表中时识别查询文本；都识别不到时不过滤（避免漏掉相关文档）。
+     * category 非空时追加分类条件
+     */
+    public Optional<Filter.Expression> resolve(String destination, String category, String query) {
+        List<Place> places = detect(destination);
+        if (places.isEmpty()) {
+            places = detect(query);
+        }
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+        FilterExpressionBuilder.Op location = places.isEmpty() ? null : toExpression(b, places);
+        FilterExpressionBuilder.Op categoryOp = category == null || category.isBlank() ? null : b.eq(CATEGORY, category.strip());
+        if (location == null && categoryOp == null) {
+            return Optional.empty();
+        }
+        if (location == null || categoryOp == null) {
+            return Optional.of((location == null ? categoryOp : location).build());
+        }
+        return Optional.of(b.and(location, categoryOp).build());
+    }
+
+    /**
+     * 识别文本中地名所在的国家（取第一个命中的地名），识别不到时返回 empty
+     */
+    public Optional<String> country(String text) {
+        return detect(text).stream().map(Place::country).findFirst();
+    }
+
+    /**
+     * 文本中识别到的地名，格式为 国家/城市（国家级地名为 国家/*），识别不到时返回空集合
+     */
+    public Set<String> places(String text) {
+        Set<String> places = new LinkedHashSet<>();
+        for (Place place : detect(text)) {
+            places.add(place.country() + "/" + (place.city() == null ? ANY_CITY : place.city()));
+        }
+        return places;
+    }
+
+    /**
+     * 识别文本中的地名；同一国家同时命中国家和城市时只保留城市
+     */
+    List<Place> detect(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        Set<Place> matched = new LinkedHashSet<>();
+        gazetteer.forEach((name, place) -> {
+            if (text.contains(name)) {
+                matched.add(place);
+            }
+        });
+        return matched.stream()
+                .filter(place -> place.city() != null
+                        || matched.stream().noneMatch(other -> other.city() != null && other.country().equals(place.country())))
+                .toList();
+    }
+
+    /**
+     * (country = 国家) 或 (country = 国家 且 city in [城市, *])，并始终包含全球分区
+     */
+    private static FilterExpressionBuilder.Op toExpression(FilterExpressionBuilder b, List<Place> places) {
+        FilterExpressionBuilder.Op expression = b.eq(COUNTRY, GLOBAL);
+        for (Place place : places) {
+            FilterExpressionBuilder.Op clause = place.city() == null
+                    ? b.eq(COUNTRY, place.country())
+                    : b.and(b.eq(COUNTRY, place.country()), b.in(CITY, place.city(), ANY_CITY));
+            expression = b.or(expression, clause);
+        }
+        return expression;
+    }
+
+    private static List<String> split(Object location) {
+        List<String> parts = new ArrayList<>();
+        if (location == null) {
+            return parts;
+        }
+        for (String part : location.toString().split("[,，、/]")) {
+            if (!part.isBlank()) {
+                parts.add(part.strip());
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * 地名所在的国家与城市，city 为空表示国家级地名
+     */
+    record Place(String country, String city) {
+    }
+}
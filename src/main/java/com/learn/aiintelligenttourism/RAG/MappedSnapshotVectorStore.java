@@ -0,0 +1,323 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 基于内存映射快照文件的向量库（spring.ai.vectorstore.type=mmap）
+ * 启动时只映射 {@link VectorSnapshot} 文件，毫秒级即可检索，与语料规模无关；新实例直接复用已有快照，无需重新 Embedding。
+ * 检索在映射的缓冲区上暴力计算，文档只在命中（或按元数据过滤）时解码。
+ * 入库时只对新增片段 Embedding，与快照中保留的向量一起写入新文件，再原子替换文件和映射；
+ * 快照中的 content_hash 即入库清单，无需单独的清单文件。
+ * 快照的 CRC32C 在后台校验，校验失败后检索抛出异常（混合检索随即退化为关键词检索），
+ * 并通知入库服务（{@link #onCorrupted}）重新全量入库，写出新快照后恢复。
+ * <p>
+ * oversampling 大于 0 时（spring.ai.vectorstore.type=int8）在堆内维护 {@link QuantizedVectorIndex}：
+ * 先用 int8 向量粗排出 topK * oversampling 个候选，再读取快照中对应的 float32 向量精排，
+ * float32 向量只在映射的页缓存中，不占用堆内存
+ */
+@Slf4j
+public class MappedSnapshotVectorStore implements BatchUpdatableVectorStore {
+
+    private final EmbeddingModel embeddingModel;
+    private final BatchingStrategy batchingStrategy = new TokenCountBatchingStrategy();
+    private final Path path;
+    private final boolean quantized;
+    private final int oversampling;
+    // 入库时的并发分批 Embedding（为空时按 batchingStrategy 顺序 Embedding）
+    private final IngestionExecutor ingestionExecutor;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Mapped mapped;
+    // 快照校验失败时的回调
+    private volatile Runnable corruptionListener;
+
+    public MappedSnapshotVectorStore(EmbeddingModel embeddingModel, Path path, boolean quantized, boolean verify) {
+        this(embeddingModel, path, quantized, verify, 0, null);
+    }
+
+    public MappedSnapshotVectorStore(EmbeddingModel embeddingModel, Path path, boolean quantized, boolean verify,
+                                     int oversampling, IngestionExecutor ingestionExecutor) {
+        this.embeddingModel = embeddingModel;
+        this.path = path;
+        this.quantized = quantized;
+        this.oversampling = oversampling;
+        this.ingestionExecutor = ingestionExecutor;
+        if (Files.exists(path)) {
+            long start = System.nanoTime();
+            try {
+                this.mapped = map();
+                log.info("已映射向量快照 {}：{} 个文档，{} 字节，耗时 {} ms", path, mapped.snapshot().size(),
+                        mapped.snapshot().byteSize(), (System.nanoTime() - start) / 1_000_000);
+                if (verify) {
+                    Mapped opened = mapped;
+                    Thread.ofVirtual().name("snapshot-verify").start(() -> verifyInBackground(opened));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.error("向量快照不可用，将在入库时重建: {}", path, e);
+            }
+        }
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        update(documents, List.of());
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        update(List.of(), idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        MetadataFilter filter = new MetadataFilter(filterExpression);
+        writeLock.lock();
+        try {
+            Mapped current = mapped;
+            List<String> ids = new ArrayList<>();
+            for (int node = 0; current != null && node < current.snapshot().size(); node++) {
+                Document document = current.document(node);
+                if (filter.test(document)) {
+                    ids.add(document.getId());
+                }
+            }
+            update(List.of(), ids);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 保留快照中未删除、未被覆盖的文档和向量，加上新增文档，写出新快照并原子替换
+     */
+    @Override
+    public void update(List<Document> toAdd, List<String> toDelete) {
+        if (toAdd.isEmpty() && toDelete.isEmpty()) {
+            return;
+        }
+        // 先在锁外完成 Embedding（网络调用）
+        List<float[]> embeddings = toAdd.isEmpty() ? List.of()
+                : ingestionExecutor != null ? ingestionExecutor.embed(embeddingModel, toAdd)
+                : embeddingModel.embed(toAdd, EmbeddingOptionsBuilder.builder().build(), batchingStrategy);
+        writeLock.lock();
+        try {
+            // 校验失败的快照不再复用
+            Mapped current = mapped == null || mapped.corrupted() ? null : mapped;
+            Set<String> removed = new HashSet<>(toDelete);
+            toAdd.forEach(document -> removed.add(document.getId()));
+
+            List<Document> documents = new ArrayList<>();
+            List<float[]> vectors = new ArrayList<>();
+            for (int node = 0; current != null && node < current.snapshot().size(); node++) {
+                Document document = current.document(node);
+                if (!removed.contains(document.getId())) {
+                    documents.add(document);
+                    vectors.add(current.snapshot().vector(node));
+                }
+            }
+            documents.addAll(toAdd);
+            vectors.addAll(embeddings);
+
+            int dimension = !vectors.isEmpty() ? vectors.get(0).length
+                    : current != null ? current.snapshot().dimension() : 0;
+            Path directory = path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, "vector-snapshot-", ".tmp");
+            try {
+                VectorSnapshot.write(tmp, dimension, quantized, documents, vectors);
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            // 旧映射在进行中的检索结束后由 GC 回收
+            mapped = map();
+        } catch (IOException e) {
+            throw new UncheckedIOException("向量快照写入失败: " + path, e);
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("向量快照更新：新增 {} 个、删除 {} 个文档，当前共 {} 个", toAdd.size(), toDelete.size(), size());
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        Mapped current = mapped;
+        if (current == null) {
+            return List.of();
+        }
+        if (current.corrupted()) {
+            throw new IllegalStateException("向量快照校验失败，等待重新入库: " + path);
+        }
+        float[] query = ScalarQuantizer.normalize(embeddingModel.embed(request.getQuery()));
+        IntPredicate accept = null;
+        if (request.hasFilterExpression()) {
+            MetadataFilter filter = new MetadataFilter(request.getFilterExpression());
+            accept = node -> filter.test(current.document(node));
+        }
+        List<HnswIndex.Scored> hits = current.index() != null
+                ? current.index().search(query, request.getTopK(), oversampling, accept, current.snapshot()::vector)
+                : current.snapshot().search(query, request.getTopK(), accept);
+
+        List<Document> results = new ArrayList<>(hits.size());
+        for (HnswIndex.Scored hit : hits) {
+            if (hit.score() >= request.getSimilarityThreshold()) {
+                results.add(withScore(current.document(hit.node()), hit.score()));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public String getName() {
+        return "MappedSnapshotVectorStore";
+    }
+
+    public int size() {
+        Mapped current = mapped;
+        return current == null ? 0 : current.snapshot().size();
+    }
+
+    /**
+     * 当前映射的快照是否校验失败
+     */
+    public boolean isCorrupted() {
+        Mapped current = mapped;
+        return current != null && current.corrupted();
+    }
+
+    /**
+     * 注册快照校验失败时的回调（在校验线程上执行）；注册时已经校验失败则立即回调
+     */
+    public void onCorrupted(Runnable listener) {
+        corruptionListener = listener;
+        if (isCorrupted()) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 快照中的 内容哈希 -> 文档 ID（作为增量入库的清单）
+     */
+    public Map<String, String> contentManifest() {
+        Mapped current = mapped == null || mapped.corrupted() ? null : mapped;
+        Map<String, String> manifest = new LinkedHashMap<>();
+        for (int node = 0; current != null && node < current.snapshot().size(); node++) {
+            Document document = current.document(node);
+            Object hash = document.getMetadata().get(DocumentIngestionService.CONTENT_HASH);
+            if (hash != null) {
+                manifest.put(hash.toString(), document.getId());
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * 映射快照文件；启用 int8 粗排时同时构建堆内的量化索引（快照本身已是 int8 时直接在快照上检索）
+     */
+    private Mapped map() throws IOException {
+        VectorSnapshot snapshot = VectorSnapshot.open(path);
+        if (oversampling <= 0 || snapshot.isQuantized()) {
+            return new Mapped(snapshot, null);
+        }
+        QuantizedVectorIndex index = QuantizedVectorIndex.of(snapshot);
+        log.info("int8 向量索引：{} 个向量，每个 {} 字节（float32 为 {} 字节），共 {} KB", index.size(),
+                index.bytesPerVector(), index.dimension() * Float.BYTES,
+                (long) index.size() * index.bytesPerVector() / 1024);
+        return new Mapped(snapshot, index);
+    }
+
+    private void verifyInBackground(Mapped opened) {
+        long start = System.nanoTime();
+        try {
+            opened.snapshot().verify();
+            log.info("向量快照校验通过，耗时 {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (IllegalStateException e) {
+            opened.markCorrupted();
+            log.error("向量快照校验失败，检索将不可用，直到重新入库写出新快照", e);
+            Runnable listener = corruptionListener;
+            // 校验期间已经写出了新快照时无需重建
+            if (listener != null && opened == mapped) {
+                listener.run();
+            }
+        }
+    }
+
+    private static Document withScore(Document document, float score) {
+        Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+        metadata.put("distance", 1 - score);
+        return Document.builder()
+                .id(document.getId())
+                .text(document.getText())
+                .metadata(metadata)
+                .score((double) score)
+                .build();
+    }
+
+    /**
+     * 一次映射：快照 + int8 量化索引（未启用时为 null） + 已解码文档的缓存 + 校验状态
+     */
+    private static final class Mapped {
+
+        private final VectorSnapshot snapshot;
+        private final QuantizedVectorIndex index;
+        private final AtomicReferenceArray<Document> documents;
+        private volatile boolean corrupted;
+
+        Mapped(VectorSnapshot snapshot, QuantizedVectorIndex index) {
+            this.snapshot = snapshot;
+            this.index = index;
+            this.documents = new AtomicReferenceArray<>(snapshot.size());
+        }
+
+        VectorSnapshot snapshot() {
+            return snapshot;
+        }
+
+        QuantizedVectorIndex index() {
+            return index;
+        }
+
+        /**
+         * 按需解码并缓存（按元数据过滤时首次会解码全部文档）
+         */
+        Document document(int node) {
+            Document document = documents.get(node);
+            if (document == null) {
+                document = snapshot.document(node);
+                documents.lazySet(node, document);
+            }
+            return document;
+        }
+
+        boolean corrupted() {
+            return corrupted;
+        }
+
+        void markCorrupted() {
+            corrupted = true;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * 内存映射快照向量库配置
+ * spring.ai.vectorstore.type=mmap 时生效：启动时映射已有的快照文件即可检索，
+ * {@link DocumentIngestionService} 只对快照中没有的片段 Embedding 并写出新快照
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.ai.vectorstore.type", havingValue = "mmap")
+public class MappedSnapshotVectorStoreConfig {
+
+    @Bean
+    public VectorStore mappedSnapshotVectorStore(EmbeddingModel embeddingModel,
+                                                 IngestionExecutor ingestionExecutor,
+                                                 @Value("${tourism.rag.snapshot.path:data/vector-snapshot.bin}") String path,
+                                                 @Value("${tourism.rag.snapshot.quantized:false}") boolean quantized,
+                                                 @Value("${tourism.rag.snapshot.verify:true}") boolean verify) {
+        return new MappedSnapshotVectorStore(embeddingModel, Path.of(path), quantized, verify, 0, ingestionExecutor);
+    }
+}
@@ -0,0 +1,36 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionConverter;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.util.function.Predicate;
+
+/**
+ * 在内存中对文档元数据求值的过滤条件
+ * 与 SimpleVectorStore 一致：Filter.Expression 转换为 SpEL，在 #metadata 上求值；
+ * 进程内向量库和关键词索引共用，保证两路检索的过滤语义相同
+ */
+public class MetadataFilter implements Predicate<Document> {
+
+    private static final ExpressionParser PARSER = new SpelExpressionParser();
+    private static final FilterExpressionConverter CONVERTER = new SimpleVectorStoreFilterExpressionConverter();
+
+    private final Expression expression;
+
+    public MetadataFilter(Filter.Expression filterExpression) {
+        this.expression = PARSER.parseExpression(CONVERTER.convertExpression(filterExpression));
+    }
+
+    @Override
+    public boolean test(Document document) {
+        StandardEvaluationContext context = new StandardEvaluationContext();
+        context.setVariable("metadata", document.getMetadata());
+        return Boolean.TRUE.equals(expression.getValue(context, Boolean.class));
+    }
+}
@@ -0,0 +1,124 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * int8 量化的内存向量索引（余弦相似度）
+ * 每个向量量化为 dimension 个字节 + 一个 float 缩放系数（见 {@link ScalarQuantizer}），连续存放在一个 byte[] 中，
+ * 1536 维时每个向量 1540 字节，约为 float32 的 1/4。
+ * 检索分两步：先把查询向量也量化为 int8，用整数内积粗排（顺序扫描，见 {@link ScalarQuantizer#dot}），
+ * 取 k * oversampling 个候选后再用原始 float 向量精确重排，精排只读取少量候选的 float 向量。
+ * 本类不是线程安全的：写操作需要外部同步，且不能与读并发
+ */
+public class QuantizedVectorIndex {
+
+    private final int dimension;
+    private byte[] codes;
+    private float[] scales;
+    private int size;
+
+    public QuantizedVectorIndex(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("invalid dimension " + dimension);
+        }
+        this.dimension = dimension;
+        this.codes = new byte[dimension * 16];
+        this.scales = new float[16];
+    }
+
+    /**
+     * 由 float32 快照构建（快照中的向量已归一化）
+     */
+    public static QuantizedVectorIndex of(VectorSnapshot snapshot) {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(Math.max(1, snapshot.dimension()));
+        for (int node = 0; node < snapshot.size(); node++) {
+            index.add(snapshot.vector(node));
+        }
+        return index;
+    }
+
+    /**
+     * 归一化后量化插入，返回节点编号（从 0 开始连续递增）
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("expected dimension " + dimension + " but got " + vector.length);
+        }
+        if (size == scales.length) {
+            scales = Arrays.copyOf(scales, size * 2);
+            codes = Arrays.copyOf(codes, size * 2 * dimension);
+        }
+        scales[size] = ScalarQuantizer.quantize(ScalarQuantizer.normalize(vector), codes, size * dimension);
+        return size++;
+    }
+
+    /**
+     * 粗排 + 精排的 top-k，query 需已归一化；exact 返回节点的原始（归一化）向量，为空时直接返回粗排结果
+     */
+    public List<HnswIndex.Scored> search(float[] query, int k, int oversampling, IntPredicate accept,
+                                         IntFunction<float[]> exact) {
+        List<HnswIndex.Scored> candidates = scan(query, exact == null ? k : k * Math.max(1, oversampling), accept);
+        if (exact == null) {
+            return candidates;
+        }
+        List<HnswIndex.Scored> reranked = new ArrayList<>(candidates.size());
+        for (HnswIndex.Scored candidate : candidates) {
+            reranked.add(new HnswIndex.Scored(candidate.node(), dot(exact.apply(candidate.node()), query)));
+        }
+        reranked.sort(Comparator.comparingDouble(HnswIndex.Scored::score).reversed());
+        return reranked.size() > k ? new ArrayList<>(reranked.subList(0, k)) : reranked;
+    }
+
+    /**
+     * int8 粗排：查询向量量化后顺序扫描全部向量，保留相似度最高的 limit 个
+     */
+    private List<HnswIndex.Scored> scan(float[] query, int limit, IntPredicate accept) {
+        byte[] quantizedQuery = new byte[dimension];
+        float queryScale = ScalarQuantizer.quantize(query, quantizedQuery, 0);
+        PriorityQueue<HnswIndex.Scored> top = new PriorityQueue<>(Comparator.comparingDouble(HnswIndex.Scored::score));
+        for (int node = 0; node < size; node++) {
+            if (accept != null && !accept.test(node)) {
+                continue;
+            }
+            float score = ScalarQuantizer.dot(codes, node * dimension, quantizedQuery) * scales[node] * queryScale;
+            if (top.size() < limit) {
+                top.offer(new HnswIndex.Scored(node, score));
+            } else if (score > top.peek().score()) {
+                top.poll();
+                top.offer(new HnswIndex.Scored(node, score));
+            }
+        }
+        List<HnswIndex.Scored> results = new ArrayList<>(top);
+        results.sort(Comparator.comparingDouble(HnswIndex.Scored::score).reversed());
+        return results;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 每个向量占用的字节数（量化值 + 缩放系数），float32 为 dimension * 4
+     */
+    public int bytesPerVector() {
+        return dimension + Float.BYTES;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
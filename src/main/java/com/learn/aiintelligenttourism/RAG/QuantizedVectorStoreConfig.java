@@ -0,0 +1,30 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * int8 量化向量库配置
+ * spring.ai.vectorstore.type=int8 时生效：float32 向量保存在内存映射快照中（与 mmap 共用 tourism.rag.snapshot 配置），
+ * 堆内只保留 int8 量化索引用于粗排，候选再用快照中的 float32 向量精排
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.ai.vectorstore.type", havingValue = "int8")
+public class QuantizedVectorStoreConfig {
+
+    @Bean
+    public VectorStore quantizedVectorStore(EmbeddingModel embeddingModel,
+                                            IngestionExecutor ingestionExecutor,
+                                            @Value("${tourism.rag.snapshot.path:data/vector-snapshot.bin}") String path,
+                                            @Value("${tourism.rag.snapshot.verify:true}") boolean verify,
+                                            @Value("${tourism.rag.int8.oversampling:8}") int oversampling) {
+        return new MappedSnapshotVectorStore(embeddingModel, Path.of(path), false, verify, Math.max(1, oversampling),
+                ingestionExecutor);
+    }
+}
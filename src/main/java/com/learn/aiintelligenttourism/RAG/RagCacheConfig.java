@@ -0,0 +1,64 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * RAG 缓存配置
+ * 用 BeanPostProcessor 把容器里的 EmbeddingModel 和 VectorStore 包装成带缓存的装饰器，
+ * 这样 RAG Advisor、知识库工具以及 VectorStore 内部对 Embedding 的调用都共享同一层缓存
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "tourism.rag.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class RagCacheConfig {
+
+    @Bean
+    public static BeanPostProcessor ragCacheBeanPostProcessor(
+            @Value("${tourism.rag.cache.embedding.maximum-size:10000}") long embeddingMaximumSize,
+            @Value("${tourism.rag.cache.result.maximum-size:2000}") long resultMaximumSize,
+            @Value("${tourism.rag.cache.result.expire-after-write:10m}") Duration resultExpireAfterWrite) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof EmbeddingModel embeddingModel && !(bean instanceof CachingEmbeddingModel)) {
+                    log.info("为 EmbeddingModel [{}] 启用查询向量缓存", beanName);
+                    return new CachingEmbeddingModel(embeddingModel, embeddingMaximumSize);
+                }
+                if (bean instanceof VectorStore vectorStore && !(bean instanceof CachingVectorStore)) {
+                    log.info("为 VectorStore [{}] 启用检索结果缓存", beanName);
+                    return new CachingVectorStore(vectorStore, resultMaximumSize, resultExpireAfterWrite);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * 所有单例创建完成后再注册缓存指标，避免在 BeanPostProcessor 中提前初始化 MeterRegistry
+     */
+    @Bean
+    public SmartInitializingSingleton ragCacheMetricsBinder(ConfigurableListableBeanFactory beanFactory,
+                                                            ObjectProvider<MeterRegistry> meterRegistry) {
+        return () -> meterRegistry.ifAvailable(registry -> {
+            beanFactory.getBeansOfType(EmbeddingModel.class).values().stream()
+                    .filter(CachingEmbeddingModel.class::isInstance)
+                    .forEach(model -> ((CachingEmbeddingModel) model).bindMetrics(registry, "rag.embedding"));
+            beanFactory.getBeansOfType(VectorStore.class).values().stream()
+                    .filter(CachingVectorStore.class::isInstance)
+                    .forEach(store -> ((CachingVectorStore) store).bindMetrics(registry, "rag.retrieval"));
+        });
+    }
+}
@@ -0,0 +1,67 @@
+package com.learn.aiintelligenttourism.RAG;
+
+/**
+ * int8 标量量化（每个向量一个缩放系数）
+ * scale = max|v| / 127，q = round(v / scale)，还原 v ≈ q * scale；
+ * 1536 维向量从 6144 字节（float32）降为 1536 + 4 字节，余弦相似度误差通常在 1e-2 以内，适合粗排
+ */
+public final class ScalarQuantizer {
+
+    private ScalarQuantizer() {
+    }
+
+    /**
+     * 量化 vector 写入 out[offset, offset + vector.length)，返回缩放系数
+     */
+    public static float quantize(float[] vector, byte[] out, int offset) {
+        float max = 0;
+        for (float v : vector) {
+            max = Math.max(max, Math.abs(v));
+        }
+        float scale = max == 0 ? 1 : max / 127f;
+        float inverse = 1 / scale;
+        for (int i = 0; i < vector.length; i++) {
+            out[offset + i] = (byte) Math.round(vector[i] * inverse);
+        }
+        return scale;
+    }
+
+    /**
+     * 两个量化向量的整数内积 Σ a[offset + i] * b[i]，乘以两者的缩放系数即为近似内积。
+     * 查询向量也量化为 int8 后累加到 int：整数加法满足结合律，C2 可以把循环编译为 SIMD 归约；
+     * float 累加必须按顺序执行，不会被自动向量化。|q| <= 127，4096 维以内不会溢出
+     */
+    public static int dot(byte[] a, int offset, byte[] b) {
+        int sum = 0;
+        for (int i = 0; i < b.length; i++) {
+            sum += a[offset + i] * b[i];
+        }
+        return sum;
+    }
+
+    public static float[] dequantize(byte[] quantized, int offset, float scale, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = quantized[offset + i] * scale;
+        }
+        return vector;
+    }
+
+    /**
+     * 归一化为单位向量（余弦相似度 = 内积）
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = vector.clone();
+        if (norm > 0) {
+            float inverse = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= inverse;
+            }
+        }
+        return normalized;
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.ai.document.Document;
 
 import org.springframework.ai.reader.markdown.MarkdownDocumentReader;
 import org.springframework.ai.reader.markdown.config.MarkdownDocumentReaderConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.core.io.support.ResourcePatternResolver;
@@ -15,10 +16,16 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 恋爱大师应用文档加载器
@@ -30,44 +37,83 @@ public class TourismAppDocumentReader {
 
     private final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
 
+    // 外部文档目录（可选），新增攻略放到该目录即可，无需重新打包
+    @Value("${tourism.rag.documents.external-dir:}")
+    private String externalDir;
+
     /**
      * 读取多篇markdown文档
+     * 每篇文档在独立的虚拟线程上读取和切分，结果按文档顺序合并
+     * 任一文档读取失败时抛出异常而不是返回部分结果，否则增量入库会把缺失文档的片段当作已删除
      * @return void
      */
     public List<Document> loadMarkdowns(){
         List<Document> documents = new ArrayList<Document>();
 
-        try {
-            Resource[] resources = resolver.getResources("classpath*:document/*.md");
-            for (Resource resource : resources) {
-                String filename = resource.getFilename();
-                assert filename != null;
-                // 1. 提取 Front Matter 元数据 (title, category, location, etc.)
-                Map<String, Object> additionalMetadata = extractFrontMatter(resource);
-                additionalMetadata.put("filename", filename);
-                MarkdownDocumentReaderConfig config = MarkdownDocumentReaderConfig.builder()
-                        .withHorizontalRuleCreateDocument(true)
-                        // 不加载 代码块
-                        .withIncludeCodeBlock(false)
-                        // 不加载 引用块
-                        .withIncludeBlockquote(false)
-                        // 添加从文件头获取的元数据
-                        .withAdditionalMetadata(additionalMetadata)
-                        .build();
-                MarkdownDocumentReader markdownDocumentReader = new MarkdownDocumentReader(resource, config);
-                // 3. 获取文档片段
-                List<Document> resourceDocuments = markdownDocumentReader.get();
-                documents.addAll(resourceDocuments);
-
-
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<Document>>> futures = new ArrayList<>();
+            for (Resource resource : listResources()) {
+                futures.add(executor.submit(() -> loadMarkdown(resource)));
+            }
+            for (Future<List<Document>> future : futures) {
+                documents.addAll(future.get());
             }
         } catch (IOException e) {
-            log.error("markdown 文档加载失败",e);
+            throw new IllegalStateException("markdown 文档列表读取失败", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("markdown 文档加载失败", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("markdown 文档加载被中断", e);
         }
         return documents;
 
     }
 
+    /**
+     * 列出全部知识库文档：classpath 下的 document/*.md 以及外部文档目录下的 *.md
+     */
+    public List<Resource> listResources() throws IOException {
+        List<Resource> resources = new ArrayList<>(List.of(resolver.getResources("classpath*:document/*.md")));
+        Path directory = externalDirectory();
+        if (directory != null && Files.isDirectory(directory)) {
+            resources.addAll(List.of(resolver.getResources(directory.toUri() + "*.md")));
+        }
+        return resources;
+    }
+
+    /**
+     * 读取单篇 markdown 文档并切分为片段
+     */
+    public List<Document> loadMarkdown(Resource resource) {
+        String filename = resource.getFilename();
+        assert filename != null;
+        // 1. 提取 Front Matter 元数据 (title, category, location, etc.)
+        Map<String, Object> additionalMetadata = extractFrontMatter(resource);
+        additionalMetadata.put("filename", filename);
+        // 2. 由 location 生成分区字段 country / city，按目的地过滤检索
+        additionalMetadata.putAll(LocationFilterResolver.partition(additionalMetadata.get("location")));
+        MarkdownDocumentReaderConfig config = MarkdownDocumentReaderConfig.builder()
+                .withHorizontalRuleCreateDocument(true)
+                // 不加载 代码块
+                .withIncludeCodeBlock(false)
+                // 不加载 引用块
+                .withIncludeBlockquote(false)
+                // 添加从文件头获取的元数据
+                .withAdditionalMetadata(additionalMetadata)
+                .build();
+        MarkdownDocumentReader markdownDocumentReader = new MarkdownDocumentReader(resource, config);
+        // 3. 获取文档片段
+        return markdownDocumentReader.get();
+    }
+
+    /**
+     * 外部文档目录，未配置时返回 null
+     */
+    public Path externalDirectory() {
+        return externalDir == null || externalDir.isBlank() ? null : Path.of(externalDir).toAbsolutePath().normalize();
+    }
+
     /**
      * 手动解析 Markdown 顶部的 YAML Front Matter
      * 格式示例：
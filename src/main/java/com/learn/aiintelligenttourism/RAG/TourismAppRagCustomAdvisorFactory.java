@@ -1,6 +1,11 @@
 package com.learn.aiintelligenttourism.RAG;
 
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatModel;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -8,15 +13,21 @@ import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.rag.advisor.RetrievalAugmentationAdvisor;
 import org.springframework.ai.rag.generation.augmentation.ContextualQueryAugmenter;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
 import org.springframework.ai.rag.preretrieval.query.transformation.RewriteQueryTransformer;
 import org.springframework.ai.rag.preretrieval.query.transformation.TranslationQueryTransformer;
 import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
 import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 @Slf4j
 @Component
 public class TourismAppRagCustomAdvisorFactory {
@@ -28,28 +39,98 @@ public class TourismAppRagCustomAdvisorFactory {
     @Autowired
     private DashScopeChatModel dashscopeChatModel;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private KeywordIndex keywordIndex;
+
+    @Autowired
+    private LocationFilterResolver locationFilterResolver;
+
+    @Value("${tourism.rag.hybrid.enabled:true}")
+    private boolean hybridEnabled;
+
+    @Value("${tourism.rag.hybrid.vector-timeout:800ms}")
+    private Duration vectorTimeout;
+
+    // 缓存的翻译结果数量
+    private static final long TRANSLATION_CACHE_SIZE = 2000;
+
+    // 翻译结果与 Advisor 实例无关，所有实例共享一个缓存；缓存指标只在 Spring 的 Advisor Bean 中注册一次
+    private static final Cache<String, String> TRANSLATIONS = Caffeine.newBuilder()
+            .maximumSize(TRANSLATION_CACHE_SIZE)
+            .recordStats()
+            .build();
+
+    // 返回文档数量
+    private static final int TOP_K = 4;
+
     public static Advisor createTourismAppRagCustomAdvisor(VectorStore vectorStore,ChatModel chatModel) {
-        DocumentRetriever documentRetriever = VectorStoreDocumentRetriever.builder()
+        return createTourismAppRagCustomAdvisor(vectorStore, chatModel, Metrics.globalRegistry);
+    }
+
+    public static Advisor createTourismAppRagCustomAdvisor(VectorStore vectorStore, ChatModel chatModel, MeterRegistry meterRegistry) {
+        return createTourismAppRagCustomAdvisor(vectorRetriever(vectorStore), null, chatModel, meterRegistry);
+    }
+
+    /**
+     * 混合检索（BM25 + 向量，RRF 融合），向量检索超过 vectorTimeout 时仅使用关键词检索结果；
+     * 按目的地（上下文或查询文本中的地名）自动过滤检索范围
+     */
+    public static Advisor createTourismAppRagCustomAdvisor(VectorStore vectorStore, KeywordIndex keywordIndex,
+                                                           LocationFilterResolver locationFilterResolver,
+                                                           Duration vectorTimeout, ChatModel chatModel,
+                                                           MeterRegistry meterRegistry) {
+        DocumentRetriever documentRetriever = new HybridDocumentRetriever(
+                vectorRetriever(vectorStore), keywordIndex, TOP_K, vectorTimeout, meterRegistry);
+        return createTourismAppRagCustomAdvisor(documentRetriever, locationFilterResolver, chatModel, meterRegistry);
+    }
+
+    private static DocumentRetriever vectorRetriever(VectorStore vectorStore) {
+        // 过滤条件由 LocationFilterQueryTransformer 按目的地写入查询上下文；过滤后为空时（旧数据没有分区字段）不过滤重试
+        return new LocationFallbackDocumentRetriever(VectorStoreDocumentRetriever.builder()
                 .vectorStore(vectorStore)
-                //.filterExpression(expression) // 过滤条件
                 .similarityThreshold(0.5) // 相似度阈值
-                .topK(4) // 返回文档数量
-                .build();
+                .topK(TOP_K) // 返回文档数量
+                .build());
+    }
+
+    /**
+     * locationFilterResolver 为空时不按目的地过滤
+     */
+    private static Advisor createTourismAppRagCustomAdvisor(DocumentRetriever documentRetriever,
+                                                            LocationFilterResolver locationFilterResolver,
+                                                            ChatModel chatModel, MeterRegistry meterRegistry) {
+        List<QueryTransformer> queryTransformers = new ArrayList<>();
+        // 已是中文的查询（绝大多数流量）跳过翻译，省掉一次大模型调用
+        queryTransformers.add(new ChineseAwareTranslationQueryTransformer(
+                TranslationQueryTransformer.builder()
+                        .chatClientBuilder(ChatClient.builder(chatModel))
+                        .targetLanguage("chinese")
+                        .build(),
+                TRANSLATIONS,
+                meterRegistry));
+        if (locationFilterResolver != null) {
+            queryTransformers.add(new LocationFilterQueryTransformer(locationFilterResolver));
+        }
         return RetrievalAugmentationAdvisor.builder()
                 .documentRetriever(documentRetriever)
                 .queryAugmenter(ContextualQueryAugmenter.builder()
                         .allowEmptyContext(true)
                         .build())
-                .queryTransformers(TranslationQueryTransformer.builder()
-                        .chatClientBuilder(ChatClient.builder(chatModel))
-                        .targetLanguage("chinese")
-                        .build())
+                .queryTransformers(queryTransformers)
                 .build();
     }
 
     @Bean
     public Advisor tourismAppRagCustomAdvisor() {
-        return createTourismAppRagCustomAdvisor(vectorStore, dashscopeChatModel);
+        CaffeineCacheMetrics.monitor(meterRegistry, TRANSLATIONS, "rag.translation");
+        if (hybridEnabled) {
+            return createTourismAppRagCustomAdvisor(vectorStore, keywordIndex, locationFilterResolver, vectorTimeout,
+                    dashscopeChatModel, meterRegistry);
+        }
+        return createTourismAppRagCustomAdvisor(vectorRetriever(vectorStore), locationFilterResolver, dashscopeChatModel, meterRegistry);
     }
 
 
@@ -0,0 +1,296 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32C;
+
+/**
+ * 内存映射的向量快照文件（只读）
+ * 文件布局（小端序）：
+ * <pre>
+ * [0, 64)        文件头：magic、版本、维度、文档数、标志位（int8 量化）、各段偏移、文件长度、CRC32C
+ * offsets        long[count + 1]，每个文档 JSON 在 documents 段内的起止位置
+ * documents      文档 JSON（id、text、metadata），检索命中时才解码
+ * vectors        float32 模式：float[count * dimension]（已归一化）
+ *                int8 模式：float[count] 缩放系数 + byte[count * dimension]
+ * </pre>
+ * 打开时只读取文件头并映射文件，检索直接在映射的缓冲区上计算，不做反序列化；
+ * CRC32C 覆盖文件头之后的全部内容，由 {@link #verify()} 校验
+ */
+public final class VectorSnapshot {
+
+    private static final int MAGIC = 0x54565331; // "TVS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int FLAG_INT8 = 1;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int dimension;
+    private final int count;
+    private final boolean quantized;
+    private final long offsetsOffset;
+    private final long documentsOffset;
+    private final long crc;
+    private final FloatBuffer floats;
+    private final FloatBuffer scales;
+    private final ByteBuffer bytes;
+
+    private VectorSnapshot(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE) {
+            throw new IllegalStateException("不是向量快照文件: " + path);
+        }
+        ByteBuffer header = buffer.slice(0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MAGIC) {
+            throw new IllegalStateException("不是向量快照文件: " + path);
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IllegalStateException("不支持的向量快照版本 " + header.getInt(4) + ": " + path);
+        }
+        this.dimension = header.getInt(8);
+        this.count = header.getInt(12);
+        this.quantized = (header.getInt(16) & FLAG_INT8) != 0;
+        this.offsetsOffset = header.getLong(24);
+        this.documentsOffset = header.getLong(32);
+        long vectorsOffset = header.getLong(40);
+        if (header.getLong(48) != buffer.capacity()) {
+            throw new IllegalStateException("向量快照文件长度不符（文件不完整）: " + path);
+        }
+        this.crc = header.getLong(56);
+
+        int vectorsLength = buffer.capacity() - (int) vectorsOffset;
+        ByteBuffer vectors = buffer.slice((int) vectorsOffset, vectorsLength).order(ByteOrder.LITTLE_ENDIAN);
+        if (quantized) {
+            this.floats = null;
+            this.scales = vectors.slice(0, count * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            this.bytes = vectors.slice(count * Float.BYTES, count * dimension);
+        } else {
+            this.floats = vectors.asFloatBuffer();
+            this.scales = null;
+            this.bytes = null;
+        }
+    }
+
+    /**
+     * 映射快照文件，只读取文件头
+     */
+    public static VectorSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("向量快照超过 2GB，请启用 int8 量化: " + path);
+            }
+            return new VectorSnapshot(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 写入快照：vectors 与 documents 一一对应，写入前归一化
+     */
+    public static void write(Path path, int dimension, boolean quantized, List<Document> documents, List<float[]> vectors)
+            throws IOException {
+        int count = documents.size();
+        List<byte[]> encoded = new ArrayList<>(count);
+        long[] offsets = new long[count + 1];
+        for (int i = 0; i < count; i++) {
+            Document document = documents.get(i);
+            byte[] json = OBJECT_MAPPER.writeValueAsBytes(Map.of(
+                    "id", document.getId(),
+                    "text", document.getText() == null ? "" : document.getText(),
+                    "metadata", document.getMetadata()));
+            encoded.add(json);
+            offsets[i + 1] = offsets[i] + json.length;
+        }
+        long offsetsOffset = HEADER_SIZE;
+        long documentsOffset = offsetsOffset + (long) (count + 1) * Long.BYTES;
+        // 向量段按 8 字节对齐
+        long vectorsOffset = (documentsOffset + offsets[count] + 7) & ~7L;
+        long vectorsLength = quantized
+                ? (long) count * Float.BYTES + (long) count * dimension
+                : (long) count * dimension * Float.BYTES;
+        long length = vectorsOffset + vectorsLength;
+
+        CRC32C checksum = new CRC32C();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            ByteBuffer offsetBuffer = ByteBuffer.allocate((count + 1) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (long offset : offsets) {
+                offsetBuffer.putLong(offset);
+            }
+            writeFully(channel, offsetBuffer.flip(), checksum);
+            for (byte[] json : encoded) {
+                writeFully(channel, ByteBuffer.wrap(json), checksum);
+            }
+            writeFully(channel, ByteBuffer.allocate((int) (vectorsOffset - channel.position())), checksum);
+
+            if (quantized) {
+                byte[] quantizedVectors = new byte[count * dimension];
+                ByteBuffer scaleBuffer = ByteBuffer.allocate(count * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < count; i++) {
+                    scaleBuffer.putFloat(ScalarQuantizer.quantize(
+                            ScalarQuantizer.normalize(vectors.get(i)), quantizedVectors, i * dimension));
+                }
+                writeFully(channel, scaleBuffer.flip(), checksum);
+                writeFully(channel, ByteBuffer.wrap(quantizedVectors), checksum);
+            } else {
+                ByteBuffer vectorBuffer = ByteBuffer.allocate(dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < count; i++) {
+                    vectorBuffer.clear();
+                    vectorBuffer.asFloatBuffer().put(ScalarQuantizer.normalize(vectors.get(i)));
+                    writeFully(channel, vectorBuffer, checksum);
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(dimension)
+                    .putInt(count)
+                    .putInt(quantized ? FLAG_INT8 : 0)
+                    .putInt(0)
+                    .putLong(offsetsOffset)
+                    .putLong(documentsOffset)
+                    .putLong(vectorsOffset)
+                    .putLong(length)
+                    .putLong(checksum.getValue());
+            channel.position(0);
+            writeFully(channel, header.flip(), null);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 校验 CRC32C，与文件大小成正比（约 1GB/s），可在后台执行
+     */
+    public void verify() {
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+        if (checksum.getValue() != crc) {
+            throw new IllegalStateException("向量快照校验失败（CRC32C 不一致）: " + path);
+        }
+    }
+
+    /**
+     * 直接在映射的缓冲区上暴力计算前 k 个（query 需已归一化），accept 为空时不过滤
+     */
+    public List<HnswIndex.Scored> search(float[] query, int k, IntPredicate accept) {
+        PriorityQueue<HnswIndex.Scored> top = new PriorityQueue<>(Comparator.comparingDouble(HnswIndex.Scored::score));
+        for (int node = 0; node < count; node++) {
+            if (accept != null && !accept.test(node)) {
+                continue;
+            }
+            float score = score(node, query);
+            if (top.size() < k) {
+                top.offer(new HnswIndex.Scored(node, score));
+            } else if (score > top.peek().score()) {
+                top.poll();
+                top.offer(new HnswIndex.Scored(node, score));
+            }
+        }
+        List<HnswIndex.Scored> results = new ArrayList<>(top);
+        results.sort(Comparator.comparingDouble(HnswIndex.Scored::score).reversed());
+        return results;
+    }
+
+    private float score(int node, float[] query) {
+        float sum = 0;
+        int base = node * dimension;
+        if (quantized) {
+            for (int i = 0; i < dimension; i++) {
+                sum += bytes.get(base + i) * query[i];
+            }
+            return sum * scales.get(node);
+        }
+        for (int i = 0; i < dimension; i++) {
+            sum += floats.get(base + i) * query[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 解码第 node 个文档
+     */
+    public Document document(int node) {
+        ByteBuffer offsets = buffer.slice((int) offsetsOffset, (count + 1) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long start = offsets.getLong(node * Long.BYTES);
+        long end = offsets.getLong((node + 1) * Long.BYTES);
+        byte[] json = new byte[(int) (end - start)];
+        buffer.get((int) (documentsOffset + start), json);
+        try {
+            Map<String, Object> record = OBJECT_MAPPER.readValue(json, new TypeReference<>() {
+            });
+            @SuppressWarnings("unchecked")
+            Map<String, Object> metadata = (Map<String, Object>) record.get("metadata");
+            return Document.builder()
+                    .id((String) record.get("id"))
+                    .text((String) record.get("text"))
+                    .metadata(metadata)
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("向量快照文档解码失败: " + path, e);
+        }
+    }
+
+    /**
+     * 第 node 个向量（已归一化；int8 模式为还原后的近似值）
+     */
+    public float[] vector(int node) {
+        int base = node * dimension;
+        if (quantized) {
+            float[] vector = new float[dimension];
+            float scale = scales.get(node);
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = bytes.get(base + i) * scale;
+            }
+            return vector;
+        }
+        float[] vector = new float[dimension];
+        floats.get(base, vector);
+        return vector;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    public long byteSize() {
+        return buffer.capacity();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer source, CRC32C checksum) throws IOException {
+        if (checksum != null) {
+            checksum.update(source.duplicate());
+        }
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+}
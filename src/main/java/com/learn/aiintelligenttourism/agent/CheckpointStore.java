@@ -0,0 +1,35 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.graph.checkpoint.Checkpoint;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Checkpoint 冷存储（持久化层），每个会话只保存最新的一个 Checkpoint
+ */
+public interface CheckpointStore {
+
+    /**
+     * 读取会话最新的 Checkpoint
+     */
+    Optional<Checkpoint> load(String threadId) throws IOException;
+
+    /**
+     * 覆盖保存会话最新的 Checkpoint
+     */
+    void save(String threadId, Checkpoint checkpoint) throws IOException;
+
+    /**
+     * 删除会话的 Checkpoint
+     * @return 是否存在并已删除
+     */
+    boolean delete(String threadId) throws IOException;
+
+    /**
+     * 删除最后一次保存早于 cutoff 的 Checkpoint（冷层保留期）
+     * @return 删除的数量
+     */
+    int deleteOlderThan(Instant cutoff) throws IOException;
+}
@@ -1,75 +1,72 @@
 package com.learn.aiintelligenttourism.agent;
 
-import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.collection.ListUtil;
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.RunnableConfig;
-import com.alibaba.cloud.ai.graph.action.AsyncNodeActionWithConfig;
-import com.alibaba.cloud.ai.graph.action.InterruptableAction;
-import com.alibaba.cloud.ai.graph.action.InterruptionMetadata;
+import com.alibaba.cloud.ai.graph.action.NodeActionWithConfig;
 import com.learn.aiintelligenttourism.Model.TravelRequirements;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
-import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
 
 import java.time.LocalDate;
-import java.util.*;
-import java.util.concurrent.CompletableFuture;
-
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 循环检查旅游要素节点
+ * 节点本身不保存任何会话状态（可在单例 Graph 中被多个会话并发执行）：
+ * 提取结果写入 travelRequirements，信息不全时把追问写入 followUpQuestion 和 messages，
+ * 由 {@link HumanFeedbackNode} 中断等待用户补充，用户回复追加到 messages 后再回到本节点重新提取。
+ * 一旦提取到目的地就通过 {@link ResearchPrefetcher} 预取调研数据，不必等到出行时间补充完整
+ */
 @Slf4j
-public class CircularInformationExtractorNode implements AsyncNodeActionWithConfig, InterruptableAction {
+public class CircularInformationExtractorNode implements NodeActionWithConfig {
+
+    public static final String HUMAN_FEEDBACK = "human_feedback";
+    public static final String RESEARCH = "research_agent";
 
     private final ChatClient chatClient;
-    private final String nodeId;
     private final ChatOptions chatOptions;
-    private TravelRequirements requirements;
-    private List<Message> newMessageList = new ArrayList<>();
-    // 获取当前日期
-    String today = LocalDate.now().toString();
+    // 可为空（不预取）
+    private final ResearchPrefetcher researchPrefetcher;
+
+    public CircularInformationExtractorNode(ChatClient chatClient) {
+        this(chatClient, null);
+    }
 
-    public CircularInformationExtractorNode(ChatClient chatClient, String nodeId) {
+    public CircularInformationExtractorNode(ChatClient chatClient, ResearchPrefetcher researchPrefetcher) {
         this.chatClient = chatClient;
-        this.nodeId = nodeId;
+        this.researchPrefetcher = researchPrefetcher;
         this.chatOptions = DashScopeChatOptions.builder()
                 .withModel("qwen3-max")
                 .build();
     }
 
-
-    @Override
-    public CompletableFuture<Map<String, Object>> apply(OverAllState state, RunnableConfig config) {
-        List<Message> resMessageList = new ArrayList<>(newMessageList);
-        newMessageList.clear();
-        return CompletableFuture.completedFuture(Map.of(
-                "travelRequirements", requirements,
-                "messages", resMessageList));
+    /**
+     * 条件边：关键信息缺失时去追问，否则进入调研
+     */
+    public static String route(OverAllState state) {
+        TravelRequirements requirements = state.value("travelRequirements")
+                .map(TravelRequirements::from)
+                .orElse(null);
+        return requirements == null || requirements.isMissingCriticalInfo() ? HUMAN_FEEDBACK : RESEARCH;
     }
 
     @Override
-    public Optional<InterruptionMetadata> interrupt(String nodeId, OverAllState state, RunnableConfig config) {
+    public Map<String, Object> apply(OverAllState state, RunnableConfig config) {
         log.info(">>> 进入节点: CircularInformationExtractorNode (信息提取)");
-        String message = state.value("userMessage")
-                .map(v -> (String) v)
-                .orElseThrow(() -> new IllegalStateException("用户输入信息为空"));
         List<Message> messages = (List<Message>) state.value("messages")
                 .orElseThrow(() -> new IllegalStateException("用户输入信息为空"));
-        // 中断过来的话要更新
-        if(!newMessageList.isEmpty()) {
-            Message messageLast = newMessageList.getLast();
-            if (messageLast instanceof AssistantMessage) {
-                newMessageList.add(new UserMessage(message));
-            }
-        }
 
         //String chatId = state.value("chatId")
         //        .map(v -> (String) v)
         //        .orElseThrow(() -> new IllegalStateException("会话ID 异常"));
+        // messages 中已包含完整的对话（首次输入、追问、用户的每次补充）
         Prompt prompt = new Prompt(messages, this.chatOptions);
         // 1. 构造提取信息的 Prompt
         // 重点：我们需要 AI 根据"对话历史"来提取，而不仅仅是当前这一句话
@@ -95,44 +92,41 @@ public class CircularInformationExtractorNode implements AsyncNodeActionWithConf
 
     """;
 
-        // 2. 调用 AI 进行提取 (带有记忆功能)
-        requirements = this.chatClient.prompt(prompt)
+        // 2. 调用 AI 进行提取 (基于对话历史)
+        TravelRequirements requirements = this.chatClient.prompt(prompt)
                 .system(extractPrompt)
-                .system(s -> s.param("current_date", today) )
-                .user(message)
+                .system(s -> s.param("current_date", LocalDate.now().toString()))
                 //.advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, chatId)) // 关键：带上记忆！
                 .call()
                 .entity(TravelRequirements.class); // 自动转为 TravelRequirements 对象
 
         log.info("AI 提取到的需求: {}", requirements);
 
-        assert requirements != null;
-
-        // 4. 路由逻辑判断
-        if (requirements.isMissingCriticalInfo()) {
-            log.info("关键信息缺失 (目的地或时间)");
-            String userMessage = "用户想去旅游，但信息不全。当前已知信息：" + requirements.toString() +
-                    "。请生成一句自然的话术，礼貌地追问用户缺少的关键信息（目的地或时间）。只输出追问话术。";
-
-            String question = chatClient.prompt()
-                    .options(this.chatOptions)
-                    //.advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, chatId)) // 关键：带上记忆！
-                    .user(userMessage).call().content();
-            assert question != null;
-            newMessageList.add(new AssistantMessage(question));
-
-            // 返回 InterruptionMetadata 来中断执行
-            InterruptionMetadata interruption = InterruptionMetadata.builder(nodeId, state)
-                    .addMetadata("finalResponse", question)
-                    .addMetadata("node", nodeId)
-                    .addMetadata("travelRequirements", requirements)
-                    // 如果要做工具确认的话，可以在这里添加 toolFeedbacks，具体可参考 HumanInTheLoopHook 实现
-                    //.toolFeedbacks(List.of(InterruptionMetadata.ToolFeedback.builder().description("").build()))
-                    .build();
-
-            return Optional.of(interruption);
+        if (requirements == null) {
+            requirements = new TravelRequirements(null, null, null, null);
+        }
+        if (researchPrefetcher != null) {
+            researchPrefetcher.prefetch(config.threadId().orElse(null), requirements.destination());
+        }
+
+        // 3. 路由逻辑判断（由条件边 route 完成，这里只准备追问话术）
+        if (!requirements.isMissingCriticalInfo()) {
+            return Map.of("travelRequirements", requirements);
         }
 
-        return Optional.empty();
+        log.info("关键信息缺失 (目的地或时间)");
+        String userMessage = "用户想去旅游，但信息不全。当前已知信息：" + requirements.toString() +
+                "。请生成一句自然的话术，礼貌地追问用户缺少的关键信息（目的地或时间）。只输出追问话术。";
+
+        String question = chatClient.prompt()
+                .options(this.chatOptions)
+                //.advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, chatId)) // 关键：带上记忆！
+                .user(userMessage).call().content();
+        assert question != null;
+
+        return Map.of(
+                "travelRequirements", requirements,
+                "followUpQuestion", question,
+                "messages", new AssistantMessage(question));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,252 @@
+package com.learn.aiintelligenttourism.agent;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+import com.learn.aiintelligenttourism.RAG.LocationFilterResolver;
+import com.learn.aiintelligenttourism.tools.JuheExchangeRateTool;
+import com.learn.aiintelligenttourism.tools.JuheWeatherTool;
+import com.learn.aiintelligenttourism.tools.TourismKnowledgeTool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 直接调研（tourism.research.mode=direct）
+ * 目的地和出行时间已经确定时，调研要做的事情是固定的：查天气、检索攻略，出境游再检索入境政策、查汇率。
+ * 这里不经过大模型决策，直接并发调用各工具，耗时约等于最慢的一次工具调用；
+ * 输出与调研智能体相同的文本格式（【天气数据】、【搜集到的资讯】…），规划节点无需区分来源
+ */
+@Slf4j
+@Component
+public class DirectResearcher {
+
+    public static final String NO_DATA = "未检索到数据";
+
+    // 知识库检索是同步调用，放到虚拟线程上与天气、汇率请求并发
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    // 出境目的地（国家或城市名） -> 当地货币
+    private static final Map<String, String> CURRENCIES = currencies();
+
+    // 省级行政区（不含港澳台）：目的地包含这些名称或地名表识别为中国时按国内处理
+    private static final List<String> DOMESTIC_REGIONS = List.of(
+            "中国", "北京", "天津", "上海", "重庆", "河北", "山西", "辽宁", "吉林", "黑龙江", "江苏", "浙江", "安徽",
+            "福建", "江西", "山东", "河南", "湖北", "湖南", "广东", "海南", "四川", "贵州", "云南", "陕西", "甘肃",
+            "青海", "内蒙古", "广西", "西藏", "宁夏", "新疆");
+
+    private final JuheWeatherTool weatherTool;
+    private final TourismKnowledgeTool knowledgeTool;
+    private final JuheExchangeRateTool exchangeRateTool;
+    private final LocationFilterResolver locationFilterResolver;
+    private final Duration timeout;
+
+    public DirectResearcher(JuheWeatherTool weatherTool,
+                            TourismKnowledgeTool knowledgeTool,
+                            JuheExchangeRateTool exchangeRateTool,
+                            LocationFilterResolver locationFilterResolver,
+                            @Value("${tourism.research.timeout:8s}") Duration timeout) {
+        this.weatherTool = weatherTool;
+        this.knowledgeTool = knowledgeTool;
+        this.exchangeRateTool = exchangeRateTool;
+        this.locationFilterResolver = locationFilterResolver;
+        this.timeout = timeout;
+    }
+
+    /**
+     * 并发查询天气、攻略、入境政策和汇率，每项超时后记为未检索到数据
+     */
+    public String research(TravelRequirements requirements) {
+        return research(start(requirements.destination()));
+    }
+
+    /**
+     * 等待已发出的查询（可能是预取的，见 {@link ResearchPrefetcher}），每项从此刻起计算超时
+     */
+    public String research(Lookups lookups) {
+        CompletableFuture<String> weather = withTimeout(lookups.weather());
+        CompletableFuture<String> guides = withTimeout(lookups.guides());
+        CompletableFuture<String> entryPolicy = withTimeout(lookups.entryPolicy());
+        CompletableFuture<String> exchangeRate = withTimeout(lookups.exchangeRate());
+        CompletableFuture.allOf(weather, guides, entryPolicy, exchangeRate).join();
+        return format(weather.join(), guides.join(), entryPolicy.join(), exchangeRate.join());
+    }
+
+    /**
+     * 立即发出目的地的全部查询，不等待结果
+     */
+    public Lookups start(String destination) {
+        return new Lookups(destination, weather(destination), guides(destination), entryPolicy(destination),
+                exchangeRate(destination));
+    }
+
+    /**
+     * 天气接口返回的错误（如“暂不支持该城市”）记为空结果，不作为天气数据交给规划
+     */
+    public CompletableFuture<String> weather(String destination) {
+        return weatherTool.getWeatherAsync(destination).thenApply(DirectResearcher::dataOrEmpty);
+    }
+
+    public CompletableFuture<String> guides(String destination) {
+        return CompletableFuture.supplyAsync(
+                () -> knowledgeTool.searchTravelGuide(destination + " 旅游攻略 景点 避坑", destination), EXECUTOR);
+    }
+
+    /**
+     * 检索签证、入境和海关政策；只有确定是国内目的地时返回 null，识别不出的目的地（如 长滩岛）照常检索
+     */
+    public CompletableFuture<String> entryPolicy(String destination) {
+        if (domestic(destination)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(
+                () -> knowledgeTool.searchTravelGuide(destination + " 入境政策 签证 海关", destination), EXECUTOR);
+    }
+
+    /**
+     * 出境目的地查询 1 人民币兑当地货币的汇率，国内目的地返回 null；
+     * 识别不出货币的出境目的地返回空结果（输出为未检索到数据），让规划知道缺少汇率而不是当作国内处理
+     */
+    public CompletableFuture<String> exchangeRate(String destination) {
+        Optional<String> currency = currency(destination);
+        if (currency.isPresent()) {
+            return exchangeRateTool.getExchangeRateAsync("CNY", currency.get()).thenApply(DirectResearcher::dataOrEmpty);
+        }
+        return CompletableFuture.completedFuture(domestic(destination) ? null : "");
+    }
+
+    /**
+     * 确定是国内目的地：不在出境货币表中，且地名表识别为中国或包含省级行政区名称
+     */
+    boolean domestic(String destination) {
+        if (destination == null || destination.isBlank() || currency(destination).isPresent()) {
+            return false;
+        }
+        return locationFilterResolver.country(destination).map("中国"::equals).orElse(false)
+                || DOMESTIC_REGIONS.stream().anyMatch(destination::contains);
+    }
+
+    /**
+     * 目的地所在国家的货币：先用知识库地名表识别国家，再按国家或城市名匹配
+     */
+    Optional<String> currency(String destination) {
+        if (destination == null || destination.isBlank()) {
+            return Optional.empty();
+        }
+        Optional<String> byCountry = locationFilterResolver.country(destination).map(CURRENCIES::get);
+        if (byCountry.isPresent()) {
+            return byCountry;
+        }
+        return CURRENCIES.entrySet().stream()
+                .filter(entry -> destination.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst();
+    }
+
+    /**
+     * 与调研智能体的输出格式一致；entryPolicy、exchangeRate 为 null 表示国内目的地，不输出该项
+     */
+    static String format(String weather, String guides, String entryPolicy, String exchangeRate) {
+        StringBuilder result = new StringBuilder()
+                .append("【天气数据】：\n").append(orNoData(weather)).append("\n\n")
+                .append("【搜集到的资讯】：\n").append(orNoData(guides));
+        if (entryPolicy != null) {
+            result.append("\n\n【入境政策】：\n").append(orNoData(entryPolicy));
+        }
+        if (exchangeRate != null) {
+            result.append("\n\n【汇率数据】：\n").append(orNoData(exchangeRate));
+        }
+        return result.toString();
+    }
+
+    /**
+     * 失败或超时记为空结果（输出为未检索到数据），不影响其他工具的结果
+     */
+    private CompletableFuture<String> withTimeout(CompletableFuture<String> future) {
+        return future
+                .exceptionally(e -> {
+                    log.warn("调研工具调用失败: {}", e.getMessage());
+                    return "";
+                })
+                .completeOnTimeout("", timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 聚合数据接口的错误响应（error_code 不为 0）或工具的错误 JSON（error 字段）记为空结果
+     */
+    static String dataOrEmpty(String body) {
+        if (body == null || !JSONUtil.isTypeJSONObject(body)) {
+            return body;
+        }
+        JSONObject json = JSONUtil.parseObj(body);
+        if (json.containsKey("error") || json.getInt("error_code", 0) != 0) {
+            log.warn("调研工具返回错误: {}", body);
+            return "";
+        }
+        return body;
+    }
+
+    static String orNoData(String value) {
+        return value == null || value.isBlank() ? NO_DATA : value;
+    }
+
+    /**
+     * 一个目的地已发出的查询；entryPolicy、exchangeRate 的结果为 null 表示国内目的地无需查询
+     */
+    public record Lookups(String destination,
+                          CompletableFuture<String> weather,
+                          CompletableFuture<String> guides,
+                          CompletableFuture<String> entryPolicy,
+                          CompletableFuture<String> exchangeRate) {
+    }
+
+    private static Map<String, String> currencies() {
+        Map<String, String> currencies = new LinkedHashMap<>();
+        currencies.put("日本", "JPY");
+        currencies.put("东京", "JPY");
+        currencies.put("大阪", "JPY");
+        currencies.put("京都", "JPY");
+        currencies.put("北海道", "JPY");
+        currencies.put("冲绳", "JPY");
+        currencies.put("韩国", "KRW");
+        currencies.put("首尔", "KRW");
+        currencies.put("济州", "KRW");
+        currencies.put("泰国", "THB");
+        currencies.put("曼谷", "THB");
+        currencies.put("清迈", "THB");
+        currencies.put("普吉", "THB");
+        currencies.put("新加坡", "SGD");
+        currencies.put("马来西亚", "MYR");
+        currencies.put("吉隆坡", "MYR");
+        currencies.put("香港", "HKD");
+        currencies.put("澳门", "MOP");
+        currencies.put("台湾", "TWD");
+        currencies.put("台北", "TWD");
+        currencies.put("美国", "USD");
+        currencies.put("纽约", "USD");
+        currencies.put("洛杉矶", "USD");
+        currencies.put("英国", "GBP");
+        currencies.put("伦敦", "GBP");
+        currencies.put("法国", "EUR");
+        currencies.put("巴黎", "EUR");
+        currencies.put("德国", "EUR");
+        currencies.put("意大利", "EUR");
+        currencies.put("西班牙", "EUR");
+        currencies.put("瑞士", "CHF");
+        currencies.put("澳大利亚", "AUD");
+        currencies.put("悉尼", "AUD");
+        currencies.put("新西兰", "NZD");
+        currencies.put("加拿大", "CAD");
+        return currencies;
+    }
+}
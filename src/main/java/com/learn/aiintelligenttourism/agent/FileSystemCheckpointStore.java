@@ -0,0 +1,141 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.graph.checkpoint.Checkpoint;
+import com.alibaba.cloud.ai.graph.serializer.StateSerializer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 基于本地文件的 Checkpoint 冷存储
+ * 每个会话一个文件（文件名为 threadId 的 SHA-256，长度固定，不受文件名 255 字节的限制），
+ * 先写临时文件再原子替换，避免读到半个文件；按文件修改时间清理超过保留期的会话
+ */
+@Slf4j
+public class FileSystemCheckpointStore implements CheckpointStore {
+
+    private static final String SUFFIX = ".checkpoint";
+
+    private final Path directory;
+    private final StateSerializer stateSerializer;
+
+    // 写入持有读锁（不同会话并发写入），清理时对每个文件持有写锁，避免删掉刚刚替换的新文件
+    private final ReadWriteLock sweepLock = new ReentrantReadWriteLock();
+
+    public FileSystemCheckpointStore(Path directory, StateSerializer stateSerializer) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.stateSerializer = stateSerializer;
+    }
+
+    @Override
+    public Optional<Checkpoint> load(String threadId) throws IOException {
+        Path file = fileOf(threadId);
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            String id = in.readUTF();
+            String nodeId = readNullableUTF(in);
+            String nextNodeId = readNullableUTF(in);
+            Map<String, Object> state = stateSerializer.readData(in);
+            return Optional.of(Checkpoint.builder()
+                    .id(id)
+                    .nodeId(nodeId)
+                    .nextNodeId(nextNodeId)
+                    .state(state)
+                    .build());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Checkpoint 反序列化失败: " + file, e);
+        }
+    }
+
+    @Override
+    public void save(String threadId, Checkpoint checkpoint) throws IOException {
+        Path file = fileOf(threadId);
+        Path tmp = Files.createTempFile(directory, "tmp-", SUFFIX);
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeUTF(checkpoint.getId());
+                writeNullableUTF(out, checkpoint.getNodeId());
+                writeNullableUTF(out, checkpoint.getNextNodeId());
+                stateSerializer.writeData(checkpoint.getState(), out);
+            }
+            sweepLock.readLock().lock();
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                sweepLock.readLock().unlock();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public boolean delete(String threadId) throws IOException {
+        return Files.deleteIfExists(fileOf(threadId));
+    }
+
+    /**
+     * 修改时间早于 cutoff 的文件（包括进程崩溃残留的临时文件）一并删除
+     */
+    @Override
+    public int deleteOlderThan(Instant cutoff) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).toList();
+        }
+        int deleted = 0;
+        for (Path file : files) {
+            sweepLock.writeLock().lock();
+            try {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            } catch (NoSuchFileException e) {
+                // 同时被 delete 删除
+            } finally {
+                sweepLock.writeLock().unlock();
+            }
+        }
+        return deleted;
+    }
+
+    private Path fileOf(String threadId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(threadId.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest) + SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeNullableUTF(ObjectOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(ObjectInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,58 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.action.AsyncNodeActionWithConfig;
+import com.alibaba.cloud.ai.graph.action.InterruptableAction;
+import com.alibaba.cloud.ai.graph.action.InterruptionMetadata;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 人类反馈节点（实现 InterruptableAction）
+ * 是否中断完全由 Graph 状态决定：messages 最后一条是追问（AssistantMessage）说明还在等待用户回复，
+ * 恢复时 TourismGraphService 会把用户回复追加到 messages，本节点随即放行，回到信息提取节点
+ */
+@Slf4j
+public class HumanFeedbackNode implements AsyncNodeActionWithConfig, InterruptableAction {
+
+    @Override
+    public CompletableFuture<Map<String, Object>> apply(OverAllState state, RunnableConfig config) {
+        // 用户回复已在恢复时写入状态，这里无需更新
+        return CompletableFuture.completedFuture(Map.of());
+    }
+
+    @Override
+    public Optional<InterruptionMetadata> interrupt(String nodeId, OverAllState state, RunnableConfig config) {
+        List<Message> messages = (List<Message>) state.value("messages").orElse(List.of());
+        if (messages.isEmpty() || !(messages.getLast() instanceof AssistantMessage)) {
+            log.info(">>> HumanFeedbackNode: 已收到用户补充信息，继续提取");
+            return Optional.empty();
+        }
+
+        String question = state.value("followUpQuestion")
+                .map(Object::toString)
+                .orElseGet(() -> messages.getLast().getText());
+        log.info(">>> HumanFeedbackNode: 等待用户补充信息: {}", question);
+
+        // 返回 InterruptionMetadata 来中断执行
+        InterruptionMetadata.Builder builder = InterruptionMetadata.builder(nodeId, state)
+                .addMetadata("finalResponse", question)
+                .addMetadata("node", nodeId);
+        TravelRequirements requirements = state.value("travelRequirements")
+                .map(TravelRequirements::from)
+                .orElse(null);
+        if (requirements != null) {
+            builder.addMetadata("travelRequirements", requirements);
+        }
+        // 如果要做工具确认的话，可以在这里添加 toolFeedbacks，具体可参考 HumanInTheLoopHook 实现
+        return Optional.of(builder.build());
+    }
+}
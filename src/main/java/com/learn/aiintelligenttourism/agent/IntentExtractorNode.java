@@ -0,0 +1,179 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.action.NodeActionWithConfig;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 意图判断 + 信息提取合并节点（tourism.graph.router.mode=combined）
+ * 规划类消息在分步模式下依次经过三次模型调用：意图判断（qwen-flash）、需求提取（qwen3-max）、生成追问（qwen3-max），
+ * 这里用一次结构化输出（{@link Decision}）同时得到意图、需求槽位和追问话术。
+ * 路由与分步模式一致（{@link #route}）：本地分类器确定为闲聊时不调用模型；规划意图下关键信息缺失则追问，否则进入调研。
+ * 作为 intent_router 时判断意图；作为 circular_information_extractor（追问后回到提取）时意图已确定为规划，只提取需求和追问。
+ * 模型调用失败时回退到分步调用（{@link IntentRouterNode} + {@link CircularInformationExtractorNode}）
+ */
+@Slf4j
+public class IntentExtractorNode implements NodeActionWithConfig {
+
+    public static final String SIMPLE_CHAT = "simple_chat";
+
+    private static final Resource SYSTEM_RESOURCE = new ClassPathResource("/prompts/system-message-intent-extraction.st");
+
+    private final ChatClient chatClient;
+    private final ChatOptions chatOptions;
+    // 为空时意图已确定为规划（追问后回到提取）
+    private final LocalIntentClassifier localIntentClassifier;
+    // 可为空（不预取）
+    private final ResearchPrefetcher researchPrefetcher;
+    private final IntentRouterNode fallbackRouter;
+    private final CircularInformationExtractorNode fallbackExtractor;
+
+    private IntentExtractorNode(ChatClient chatClient, LocalIntentClassifier localIntentClassifier,
+                                ResearchPrefetcher researchPrefetcher) {
+        this.chatClient = chatClient;
+        this.localIntentClassifier = localIntentClassifier;
+        this.researchPrefetcher = researchPrefetcher;
+        this.chatOptions = DashScopeChatOptions.builder()
+                .withModel("qwen3-max")
+                .build();
+        this.fallbackRouter = localIntentClassifier == null ? null : new IntentRouterNode(chatClient, localIntentClassifier);
+        this.fallbackExtractor = new CircularInformationExtractorNode(chatClient, researchPrefetcher);
+    }
+
+    /**
+     * 作为 intent_router：判断意图并提取需求
+     */
+    public static IntentExtractorNode router(ChatClient chatClient, LocalIntentClassifier localIntentClassifier,
+                                             ResearchPrefetcher researchPrefetcher) {
+        return new IntentExtractorNode(chatClient, localIntentClassifier, researchPrefetcher);
+    }
+
+    /**
+     * 作为 circular_information_extractor：意图已确定为规划，只提取需求和追问
+     */
+    public static IntentExtractorNode extractor(ChatClient chatClient, ResearchPrefetcher researchPrefetcher) {
+        return new IntentExtractorNode(chatClient, null, researchPrefetcher);
+    }
+
+    /**
+     * 条件边：闲聊进入 simple_chat，规划意图按需求是否完整去追问或调研（与 {@link CircularInformationExtractorNode#route} 一致）
+     */
+    public static String route(OverAllState state) {
+        return "CHAT".equals(state.value("intent").orElse(null))
+                ? SIMPLE_CHAT
+                : CircularInformationExtractorNode.route(state);
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state, RunnableConfig config) throws Exception {
+        log.info(">>> 进入节点: IntentExtractorNode (意图判断 + 信息提取)");
+        String message = state.value("userMessage")
+                .map(v -> (String) v)
+                .orElseThrow(() -> new IllegalStateException("用户输入信息为空"));
+        List<Message> messages = (List<Message>) state.value("messages")
+                .orElseThrow(() -> new IllegalStateException("用户输入信息为空"));
+
+        Optional<Boolean> knownIntent = localIntentClassifier == null
+                ? Optional.of(true)
+                : localIntentClassifier.classify(message);
+        if (knownIntent.isPresent() && !knownIntent.get()) {
+            return chat();
+        }
+
+        Decision decision;
+        try {
+            decision = chatClient.prompt(new Prompt(messages, chatOptions))
+                    .system(SYSTEM_RESOURCE)
+                    .system(s -> s.param("current_date", LocalDate.now().toString()))
+                    .call()
+                    .entity(Decision.class);
+        } catch (RuntimeException e) {
+            log.warn("意图判断与信息提取合并调用失败，回退到分步调用: {}", e.getMessage());
+            return fallback(state, config);
+        }
+        log.info("AI 判断与提取结果: {}", decision);
+
+        boolean planning = knownIntent.isPresent()
+                ? knownIntent.get()
+                : decision != null && Boolean.TRUE.equals(decision.planning());
+        if (knownIntent.isEmpty()) {
+            localIntentClassifier.recordLabel(message, planning);
+        }
+        if (!planning) {
+            return chat();
+        }
+
+        TravelRequirements requirements = decision == null || decision.requirements() == null
+                ? new TravelRequirements(null, null, null, null)
+                : decision.requirements();
+        if (researchPrefetcher != null) {
+            researchPrefetcher.prefetch(config.threadId().orElse(null), requirements.destination());
+        }
+        if (!requirements.isMissingCriticalInfo()) {
+            return Map.of(
+                    "intent", "PLAN",
+                    "next_node", "circular_information_extractor",
+                    "travelRequirements", requirements);
+        }
+
+        log.info("关键信息缺失 (目的地或时间)");
+        String question = decision == null || decision.followUpQuestion() == null || decision.followUpQuestion().isBlank()
+                ? defaultQuestion(requirements)
+                : decision.followUpQuestion();
+        return Map.of(
+                "intent", "PLAN",
+                "next_node", "circular_information_extractor",
+                "travelRequirements", requirements,
+                "followUpQuestion", question,
+                "messages", new AssistantMessage(question));
+    }
+
+    private static Map<String, Object> chat() {
+        return Map.of(
+                "intent", "CHAT",
+                "next_node", SIMPLE_CHAT);
+    }
+
+    /**
+     * 分步调用：意图判断，规划意图再提取需求（与分步模式的节点完全相同）
+     */
+    private Map<String, Object> fallback(OverAllState state, RunnableConfig config) throws Exception {
+        Map<String, Object> result = new HashMap<>();
+        if (fallbackRouter != null) {
+            result.putAll(fallbackRouter.apply(state, config));
+            if (!"PLAN".equals(result.get("intent"))) {
+                return result;
+            }
+        }
+        result.putAll(fallbackExtractor.apply(state, config));
+        return result;
+    }
+
+    private static String defaultQuestion(TravelRequirements requirements) {
+        return requirements.destination() == null || requirements.destination().isBlank()
+                ? "请问您想去哪里旅行呢？"
+                : "请问您打算什么时候出发去" + requirements.destination() + "呢？";
+    }
+
+    /**
+     * 一次结构化输出的结果：planning 为是否规划意图，requirements 为提取到的需求，followUpQuestion 为信息不全时的追问
+     */
+    public record Decision(Boolean planning, TravelRequirements requirements, String followUpQuestion) {
+    }
+}
@@ -21,16 +21,19 @@ public class IntentRouterNode implements NodeActionWithConfig {
 
     private Resource systemResource;
     private final ChatClient chatClient;
+    private final LocalIntentClassifier localIntentClassifier;
 
-    public IntentRouterNode(ChatClient chatClient, Resource systemResource) {
+    public IntentRouterNode(ChatClient chatClient, Resource systemResource, LocalIntentClassifier localIntentClassifier) {
         this.chatClient = chatClient;
         this.systemResource = systemResource;
+        this.localIntentClassifier = localIntentClassifier;
     }
 
 
-    public IntentRouterNode(ChatClient chatClient) {
+    public IntentRouterNode(ChatClient chatClient, LocalIntentClassifier localIntentClassifier) {
         this.systemResource = new ClassPathResource("/prompts/system-message-intention-judgment.st");
         this.chatClient = chatClient;
+        this.localIntentClassifier = localIntentClassifier;
     }
 
     @Override
@@ -41,7 +44,27 @@ public class IntentRouterNode implements NodeActionWithConfig {
                 .map(v -> (String) v)
                 .orElseThrow(() -> new IllegalStateException("用户输入信息为空"));
         log.info("IntentionJudgmentNode 用户信息: {}",message);
-        boolean intention = false;
+        boolean intention = localIntentClassifier.classify(message)
+                .orElseGet(() -> classifyByModel(message));
+
+        log.info("IntentionJudgmentNode 判断结果: {}",intention);
+        if (intention) {
+            return Map.of(
+                    "intent", "PLAN",
+                    "next_node","circular_information_extractor");
+        }else{
+            return Map.of(
+                    "intent", "CHAT",
+                    "next_node","simple_chat");
+        }
+
+    }
+
+    /**
+     * 本地分类器置信度不足时，交给 qwen-flash 判断
+     */
+    private boolean classifyByModel(String message) {
+        boolean intention;
         try {
             DashScopeChatOptions dashScopeChatOptions = DashScopeChatOptions.builder().withModel("qwen-flash").build();
             String content = this.chatClient.prompt()
@@ -54,22 +77,12 @@ public class IntentRouterNode implements NodeActionWithConfig {
             assert content != null;
             String cleanResult = content.trim().toUpperCase().replaceAll("[^A-Z]", "");
             intention = "TRUE".equals(cleanResult);
+            localIntentClassifier.recordLabel(message, intention);
         } catch (Exception e) {
             // 兜底逻辑：如果 AI 调用失败，回退到简单的关键词判断，保证系统不挂
             System.err.println("意图识别服务异常: " + e.getMessage());
             intention = message.contains("规划") || message.contains("行程") || message.contains("安排");
         }
-
-        log.info("IntentionJudgmentNode 判断结果: {}",intention);
-        if (intention) {
-            return Map.of(
-                    "intent", "PLAN",
-                    "next_node","circular_information_extractor");
-        }else{
-            return Map.of(
-                    "intent", "CHAT",
-                    "next_node","simple_chat");
-        }
-
+        return intention;
     }
 }
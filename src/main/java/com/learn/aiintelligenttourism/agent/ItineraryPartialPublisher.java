@@ -0,0 +1,38 @@
+package com.learn.aiintelligenttourism.agent;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * 行程单增量事件的转发
+ * Graph 的流式输出只在节点完成时产生，规划节点生成过程中解析出的 card_partial 事件经由这里按会话（threadId）
+ * 转发给正在订阅该会话的流（TourismGraphService#streamChat）；没有订阅者（非流式调用）时直接丢弃
+ */
+@Component
+public class ItineraryPartialPublisher {
+
+    private final ConcurrentMap<String, Consumer<Map<String, Object>>> listeners = new ConcurrentHashMap<>();
+
+    public void register(String threadId, Consumer<Map<String, Object>> listener) {
+        if (threadId != null) {
+            listeners.put(threadId, listener);
+        }
+    }
+
+    public void unregister(String threadId, Consumer<Map<String, Object>> listener) {
+        if (threadId != null) {
+            listeners.remove(threadId, listener);
+        }
+    }
+
+    public void publish(String threadId, Map<String, Object> event) {
+        Consumer<Map<String, Object>> listener = threadId == null ? null : listeners.get(threadId);
+        if (listener != null) {
+            listener.accept(event);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learn.aiintelligenttourism.Model.ItineraryResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.converter.BeanOutputConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行程单增量解析器（流式结构化输出）
+ * 大模型按片段输出 JSON 时逐字符扫描：顶层 title 的字符串一结束就产出标题，
+ * days 数组中的每个对象一闭合就反序列化为 {@link ItineraryResponse.DailyPlan} 产出，前端不必等整份行程单生成完毕。
+ * 只跟踪括号层级、字符串和转义状态，不构建语法树；JSON 之前的代码块标记等文本被忽略。
+ * 产出的事件：{"type": "card_partial", "data": {"title": 标题}} 和 {"type": "card_partial", "data": {"day": 单日行程}}；
+ * 完整结果仍由 BeanOutputConverter 解析（{@link #result()}），与一次性生成时的 card 一致。
+ * 非线程安全，每次生成使用一个实例
+ */
+@Slf4j
+public class ItineraryStreamParser {
+
+    public static final String CARD_PARTIAL = "card_partial";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final BeanOutputConverter<ItineraryResponse> converter = new BeanOutputConverter<>(ItineraryResponse.class);
+    private final StringBuilder text = new StringBuilder();
+
+    // 下一个待扫描的字符
+    private int position;
+    // 当前括号层级，顶层对象内为 1
+    private int depth;
+    private boolean started;
+    private boolean finished;
+    private boolean inString;
+    private boolean escaped;
+    private int stringStart;
+    // 顶层对象中下一个字符串是键还是值，以及当前的键
+    private boolean expectKey;
+    private String key;
+    // days 数组所在层级（未进入时为 -1），以及正在扫描的单日对象起点
+    private int daysDepth = -1;
+    private int dayStart = -1;
+
+    /**
+     * 追加到提示词中的输出格式说明（与 entity(ItineraryResponse.class) 使用的一致）
+     */
+    public String format() {
+        return converter.getFormat();
+    }
+
+    /**
+     * 追加一个片段，返回因此新解析出的 card_partial 事件
+     */
+    public List<Map<String, Object>> feed(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return List.of();
+        }
+        text.append(chunk);
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (; position < text.length() && !finished; position++) {
+            scan(text.charAt(position), events);
+        }
+        return events;
+    }
+
+    /**
+     * 已收到的完整文本解析为行程单
+     */
+    public ItineraryResponse result() {
+        return converter.convert(text.toString());
+    }
+
+    public String text() {
+        return text.toString();
+    }
+
+    private void scan(char c, List<Map<String, Object>> events) {
+        if (!started) {
+            if (c == '{') {
+                started = true;
+                depth = 1;
+                expectKey = true;
+            }
+            return;
+        }
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                onString(text.substring(stringStart, position + 1), events);
+            }
+            return;
+        }
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                stringStart = position;
+            }
+            case '{' -> {
+                if (depth == daysDepth) {
+                    dayStart = position;
+                }
+                depth++;
+            }
+            case '[' -> {
+                depth++;
+                if (depth == 2 && "days".equals(key)) {
+                    daysDepth = depth;
+                }
+            }
+            case '}' -> {
+                depth--;
+                if (dayStart >= 0 && depth == daysDepth) {
+                    day(text.substring(dayStart, position + 1), events);
+                    dayStart = -1;
+                }
+                finished = depth == 0;
+            }
+            case ']' -> {
+                if (depth == daysDepth) {
+                    daysDepth = -1;
+                }
+                depth--;
+            }
+            case ':' -> {
+                if (depth == 1) {
+                    expectKey = false;
+                }
+            }
+            case ',' -> {
+                if (depth == 1) {
+                    expectKey = true;
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void onString(String literal, List<Map<String, Object>> events) {
+        if (depth != 1) {
+            return;
+        }
+        String value = read(literal, String.class);
+        if (expectKey) {
+            key = value;
+        } else if ("title".equals(key) && value != null) {
+            events.add(Map.of("type", CARD_PARTIAL, "data", Map.of("title", value)));
+        }
+    }
+
+    private void day(String json, List<Map<String, Object>> events) {
+        ItineraryResponse.DailyPlan day = read(json, ItineraryResponse.DailyPlan.class);
+        if (day != null) {
+            events.add(Map.of("type", CARD_PARTIAL, "data", Map.of("day", day)));
+        }
+    }
+
+    /**
+     * 单个片段格式不正确时不产出事件，最终结果仍以完整解析为准
+     */
+    private static <T> T read(String json, Class<T> type) {
+        try {
+            return OBJECT_MAPPER.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            log.debug("行程单片段解析失败: {}", json, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.learn.aiintelligenttourism.agent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地意图快速分类器
+ * 使用字符 n-gram（1~3）哈希特征 + 逻辑回归，在进程内判断是否为“生成/修改行程单”意图。
+ * 置信度达到阈值时直接返回结果（微秒级），否则返回 empty，交给 qwen-flash 判断。
+ * 训练样本：system-message-intention-judgment.st 中的示例 + intent-training-data.txt + 可选的外部样本文件
+ */
+@Slf4j
+@Component
+public class LocalIntentClassifier {
+
+    /**
+     * 线上流量样本日志，格式与训练文件一致（标签<TAB>用户输入），可导出后作为外部样本文件
+     */
+    private static final Logger TRAFFIC_LOG = LoggerFactory.getLogger("intent-traffic");
+
+    private static final int FEATURE_BITS = 16;
+    private static final int FEATURE_MASK = (1 << FEATURE_BITS) - 1;
+    private static final int EPOCHS = 40;
+    private static final double LEARNING_RATE = 0.2;
+    private static final double L2 = 1e-4;
+
+    private static final Pattern PROMPT_EXAMPLE = Pattern.compile("User:\\s*\"(.+?)\"\\s*\\R\\s*Assistant:\\s*(TRUE|FALSE)");
+
+    private final boolean enabled;
+    private final double threshold;
+    private final String trainingFile;
+    private final MeterRegistry meterRegistry;
+
+    private final float[] weights = new float[1 << FEATURE_BITS];
+    private float bias;
+    private volatile boolean trained;
+
+    public LocalIntentClassifier(@Value("${tourism.intent.local.enabled:true}") boolean enabled,
+                                 @Value("${tourism.intent.local.threshold:0.9}") double threshold,
+                                 @Value("${tourism.intent.local.training-file:}") String trainingFile,
+                                 MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.trainingFile = trainingFile;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("本地意图分类器已关闭");
+            return;
+        }
+        List<Sample> samples = new ArrayList<>();
+        samples.addAll(loadPromptExamples(new ClassPathResource("/prompts/system-message-intention-judgment.st")));
+        samples.addAll(loadSamples(new ClassPathResource("/prompts/intent-training-data.txt")));
+        if (trainingFile != null && !trainingFile.isBlank()) {
+            samples.addAll(loadSamples(new FileSystemResource(trainingFile)));
+        }
+        train(samples);
+    }
+
+    /**
+     * 本地判断意图
+     * @param message 用户输入
+     * @return 置信度达到阈值时返回判断结果（true 为规划意图），否则 empty
+     */
+    public Optional<Boolean> classify(String message) {
+        if (!enabled || !trained || message == null || message.isBlank()) {
+            return Optional.empty();
+        }
+        double probability = probability(message);
+        double confidence = Math.max(probability, 1 - probability);
+        if (confidence >= threshold) {
+            boolean planning = probability >= 0.5;
+            meterRegistry.counter("tourism.intent.local", "result", "hit", "intent", planning ? "PLAN" : "CHAT").increment();
+            log.debug("本地意图分类命中 p={} message={}", probability, message);
+            return Optional.of(planning);
+        }
+        meterRegistry.counter("tourism.intent.local", "result", "miss").increment();
+        log.debug("本地意图分类置信度不足 p={} message={}", probability, message);
+        return Optional.empty();
+    }
+
+    /**
+     * 记录由大模型判断的样本，供后续离线训练使用
+     */
+    public void recordLabel(String message, boolean planning) {
+        if (message != null && !message.isBlank()) {
+            TRAFFIC_LOG.info("{}\t{}", planning ? "TRUE" : "FALSE", message.replaceAll("\\s+", " ").trim());
+        }
+    }
+
+    /**
+     * 属于规划意图的概率
+     */
+    double probability(String message) {
+        int[] features = features(message);
+        double scale = 1.0 / Math.sqrt(features.length);
+        double z = bias;
+        for (int feature : features) {
+            z += weights[feature] * scale;
+        }
+        return 1.0 / (1.0 + Math.exp(-z));
+    }
+
+    private void train(List<Sample> samples) {
+        if (samples.isEmpty()) {
+            log.warn("本地意图分类器没有训练样本，所有请求将交给大模型判断");
+            return;
+        }
+        List<int[]> featureList = new ArrayList<>(samples.size());
+        for (Sample sample : samples) {
+            featureList.add(features(sample.message()));
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < samples.size(); i++) {
+            order.add(i);
+        }
+        // 固定随机种子，保证每次启动训练结果一致
+        Random random = new Random(42);
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            Collections.shuffle(order, random);
+            for (int index : order) {
+                int[] features = featureList.get(index);
+                double scale = 1.0 / Math.sqrt(features.length);
+                double z = bias;
+                for (int feature : features) {
+                    z += weights[feature] * scale;
+                }
+                double predicted = 1.0 / (1.0 + Math.exp(-z));
+                double gradient = predicted - (samples.get(index).planning() ? 1 : 0);
+                for (int feature : features) {
+                    weights[feature] -= (float) (LEARNING_RATE * (gradient * scale + L2 * weights[feature]));
+                }
+                bias -= (float) (LEARNING_RATE * gradient);
+            }
+        }
+        trained = true;
+        log.info("本地意图分类器训练完成，样本数: {}，置信度阈值: {}", samples.size(), threshold);
+    }
+
+    /**
+     * 字符 1~3 gram 哈希特征，首尾加边界符
+     */
+    private static int[] features(String message) {
+        String text = "^" + message.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").trim() + "$";
+        int[] codePoints = text.codePoints().toArray();
+        List<Integer> features = new ArrayList<>();
+        for (int n = 1; n <= 3; n++) {
+            for (int i = 0; i + n <= codePoints.length; i++) {
+                int hash = n;
+                for (int j = i; j < i + n; j++) {
+                    hash = hash * 31 + codePoints[j];
+                }
+                // 打散低位，减少哈希冲突
+                hash ^= (hash >>> 16);
+                features.add(hash & FEATURE_MASK);
+            }
+        }
+        return features.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static List<Sample> loadPromptExamples(Resource resource) {
+        List<Sample> samples = new ArrayList<>();
+        try {
+            String content = resource.getContentAsString(StandardCharsets.UTF_8);
+            Matcher matcher = PROMPT_EXAMPLE.matcher(content);
+            while (matcher.find()) {
+                samples.add(new Sample(matcher.group(1), "TRUE".equals(matcher.group(2))));
+            }
+        } catch (IOException e) {
+            log.warn("读取意图判断提示词示例失败: {}", resource, e);
+        }
+        return samples;
+    }
+
+    private static List<Sample> loadSamples(Resource resource) {
+        List<Sample> samples = new ArrayList<>();
+        if (!resource.exists()) {
+            log.warn("意图训练样本文件不存在: {}", resource);
+            return samples;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab <= 0 || tab == line.length() - 1) {
+                    continue;
+                }
+                String label = line.substring(0, tab).trim();
+                samples.add(new Sample(line.substring(tab + 1).trim(), "TRUE".equalsIgnoreCase(label)));
+            }
+        } catch (IOException e) {
+            log.warn("读取意图训练样本失败: {}", resource, e);
+        }
+        return samples;
+    }
+
+    private record Sample(String message, boolean planning) {
+    }
+}
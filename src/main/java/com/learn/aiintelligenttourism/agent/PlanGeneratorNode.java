@@ -15,13 +15,24 @@ import org.springframework.ai.converter.BeanOutputConverter;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * 规划生成节点
+ * 传入 {@link ItineraryPartialPublisher} 时使用流式结构化输出：边生成边由 {@link ItineraryStreamParser} 解析，
+ * 标题和每天的行程一解析出来就作为 card_partial 事件推送给正在订阅该会话的流，最终的 itinerary 与一次性生成时相同
+ */
 @Slf4j
 public class PlanGeneratorNode implements NodeActionWithConfig {
 
     private final ChatClient chatClient;
+    private final ItineraryPartialPublisher partialPublisher;
 
     public PlanGeneratorNode(ChatClient chatClient) {
+        this(chatClient, null);
+    }
+
+    public PlanGeneratorNode(ChatClient chatClient, ItineraryPartialPublisher partialPublisher) {
         this.chatClient = chatClient;
+        this.partialPublisher = partialPublisher;
     }
 
     @Override
@@ -31,7 +42,7 @@ public class PlanGeneratorNode implements NodeActionWithConfig {
         // 1. 获取上下文输入
         // 用户的原始需求 (目的地、时间、偏好)
         TravelRequirements req = state.value("travelRequirements")
-                .map(v -> (TravelRequirements) v)
+                .map(TravelRequirements::from)
                 .orElseThrow(() -> new IllegalStateException("用户的原始需求 异常"));
 
         // ResearchAgent 查到的天气、攻略、避坑指南 (通常是一大段文本或JSON字符串)
@@ -83,7 +94,9 @@ public class PlanGeneratorNode implements NodeActionWithConfig {
 
         // 3. 调用 AI 生成结构化数据
         // 建议：这里可以将 Temperature 设为 0，保证输出格式稳定
-        ItineraryResponse itinerary = chatClient.prompt()
+        ItineraryResponse itinerary = partialPublisher != null
+                ? generateByStream(promptText, config.threadId().orElse(null))
+                : chatClient.prompt()
                 .user(promptText)
                 //.advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, chatId)) // 关键：带上记忆！
                 .call()
@@ -101,4 +114,18 @@ public class PlanGeneratorNode implements NodeActionWithConfig {
         
         return outputs;
     }
+
+    /**
+     * 流式生成，逐片段解析并推送 card_partial 事件，生成结束后解析完整行程单
+     */
+    private ItineraryResponse generateByStream(String promptText, String threadId) {
+        ItineraryStreamParser parser = new ItineraryStreamParser();
+        chatClient.prompt()
+                .user(promptText + System.lineSeparator() + parser.format())
+                .stream()
+                .content()
+                .doOnNext(chunk -> parser.feed(chunk).forEach(event -> partialPublisher.publish(threadId, event)))
+                .blockLast();
+        return parser.result();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.learn.aiintelligenttourism.agent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * fanout 模式下的调研分支：图节点名、结果写入的状态键、超时配置名，以及从已发出的查询中取出本分支的结果
+ */
+public enum ResearchBranch {
+
+    WEATHER("research_weather", "researchWeather", "weather", DirectResearcher.Lookups::weather),
+    GUIDES("research_guides", "researchGuides", "guides", DirectResearcher.Lookups::guides),
+    ENTRY_POLICY("research_entry_policy", "researchEntryPolicy", "entry-policy", DirectResearcher.Lookups::entryPolicy),
+    CURRENCY("research_currency", "researchCurrency", "currency", DirectResearcher.Lookups::exchangeRate);
+
+    private final String node;
+    private final String resultKey;
+    private final String configName;
+    private final Function<DirectResearcher.Lookups, CompletableFuture<String>> lookup;
+
+    ResearchBranch(String node, String resultKey, String configName,
+                   Function<DirectResearcher.Lookups, CompletableFuture<String>> lookup) {
+        this.node = node;
+        this.resultKey = resultKey;
+        this.configName = configName;
+        this.lookup = lookup;
+    }
+
+    public String node() {
+        return node;
+    }
+
+    public String resultKey() {
+        return resultKey;
+    }
+
+    /**
+     * 本分支耗时（毫秒）写入的状态键
+     */
+    public String millisKey() {
+        return resultKey + "Millis";
+    }
+
+    /**
+     * 超时配置：tourism.research.branches.&lt;configName&gt;.timeout
+     */
+    public String configName() {
+        return configName;
+    }
+
+    CompletableFuture<String> lookup(DirectResearcher.Lookups lookups) {
+        return lookup.apply(lookups);
+    }
+}
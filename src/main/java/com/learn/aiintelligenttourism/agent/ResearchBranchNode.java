@@ -0,0 +1,91 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.action.AsyncNodeActionWithConfig;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 调研分支节点（fanout 模式）
+ * 节点本身不阻塞：返回等待本分支查询结果的 future，多个分支在图中并行时真正并发，调研总耗时约等于最慢的分支。
+ * 每个分支有独立的超时，失败或超时记为空结果（汇总后为未检索到数据），不影响其他分支；
+ * 国内目的地不需要的分支（入境政策、汇率）写入 {@link #NOT_APPLICABLE}，汇总时不输出该项。
+ * 指标：tourism.research.branch（branch=分支名，outcome=success/empty/timeout/skipped）
+ */
+@Slf4j
+public class ResearchBranchNode implements AsyncNodeActionWithConfig {
+
+    public static final String NOT_APPLICABLE = "N/A";
+
+    private static final Outcome TIMEOUT = new Outcome("", "timeout");
+
+    private final ResearchBranch branch;
+    private final Duration timeout;
+    private final ResearchPrefetcher researchPrefetcher;
+    private final MeterRegistry meterRegistry;
+
+    public ResearchBranchNode(ResearchBranch branch, Duration timeout, ResearchPrefetcher researchPrefetcher,
+                              MeterRegistry meterRegistry) {
+        this.branch = branch;
+        this.timeout = timeout;
+        this.researchPrefetcher = researchPrefetcher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> apply(OverAllState state, RunnableConfig config) {
+        String destination = state.value("travelRequirements")
+                .map(TravelRequirements::from)
+                .map(TravelRequirements::destination)
+                .orElse("");
+        long start = System.nanoTime();
+        if (destination.isBlank()) {
+            return CompletableFuture.completedFuture(result("", "empty", start));
+        }
+        DirectResearcher.Lookups lookups = researchPrefetcher.lookups(config.threadId().orElse(null), destination);
+        // 先把查询结果映射为 Outcome，再对这个派生的 future 计时：超时只会以 TimeoutException 结束，
+        // null 只表示「无需查询」；共享的预取 future 本身不会被超时改写
+        return branch.lookup(lookups)
+                .handle((value, error) -> {
+                    if (error != null) {
+                        log.warn("调研分支 {} 失败: {}", branch.node(), error.getMessage());
+                        return new Outcome("", "empty");
+                    }
+                    if (value == null) {
+                        return new Outcome(NOT_APPLICABLE, "skipped");
+                    }
+                    return new Outcome(value, value.isBlank() ? "empty" : "success");
+                })
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    if (!(e instanceof TimeoutException)) {
+                        throw new CompletionException(e);
+                    }
+                    log.warn("调研分支 {} 超时（{} ms）", branch.node(), timeout.toMillis());
+                    return TIMEOUT;
+                })
+                .thenApply(outcome -> result(outcome.value(), outcome.outcome(), start));
+    }
+
+    private Map<String, Object> result(String value, String outcome, long start) {
+        long nanos = System.nanoTime() - start;
+        meterRegistry.timer("tourism.research.branch", "branch", branch.node(), "outcome", outcome)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        return Map.of(branch.resultKey(), value, branch.millisKey(), nanos / 1_000_000);
+    }
+
+    /**
+     * 分支结果及其指标标签
+     */
+    private record Outcome(String value, String outcome) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.action.AsyncNodeActionWithConfig;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 调研扇出节点（fanout 模式）
+ * 图在本节点之后并行进入各调研分支（{@link ResearchBranch}）；这里先一次性发出（或复用预取的）全部查询，
+ * 各分支只等待各自的结果，不会重复请求
+ */
+public class ResearchFanoutNode implements AsyncNodeActionWithConfig {
+
+    private final ResearchPrefetcher researchPrefetcher;
+
+    public ResearchFanoutNode(ResearchPrefetcher researchPrefetcher) {
+        this.researchPrefetcher = researchPrefetcher;
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> apply(OverAllState state, RunnableConfig config) {
+        state.value("travelRequirements")
+                .map(TravelRequirements::from)
+                .map(TravelRequirements::destination)
+                .filter(destination -> !destination.isBlank())
+                .ifPresent(destination -> researchPrefetcher.lookups(config.threadId().orElse(null), destination));
+        return CompletableFuture.completedFuture(Map.of());
+    }
+}
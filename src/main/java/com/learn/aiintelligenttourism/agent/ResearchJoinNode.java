@@ -0,0 +1,59 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.action.NodeActionWithConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 调研汇合节点（fanout 模式）
+ * 全部调研分支完成后执行：按调研智能体的输出格式合并为 searchResults，
+ * 各分支耗时写入 researchTimings（分支节点名 -> 毫秒），并释放本会话已发出的查询
+ */
+@Slf4j
+public class ResearchJoinNode implements NodeActionWithConfig {
+
+    private final ResearchPrefetcher researchPrefetcher;
+    private final MeterRegistry meterRegistry;
+
+    public ResearchJoinNode(ResearchPrefetcher researchPrefetcher, MeterRegistry meterRegistry) {
+        this.researchPrefetcher = researchPrefetcher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state, RunnableConfig config) {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        for (ResearchBranch branch : ResearchBranch.values()) {
+            timings.put(branch.node(), state.value(branch.millisKey())
+                    .map(millis -> ((Number) millis).longValue())
+                    .orElse(0L));
+        }
+        String searchResults = DirectResearcher.format(
+                value(state, ResearchBranch.WEATHER),
+                value(state, ResearchBranch.GUIDES),
+                value(state, ResearchBranch.ENTRY_POLICY),
+                value(state, ResearchBranch.CURRENCY));
+
+        long slowest = timings.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        meterRegistry.timer("tourism.research", "mode", ResearchNode.MODE_FANOUT)
+                .record(Duration.ofMillis(slowest));
+        log.info("调研完成（{}），各分支耗时 {} ms", ResearchNode.MODE_FANOUT, timings);
+
+        researchPrefetcher.release(config.threadId().orElse(null));
+        return Map.of("searchResults", searchResults, "researchTimings", timings);
+    }
+
+    /**
+     * 分支结果；无需查询的分支返回 null（不输出该项）
+     */
+    private static String value(OverAllState state, ResearchBranch branch) {
+        String value = state.value(branch.resultKey()).map(String::valueOf).orElse("");
+        return ResearchBranchNode.NOT_APPLICABLE.equals(value) ? null : value;
+    }
+}
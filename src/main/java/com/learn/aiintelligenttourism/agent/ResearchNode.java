@@ -4,23 +4,74 @@ import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.RunnableConfig;
 import com.alibaba.cloud.ai.graph.action.NodeActionWithConfig;
 import com.alibaba.cloud.ai.graph.agent.ReactAgent;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+/**
+ * 调研节点
+ * tourism.research.mode 为 direct 时，目的地和出行时间已知就由 {@link DirectResearcher} 直接并发调用工具，不经过大模型；
+ * 设为 agent 或需求信息不全时使用调研智能体（ReactAgent，最多 5 次模型调用）。
+ * direct 模式优先取用信息提取阶段预取的查询（{@link ResearchPrefetcher}）
+ */
+@Slf4j
 @Component
 public class ResearchNode implements NodeActionWithConfig {
 
+    public static final String MODE_DIRECT = "direct";
+    // 调研拆分为图中的并行分支（见 TourismGraphService / ResearchBranchNode），不经过本节点
+    public static final String MODE_FANOUT = "fanout";
+    public static final String MODE_AGENT = "agent";
+
     @Resource
     private ReactAgent researchAgent;
 
+    @Resource
+    private DirectResearcher directResearcher;
+
+    @Resource
+    private ResearchPrefetcher researchPrefetcher;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${tourism.research.mode:fanout}")
+    private String mode;
+
     @Override
     public Map<String, Object> apply(OverAllState state, RunnableConfig config) throws Exception {
+        TravelRequirements requirements = state.value("travelRequirements")
+                .map(TravelRequirements::from)
+                .orElse(null);
+        boolean direct = !MODE_AGENT.equalsIgnoreCase(mode) && requirements != null && !requirements.isMissingCriticalInfo();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return direct
+                    ? Map.of("searchResults", researchDirectly(requirements, config))
+                    : researchWithAgent(state);
+        } finally {
+            long nanos = sample.stop(meterRegistry.timer("tourism.research", "mode", direct ? MODE_DIRECT : MODE_AGENT));
+            log.info("调研完成（{}），耗时 {} ms", direct ? MODE_DIRECT : MODE_AGENT, nanos / 1_000_000);
+        }
+    }
+
+    private String researchDirectly(TravelRequirements requirements, RunnableConfig config) {
+        return researchPrefetcher.take(config.threadId().orElse(null), requirements.destination())
+                .map(directResearcher::research)
+                .orElseGet(() -> directResearcher.research(requirements));
+    }
+
+    private Map<String, Object> researchWithAgent(OverAllState state) throws Exception {
         System.out.println(">>> 进入 Research Agent 节点 (手动隔离模式)");
 
         // 关键点：创建一个全新的 Config，不包含 resume 信号
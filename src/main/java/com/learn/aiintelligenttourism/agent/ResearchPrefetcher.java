@@ -0,0 +1,91 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 调研预取
+ * 信息提取节点往往先拿到目的地、还缺出行时间，于是中断追问用户；
+ * 此时就按目的地发出天气、知识库、汇率查询（不依赖出行时间），查询结果按会话（threadId）保存，
+ * 用户补充时间、恢复执行到调研节点时直接取用已完成的结果，调研耗时被用户的思考时间掩盖。
+ * 只在 tourism.research.mode 为 direct / fanout 时生效；目的地变化时重新预取，取用后移除，超过 ttl 未取用的预取被丢弃。
+ * fanout 模式下各调研分支也通过 {@link #lookups} 共享同一组查询
+ * 指标：tourism.research.prefetch（outcome=hit/miss）
+ */
+@Slf4j
+@Component
+public class ResearchPrefetcher {
+
+    private final DirectResearcher directResearcher;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Cache<String, DirectResearcher.Lookups> prefetched;
+
+    public ResearchPrefetcher(DirectResearcher directResearcher,
+                              MeterRegistry meterRegistry,
+                              @Value("${tourism.research.mode:fanout}") String mode,
+                              @Value("${tourism.research.prefetch.enabled:true}") boolean enabled,
+                              @Value("${tourism.research.prefetch.ttl:10m}") Duration ttl,
+                              @Value("${tourism.research.prefetch.maximum-size:10000}") long maximumSize) {
+        this.directResearcher = directResearcher;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled && !ResearchNode.MODE_AGENT.equalsIgnoreCase(mode);
+        this.prefetched = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * 为会话预取目的地的调研数据；同一目的地已在预取时不重复发出
+     */
+    public void prefetch(String threadId, String destination) {
+        if (!enabled || threadId == null || destination == null || destination.isBlank()) {
+            return;
+        }
+        lookups(threadId, destination);
+    }
+
+    /**
+     * 会话当前目的地的查询：已发出（预取或其他分支发出）且目的地一致时复用，否则立即发出
+     */
+    public DirectResearcher.Lookups lookups(String threadId, String destination) {
+        String normalized = destination.strip();
+        if (threadId == null) {
+            return directResearcher.start(normalized);
+        }
+        return prefetched.asMap().compute(threadId, (id, existing) -> {
+            if (existing != null && existing.destination().equals(normalized)) {
+                return existing;
+            }
+            log.info("Thread [{}] - 发出调研查询: {}", threadId, normalized);
+            return directResearcher.start(normalized);
+        });
+    }
+
+    /**
+     * 取出会话预取的查询（目的地一致时），取出后移除
+     */
+    public Optional<DirectResearcher.Lookups> take(String threadId, String destination) {
+        DirectResearcher.Lookups lookups = threadId == null ? null : prefetched.asMap().remove(threadId);
+        boolean hit = lookups != null && destination != null && lookups.destination().equals(destination.strip());
+        meterRegistry.counter("tourism.research.prefetch", "outcome", hit ? "hit" : "miss").increment();
+        return hit ? Optional.of(lookups) : Optional.empty();
+    }
+
+    /**
+     * 调研结束后移除会话的查询（不计入命中率）
+     */
+    public void release(String threadId) {
+        if (threadId != null) {
+            prefetched.invalidate(threadId);
+        }
+    }
+}
@@ -4,6 +4,10 @@ import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.RunnableConfig;
 import com.alibaba.cloud.ai.graph.action.NodeActionWithConfig;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+import com.learn.aiintelligenttourism.RAG.LocationFilterResolver;
+import com.learn.aiintelligenttourism.app.SemanticAnswerCache;
+import com.learn.aiintelligenttourism.tools.TimeSensitiveToolCallback;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
@@ -23,6 +27,7 @@ import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Slf4j
 @Component
@@ -42,6 +47,9 @@ public class SimpleChatNode implements NodeActionWithConfig {
     @Autowired
     private JdbcChatMemoryRepository chatMemoryRepository;
 
+    @Autowired
+    private SemanticAnswerCache semanticAnswerCache;
+
 
     public SimpleChatNode(ChatClient chatClient, Resource systemResource) {
         this.chatClient = chatClient;
@@ -73,7 +81,26 @@ public class SimpleChatNode implements NodeActionWithConfig {
         String chatId = state.value("chatId")
                 .map(v -> (String) v)
                 .orElseThrow(() -> new IllegalStateException("会话ID 异常"));
+        // 本会话已收集到目的地时按目的地过滤知识库检索
+        String destination = state.value("travelRequirements")
+                .map(TravelRequirements::from)
+                .map(TravelRequirements::destination)
+                .orElse("");
+        // 会话首轮（且未按目的地过滤）的问题先查语义缓存
+        SemanticAnswerCache.Lookup cacheLookup = messages.size() <= 1 && destination.isEmpty()
+                ? semanticAnswerCache.lookup(message)
+                : null;
+        if (cacheLookup != null) {
+            Optional<String> cached = cacheLookup.answer();
+            if (cached.isPresent()) {
+                return Map.of(
+                        "finalResponse", cached.get(),
+                        "next_node", "end",
+                        "messages", new AssistantMessage(cached.get()));
+            }
+        }
         Prompt prompt = new Prompt(messages, this.chatOptions);
+        Map<String, Object> toolContext = TimeSensitiveToolCallback.newContext();
         ChatResponse chatResponse = this.chatClient
                 .prompt(prompt)
                 //.advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, chatId))
@@ -81,7 +108,9 @@ public class SimpleChatNode implements NodeActionWithConfig {
                 .system(systemResource)
                 .user(message)
                 .advisors(tourismAppRagCustomAdvisor)
+                .advisors(spec -> spec.param(LocationFilterResolver.DESTINATION, destination))
                 .toolCallbacks(allTools)
+                .toolContext(toolContext)
                 .call()
                 .chatResponse();
 
@@ -90,6 +119,10 @@ public class SimpleChatNode implements NodeActionWithConfig {
         String content = chatResponse.getResult().getOutput().getText();
         // 返回给前端：类型是 "text"
         assert content != null;
+        // 调用过天气、汇率工具的回答包含实时数据，不缓存
+        if (cacheLookup != null && !TimeSensitiveToolCallback.invoked(toolContext)) {
+            semanticAnswerCache.put(cacheLookup, content, SemanticAnswerCache.sources(chatResponse));
+        }
         return Map.of(
                 "finalResponse", content,
                 "next_node","end",
@@ -0,0 +1,281 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.checkpoint.BaseCheckpointSaver;
+import com.alibaba.cloud.ai.graph.checkpoint.Checkpoint;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界、可淘汰、可持久化的 Checkpoint 保存器（替代 MemorySaver）
+ * <p>
+ * 与 MemorySaver 保存每个会话的完整历史不同，这里每个会话只保留最新的一个 Checkpoint：
+ *  - 热层：内存 LRU，超过 maxThreads 或空闲超过 ttl 的会话被淘汰
+ *  - 冷层：可选的 {@link CheckpointStore}，每次 put 同步写入（write-through），
+ *    热层淘汰或服务重启后从冷层加载，中断中的会话不会丢失；冷层写入失败只记录日志，会话仍保留在热层；
+ *    冷层按保留期定期清理（{@link #sweepCold}），超过保留期未写入的会话被删除
+ * <p>
+ * 锁：热层的 LinkedHashMap 由一把全局锁保护，只包含内存操作；冷层读写按会话分段加锁（同一会话的读写有序），
+ * 不同会话的磁盘 I/O 互不阻塞
+ * <p>
+ * 指标：tourism.graph.checkpoint.evictions（reason=size/expired）、
+ * tourism.graph.checkpoint.requests（tier=hot/cold/miss）、tourism.graph.checkpoint.hot.size、
+ * tourism.graph.checkpoint.cold.failures、tourism.graph.checkpoint.cold.expired
+ */
+@Slf4j
+public class TieredCheckpointSaver implements BaseCheckpointSaver {
+
+    private final int maxThreads;
+    private final long ttlMillis;
+    private final CheckpointStore coldStore;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+
+    // 冷层读写的分段锁数量
+    private static final int THREAD_LOCK_STRIPES = 64;
+
+    // accessOrder = true：最久未访问的会话排在最前面
+    private final LinkedHashMap<String, HotEntry> hotTier = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock[] threadLocks = new ReentrantLock[THREAD_LOCK_STRIPES];
+
+    public TieredCheckpointSaver(int maxThreads, Duration ttl, CheckpointStore coldStore, MeterRegistry meterRegistry) {
+        this(maxThreads, ttl, coldStore, meterRegistry, Clock.systemUTC());
+    }
+
+    public TieredCheckpointSaver(int maxThreads, Duration ttl, CheckpointStore coldStore, MeterRegistry meterRegistry, Clock clock) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("maxThreads must be positive");
+        }
+        this.maxThreads = maxThreads;
+        this.ttlMillis = ttl.toMillis();
+        this.coldStore = coldStore;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        for (int i = 0; i < threadLocks.length; i++) {
+            threadLocks[i] = new ReentrantLock();
+        }
+        meterRegistry.gauge("tourism.graph.checkpoint.hot.size", hotTier, Map::size);
+    }
+
+    @Override
+    public Collection<Checkpoint> list(RunnableConfig config) {
+        return get(config).map(List::of).orElseGet(List::of);
+    }
+
+    /**
+     * 只保留最新的 Checkpoint，因此无论 config 中是否指定 checkPointId，都返回最新的一个
+     */
+    @Override
+    public Optional<Checkpoint> get(RunnableConfig config) {
+        String threadId = threadIdOf(config);
+        Optional<Checkpoint> hot = getHot(threadId);
+        if (hot.isPresent()) {
+            return hot;
+        }
+        ReentrantLock threadLock = threadLockOf(threadId);
+        threadLock.lock();
+        try {
+            // 等锁期间同一会话可能已经写入
+            hot = getHot(threadId);
+            if (hot.isPresent()) {
+                return hot;
+            }
+            Optional<Checkpoint> loaded = loadCold(threadId);
+            if (loaded.isPresent()) {
+                record("cold");
+                putHot(threadId, loaded.get());
+            } else {
+                record("miss");
+            }
+            return loaded;
+        } finally {
+            threadLock.unlock();
+        }
+    }
+
+    @Override
+    public RunnableConfig put(RunnableConfig config, Checkpoint checkpoint) throws Exception {
+        String threadId = threadIdOf(config);
+        ReentrantLock threadLock = threadLockOf(threadId);
+        threadLock.lock();
+        try {
+            saveCold(threadId, checkpoint);
+            putHot(threadId, checkpoint);
+        } finally {
+            threadLock.unlock();
+        }
+        if (config.checkPointId().isPresent()) {
+            // 替换已有 Checkpoint（与 MemorySaver 语义一致）
+            return config;
+        }
+        return RunnableConfig.builder(config)
+                .checkPointId(checkpoint.getId())
+                .build();
+    }
+
+    @Override
+    public boolean clear(RunnableConfig config) {
+        String threadId = threadIdOf(config);
+        ReentrantLock threadLock = threadLockOf(threadId);
+        threadLock.lock();
+        try {
+            boolean removed;
+            lock.lock();
+            try {
+                removed = hotTier.remove(threadId) != null;
+            } finally {
+                lock.unlock();
+            }
+            if (coldStore != null) {
+                removed |= coldStore.delete(threadId);
+            }
+            return removed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            threadLock.unlock();
+        }
+    }
+
+    /**
+     * 清理冷层中最后一次写入早于 retention 之前的会话，由调用方定期执行
+     * @return 删除的会话数
+     */
+    public int sweepCold(Duration retention) {
+        if (coldStore == null) {
+            return 0;
+        }
+        try {
+            int deleted = coldStore.deleteOlderThan(clock.instant().minus(retention));
+            meterRegistry.counter("tourism.graph.checkpoint.cold.expired").increment(deleted);
+            return deleted;
+        } catch (IOException e) {
+            log.error("清理过期的持久化 Checkpoint 失败", e);
+            return 0;
+        }
+    }
+
+    private Optional<Checkpoint> getHot(String threadId) {
+        lock.lock();
+        try {
+            long now = clock.millis();
+            HotEntry entry = hotTier.get(threadId);
+            if (entry != null && !entry.isExpired(now, ttlMillis)) {
+                entry.touch(now);
+                record("hot");
+                return Optional.of(entry.checkpoint);
+            }
+            if (entry != null) {
+                hotTier.remove(threadId);
+                evicted("expired");
+            }
+            return Optional.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void putHot(String threadId, Checkpoint checkpoint) {
+        lock.lock();
+        try {
+            long now = clock.millis();
+            hotTier.put(threadId, new HotEntry(checkpoint, now));
+            evictOverflow(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 先清理过期会话（按访问顺序排在最前），再按容量淘汰最久未访问的会话
+     */
+    private void evictOverflow(long now) {
+        Iterator<HotEntry> iterator = hotTier.values().iterator();
+        while (iterator.hasNext()) {
+            HotEntry eldest = iterator.next();
+            if (eldest.isExpired(now, ttlMillis)) {
+                iterator.remove();
+                evicted("expired");
+            } else if (hotTier.size() > maxThreads) {
+                iterator.remove();
+                evicted("size");
+            } else {
+                break;
+            }
+        }
+    }
+
+    private Optional<Checkpoint> loadCold(String threadId) {
+        if (coldStore == null) {
+            return Optional.empty();
+        }
+        try {
+            return coldStore.load(threadId);
+        } catch (IOException e) {
+            log.error("Thread [{}] - 读取持久化 Checkpoint 失败", threadId, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 冷层写入失败（磁盘或序列化异常）不影响本次请求：会话仍在热层，只是淘汰或重启后无法恢复
+     */
+    private void saveCold(String threadId, Checkpoint checkpoint) {
+        if (coldStore == null) {
+            return;
+        }
+        try {
+            coldStore.save(threadId, checkpoint);
+        } catch (IOException | RuntimeException e) {
+            meterRegistry.counter("tourism.graph.checkpoint.cold.failures").increment();
+            log.error("Thread [{}] - 持久化 Checkpoint 失败，仅保留在内存中", threadId, e);
+        }
+    }
+
+    private ReentrantLock threadLockOf(String threadId) {
+        return threadLocks[Math.floorMod(threadId.hashCode(), threadLocks.length)];
+    }
+
+    private void record(String tier) {
+        meterRegistry.counter("tourism.graph.checkpoint.requests", "tier", tier).increment();
+    }
+
+    private void evicted(String reason) {
+        meterRegistry.counter("tourism.graph.checkpoint.evictions", "reason", reason).increment();
+    }
+
+    private static String threadIdOf(RunnableConfig config) {
+        return config.threadId().orElse(THREAD_ID_DEFAULT);
+    }
+
+    private static final class HotEntry {
+        private final Checkpoint checkpoint;
+        private long lastAccess;
+
+        private HotEntry(Checkpoint checkpoint, long lastAccess) {
+            this.checkpoint = checkpoint;
+            this.lastAccess = lastAccess;
+        }
+
+        private void touch(long now) {
+            this.lastAccess = now;
+        }
+
+        private boolean isExpired(long now, long ttlMillis) {
+            return ttlMillis > 0 && now - lastAccess > ttlMillis;
+        }
+    }
+}
@@ -19,9 +19,16 @@ public class TourismAppKeyStrategyFactory{
             strategies.put("intent", new ReplaceStrategy());
             // 3. 提取到的关键信息 (槽位)，规划相关
             strategies.put("travelRequirements", new ReplaceStrategy());  // 旅游信息
+            strategies.put("followUpQuestion", new ReplaceStrategy());  // 信息不全时的追问
 
             // 4. 工具调用结果
             strategies.put("searchResults", new ReplaceStrategy());
+            // fanout 模式下各调研分支的结果与耗时，以及汇合后的分支耗时
+            for (ResearchBranch branch : ResearchBranch.values()) {
+                strategies.put(branch.resultKey(), new ReplaceStrategy());
+                strategies.put(branch.millisKey(), new ReplaceStrategy());
+            }
+            strategies.put("researchTimings", new ReplaceStrategy());
             // 5. 最终产物
             strategies.put("itinerary", new ReplaceStrategy()); // 结构化行程单
             strategies.put("finalResponse", new ReplaceStrategy()); // 给用户的自然语言回复
@@ -0,0 +1,300 @@
+package com.learn.aiintelligenttourism.app;
+
+import com.learn.aiintelligenttourism.RAG.KnowledgeBaseChangedEvent;
+import com.learn.aiintelligenttourism.RAG.LocationFilterResolver;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.advisor.RetrievalAugmentationAdvisor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 语义回答缓存
+ * FAQ 类问题（"去日本要注意什么坑"、"京都岚山怎么去"）每天被以不同措辞问很多次，
+ * 这里把问题 Embedding 后与已缓存的问题比较余弦相似度，超过阈值直接返回缓存的回答，省掉 RAG、工具调用和大模型生成。
+ * <ul>
+ *     <li>只缓存会话首轮的问题（多轮对话的回答依赖上下文），且只缓存文本回答：调用方在意图判断之后查找，规划类请求不经过缓存</li>
+ *     <li>问题中识别到的地名（{@link LocationFilterResolver#places}）必须与缓存的问题完全一致，
+ *     只差目的地的问题（"京都有什么好玩的" / "大阪有什么好玩的"）向量可能很接近，不能互相命中</li>
+ *     <li>与时间相关的问题（天气、汇率等关键词）以及包含温度的回答不缓存；生成时调用过天气、汇率工具的回答由调用方跳过写入
+ *     （{@link com.learn.aiintelligenttourism.tools.TimeSensitiveToolCallback}）</li>
+ *     <li>写入后 ttl 过期；知识库变更（{@link KnowledgeBaseChangedEvent}）时，只失效引用了变更文件或同一地区文档的回答</li>
+ * </ul>
+ * 指标：tourism.chat.semantic_cache（outcome=hit/miss/excluded）、tourism.chat.semantic_cache.size
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    // 缓存的回答分片推送时每片的字符数
+    private static final int STREAM_CHUNK_SIZE = 8;
+
+    private static final Pattern TEMPERATURE = Pattern.compile("-?\\d+(\\.\\d+)?\\s*(℃|°)");
+
+    private final EmbeddingModel embeddingModel;
+    private final LocationFilterResolver locationFilterResolver;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final Duration ttl;
+    private final int maximumSize;
+    private final List<String> excludedKeywords;
+    private final Clock clock;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public SemanticAnswerCache(EmbeddingModel embeddingModel,
+                               LocationFilterResolver locationFilterResolver,
+                               MeterRegistry meterRegistry,
+                               @Value("${tourism.chat.semantic-cache.enabled:false}") boolean enabled,
+                               @Value("${tourism.chat.semantic-cache.similarity-threshold:0.92}") double similarityThreshold,
+                               @Value("${tourism.chat.semantic-cache.ttl:6h}") Duration ttl,
+                               @Value("${tourism.chat.semantic-cache.maximum-size:2000}") int maximumSize,
+                               @Value("${tourism.chat.semantic-cache.excluded-keywords:天气,气温,温度,下雨,降雨,下雪,汇率,兑换,换汇,实时,今天,明天,现在}") List<String> excludedKeywords) {
+        this(embeddingModel, locationFilterResolver, meterRegistry, enabled, similarityThreshold, ttl, maximumSize, excludedKeywords, Clock.systemUTC());
+    }
+
+    SemanticAnswerCache(EmbeddingModel embeddingModel, LocationFilterResolver locationFilterResolver,
+                        MeterRegistry meterRegistry, boolean enabled,
+                        double similarityThreshold, Duration ttl, int maximumSize, List<String> excludedKeywords,
+                        Clock clock) {
+        this.embeddingModel = embeddingModel;
+        this.locationFilterResolver = locationFilterResolver;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.ttl = ttl;
+        this.maximumSize = maximumSize;
+        this.excludedKeywords = List.copyOf(excludedKeywords);
+        this.clock = clock;
+        meterRegistry.gaugeMapSize("tourism.chat.semantic_cache.size", List.of(), entries);
+    }
+
+    /**
+     * 查找语义相近问题的回答
+     */
+    public Optional<String> get(String question) {
+        return lookup(question).answer();
+    }
+
+    /**
+     * 查找语义相近且地名一致的问题的回答；返回的 Lookup 带有问题的向量，未命中时生成回答后交给 {@link #put(Lookup, String, Collection)}，
+     * 不必再次 Embedding
+     */
+    public Lookup lookup(String question) {
+        if (!cacheable(question)) {
+            meterRegistry.counter("tourism.chat.semantic_cache", "outcome", "excluded").increment();
+            return new Lookup(question, null, Set.of(), Optional.empty());
+        }
+        float[] query = normalize(embeddingModel.embed(question));
+        Set<String> places = locationFilterResolver.places(question);
+        Instant now = clock.instant();
+        Entry best = null;
+        double bestScore = similarityThreshold;
+        for (Entry entry : entries.values()) {
+            if (entry.expiresAt().isBefore(now) || !entry.questionPlaces().equals(places)) {
+                continue;
+            }
+            double score = dot(query, entry.embedding());
+            if (score >= bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+        if (best == null) {
+            meterRegistry.counter("tourism.chat.semantic_cache", "outcome", "miss").increment();
+            return new Lookup(question, query, places, Optional.empty());
+        }
+        log.info("语义缓存命中（相似度 {}）：\"{}\" ≈ \"{}\"", String.format("%.3f", bestScore), question, best.question());
+        meterRegistry.counter("tourism.chat.semantic_cache", "outcome", "hit").increment();
+        return new Lookup(question, query, places, Optional.of(best.answer()));
+    }
+
+    /**
+     * 缓存回答，sources 为回答引用的知识库片段（用于知识库变更时按文件和地区失效）
+     * 问题需要 Embedding，调用方不要在流的完成回调等非阻塞线程上调用
+     */
+    public void put(String question, String answer, Collection<Document> sources) {
+        if (!cacheable(question)) {
+            return;
+        }
+        put(new Lookup(question, normalize(embeddingModel.embed(question)), locationFilterResolver.places(question),
+                Optional.empty()), answer, sources);
+    }
+
+    /**
+     * 缓存回答，复用查找时计算的问题向量
+     */
+    public void put(Lookup lookup, String answer, Collection<Document> sources) {
+        if (!cacheable(lookup.question()) || lookup.embedding() == null
+                || answer == null || answer.isBlank() || TEMPERATURE.matcher(answer).find()) {
+            return;
+        }
+        Set<String> files = new HashSet<>();
+        Set<Place> places = new HashSet<>();
+        for (Document source : sources) {
+            Object filename = source.getMetadata().get("filename");
+            if (filename != null) {
+                files.add(filename.toString());
+            }
+            places.add(Place.of(source));
+        }
+        Instant now = clock.instant();
+        entries.put(sequence.incrementAndGet(), new Entry(lookup.question(), answer, lookup.embedding(),
+                now.plus(ttl), lookup.places(), files, places));
+        evict(now);
+    }
+
+    /**
+     * 从 RAG 回答中取出引用的知识库片段
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Document> sources(ChatResponse chatResponse) {
+        if (chatResponse == null || chatResponse.getMetadata() == null) {
+            return List.of();
+        }
+        Object documents = chatResponse.getMetadata().get(RetrievalAugmentationAdvisor.DOCUMENT_CONTEXT);
+        return documents instanceof List<?> list ? (List<Document>) list : List.of();
+    }
+
+    /**
+     * 将缓存的回答切分为小片，按流式接口的格式推送
+     */
+    public static List<String> chunks(String answer) {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < answer.length(); i += STREAM_CHUNK_SIZE) {
+            chunks.add(answer.substring(i, Math.min(answer.length(), i + STREAM_CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+
+    public boolean cacheable(String question) {
+        return enabled && question != null && !question.isBlank()
+                && excludedKeywords.stream().noneMatch(question::contains);
+    }
+
+    /**
+     * 知识库变更：失效引用了变更文件、或引用了同一地区文档的回答；没有引用任何文档的回答也一并失效（新文档可能与之相关）。
+     * 变更涉及「全球」文档或变更片段不完整时全部失效
+     */
+    @EventListener
+    public void onKnowledgeBaseChanged(KnowledgeBaseChangedEvent event) {
+        int before = entries.size();
+        if (!event.complete()) {
+            entries.clear();
+        } else {
+            Set<String> files = new HashSet<>();
+            Set<Place> places = new HashSet<>();
+            for (Document document : event.changedDocuments()) {
+                Object filename = document.getMetadata().get("filename");
+                if (filename != null) {
+                    files.add(filename.toString());
+                }
+                places.add(Place.of(document));
+            }
+            entries.values().removeIf(entry -> entry.files().isEmpty()
+                    || entry.files().stream().anyMatch(files::contains)
+                    || places.stream().anyMatch(changed -> entry.places().stream().anyMatch(changed::overlaps)));
+        }
+        log.info("知识库已变更，语义缓存失效 {} 条", before - entries.size());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 清理过期条目，超出容量时淘汰最早过期的条目
+     */
+    private void evict(Instant now) {
+        entries.values().removeIf(entry -> entry.expiresAt().isBefore(now));
+        int overflow = entries.size() - maximumSize;
+        if (overflow > 0) {
+            entries.entrySet().stream()
+                    .sorted(Comparator.comparing(e -> e.getValue().expiresAt()))
+                    .limit(overflow)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(entries::remove);
+        }
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 一次缓存查找的结果：问题、归一化后的向量（问题不可缓存时为 null）、问题中识别到的地名，以及命中的回答
+     */
+    public record Lookup(String question, float[] embedding, Set<String> places, Optional<String> answer) {
+    }
+
+    private record Entry(String question, String answer, float[] embedding, Instant expiresAt,
+                         Set<String> questionPlaces, Set<String> files, Set<Place> places) {
+    }
+
+    /**
+     * 文档所属地区（country / city 分区）
+     */
+    private record Place(String country, String city) {
+
+        static Place of(Document document) {
+            Object country = document.getMetadata().get(LocationFilterResolver.COUNTRY);
+            Object city = document.getMetadata().get(LocationFilterResolver.CITY);
+            return new Place(country == null ? LocationFilterResolver.GLOBAL : country.toString(),
+                    city == null ? LocationFilterResolver.ANY_CITY : city.toString());
+        }
+
+        /**
+         * 本地区（变更的文档）是否影响 other（回答引用的文档）：全球文档影响所有地区，国家级文档影响该国所有城市
+         */
+        boolean overlaps(Place other) {
+            if (LocationFilterResolver.GLOBAL.equals(country)) {
+                return true;
+            }
+            return country.equals(other.country)
+                    && (LocationFilterResolver.ANY_CITY.equals(city) || LocationFilterResolver.ANY_CITY.equals(other.city)
+                    || city.equals(other.city));
+        }
+    }
+}
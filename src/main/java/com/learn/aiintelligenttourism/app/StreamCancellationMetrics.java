@@ -0,0 +1,68 @@
+package com.learn.aiintelligenttourism.app;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流式会话取消指标
+ * 用户关闭页面后上游的大模型流会被取消，这里统计被取消的次数以及因此节省的 Token（估算值）：
+ *  - tourism.stream.completion.tokens：正常完成时生成的 Token 数
+ *  - tourism.stream.cancelled：被取消的流数量
+ *  - tourism.stream.tokens.saved：节省的 Token 数 = 该分支平均完成 Token 数 - 取消前已生成的 Token 数
+ */
+@Slf4j
+@Component
+public class StreamCancellationMetrics {
+
+    public static final String BRANCH_TEXT = "text";
+    public static final String BRANCH_CARD = "card";
+
+    private final MeterRegistry meterRegistry;
+
+    public StreamCancellationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 记录一次正常完成的生成
+     * @param branch 分支（text / card）
+     * @param tokens 生成的 Token 数
+     */
+    public void recordCompleted(String branch, long tokens) {
+        completionTokens(branch).record(tokens);
+    }
+
+    /**
+     * 记录一次被取消的生成
+     * @param branch 分支（text / card）
+     * @param generatedTokens 取消前已经生成的 Token 数
+     */
+    public void recordCancelled(String branch, long generatedTokens) {
+        long saved = Math.max(0, Math.round(completionTokens(branch).mean()) - generatedTokens);
+        meterRegistry.counter("tourism.stream.cancelled", "branch", branch).increment();
+        meterRegistry.counter("tourism.stream.tokens.saved", "branch", branch).increment(saved);
+        log.info("流式会话已取消 branch={}, 已生成≈{} tokens, 节省≈{} tokens", branch, generatedTokens, saved);
+    }
+
+    private DistributionSummary completionTokens(String branch) {
+        return DistributionSummary.builder("tourism.stream.completion.tokens")
+                .tag("branch", branch)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 粗略估算 Token 数：汉字按 1 个 Token 计，其余字符按 4 个 1 Token 计
+     */
+    public static long estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        long han = text.codePoints()
+                .filter(cp -> Character.UnicodeScript.of(cp) == Character.UnicodeScript.HAN)
+                .count();
+        long others = text.codePointCount(0, text.length()) - han;
+        return han + (others + 3) / 4;
+    }
+}
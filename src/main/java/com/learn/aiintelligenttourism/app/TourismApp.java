@@ -7,15 +7,24 @@ import com.learn.aiintelligenttourism.Model.ItineraryResponse;
 import com.learn.aiintelligenttourism.RAG.TourismAppDocumentReader;
 import com.learn.aiintelligenttourism.RAG.TourismAppRagCustomAdvisorFactory;
 import com.learn.aiintelligenttourism.advisor.MyLoggerAdvisor;
+import com.learn.aiintelligenttourism.agent.ItineraryStreamParser;
+import com.learn.aiintelligenttourism.agent.LocalIntentClassifier;
+import com.learn.aiintelligenttourism.tools.TimeSensitiveToolCallback;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.ResponseEntity;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.document.Document;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,16 +32,33 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.ConnectableFlux;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class TourismApp {
 
     private final ChatClient chatClient;
 
+    private final ChatClient speculativeChatClient;
+
+    // 流式行程单的系统提示词：基础系统提示词后追加 {format} 占位符，输出格式说明作为模板参数注入，
+    // 用户消息保持原文，不把格式说明写入会话记忆和 RAG 检索语句
+    private final String cardSystemText;
+
     @Autowired
     JdbcChatMemoryRepository chatMemoryRepository; // 配置存储
 
@@ -62,6 +88,16 @@ public class TourismApp {
                         new MyLoggerAdvisor()
                 )
                 .build();
+        // 投机执行专用：不挂记忆 Advisor，避免被丢弃的回答写入会话记忆，记忆由调用方在确认采用后手动写入
+        this.speculativeChatClient = ChatClient.builder(dashscopeChatModel)
+                .defaultSystem(systemResource)
+                .defaultAdvisors(new MyLoggerAdvisor())
+                .build();
+        try {
+            this.cardSystemText = systemResource.getContentAsString(StandardCharsets.UTF_8) + System.lineSeparator() + "{format}";
+        } catch (IOException e) {
+            throw new UncheckedIOException("系统提示词读取失败", e);
+        }
     }
 
 
@@ -109,6 +145,17 @@ public class TourismApp {
         //vectorStore.add(documents);
         // 获取当前日期
 
+        // 会话首轮的问题先查语义缓存，未命中时写入缓存复用查找时的问题向量
+        SemanticAnswerCache.Lookup cacheLookup = isFirstTurn(chatId) ? semanticAnswerCache.lookup(message) : null;
+        if (cacheLookup != null) {
+            Optional<String> cached = cacheLookup.answer();
+            if (cached.isPresent()) {
+                rememberCachedAnswer(chatId, message, cached.get());
+                return cached.get();
+            }
+        }
+
+        Map<String, Object> toolContext = TimeSensitiveToolCallback.newContext();
         ChatResponse chatResponse = chatClient
                 .prompt()
                 .user(message)
@@ -117,9 +164,14 @@ public class TourismApp {
                 //.advisors(loveAppRagCloudAdvisor)
                 .advisors(tourismAppRagCustomAdvisor)
                 .toolCallbacks(allTools)
+                .toolContext(toolContext)
                 .call()
                 .chatResponse();
         String content = chatResponse.getResult().getOutput().getText();
+        // 调用过天气、汇率工具的回答包含实时数据，不缓存
+        if (cacheLookup != null && !TimeSensitiveToolCallback.invoked(toolContext)) {
+            semanticAnswerCache.put(cacheLookup, content, SemanticAnswerCache.sources(chatResponse));
+        }
         return content;
     }
 
@@ -167,50 +219,187 @@ public class TourismApp {
         }
     }
 
+    @Autowired
+    private StreamCancellationMetrics streamCancellationMetrics;
+
+    @Autowired
+    private LocalIntentClassifier localIntentClassifier;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SemanticAnswerCache semanticAnswerCache;
+
+    /**
+     * 投机执行：意图判断与文本回答同时开始
+     */
+    @Value("${tourism.chat.speculative.enabled:false}")
+    private boolean speculativeEnabled;
+
+    /**
+     * 行程单使用流式结构化输出，生成过程中推送 card_partial 事件
+     */
+    @Value("${tourism.plan.streaming.enabled:true}")
+    private boolean cardStreaming;
+
     /**
      * AI 基础对话（流式），包含意图判断、RAG检索和工具调用
      * 返回的数据结构约定：
      *  - 文本流：{"type": "text", "data": "部分字符"}
+     *  - 卡片片段：{"type": "card_partial", "data": {"title": 标题} 或 {"day": 单日行程}}（流式结构化输出时，生成过程中推送）
      *  - 卡片流：{"type": "card", "data": {完整对象}}
+     * 订阅被取消（客户端断开）时，意图判断、大模型流、工具调用和 RAG 检索都会随之取消。
+     * 语义缓存只在意图判断为文本回答之后查找（见 {@link #doChatWithTextByStream}），规划类请求始终生成行程单
      */
     public Flux<Map<String, Object>> doChatWithIntentionJudgmentByStream(String message, String chatId) {
-        // 使用 Flux.defer 确保 checkIntent 在订阅时才执行，不会阻塞主线程
+        if (speculativeEnabled) {
+            return doChatWithSpeculation(message, chatId);
+        }
+        // 1. AI 意图判断 (耗时的阻塞调用)，放到弹性线程池执行，既不阻塞主线程，也能被取消
+        return Mono.fromCallable(() -> checkIntent(message))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(isPlanning -> isPlanning
+                        ? doChatWithCardByStream(message, chatId)
+                        : doChatWithTextByStream(message, chatId));
+    }
+
+    /**
+     * 缓存的回答按文本流的格式分片推送，并写入会话记忆
+     */
+    private Flux<Map<String, Object>> streamCachedAnswer(String message, String chatId, String answer) {
+        return Flux.fromIterable(SemanticAnswerCache.chunks(answer))
+                .map(content -> Map.<String, Object>of("type", "text", "data", content))
+                .doOnComplete(() -> rememberCachedAnswer(chatId, message, answer));
+    }
+
+    private boolean isFirstTurn(String chatId) {
+        return messageWindowChatMemory.get(chatId).isEmpty();
+    }
+
+    /**
+     * 命中缓存时没有经过记忆 Advisor，手动写入会话记忆，后续追问仍有上下文
+     */
+    private void rememberCachedAnswer(String chatId, String message, String answer) {
+        messageWindowChatMemory.add(chatId, List.of(new UserMessage(message), new AssistantMessage(answer)));
+    }
+
+    /**
+     * 投机执行模式
+     * 本地分类器无法确定意图时，RAG 检索 + 文本回答与大模型意图判断同时开始，文本先缓存：
+     *  - 意图为 FALSE：释放缓存的文本并继续推送，首字延迟少一次意图判断的往返
+     *  - 意图为 TRUE：取消文本流，转为生成行程单，已生成的 Token 计入浪费
+     * 指标：tourism.chat.speculative（outcome=released/discarded）、tourism.chat.speculative.wasted.tokens
+     */
+    private Flux<Map<String, Object>> doChatWithSpeculation(String message, String chatId) {
         return Flux.defer(() -> {
-            // 1. AI 意图判断 (假设 checkIntent 是个耗时操作)
-            boolean isPlanning = checkIntent(message);
-
-            if (isPlanning) {
-                // === 分支 A：意图为生成行程单 (返回 Card) ===
-                // 对于结构化数据，通常建议生成完整对象后一次性返回，或者返回 JSON 字符串
-                // 这里我们使用阻塞的 call() 获取完整结果，然后包装成 Flux 发送一次
-
-                try {
-                    ItineraryResponse itinerary = chatClient
-                            .prompt()
-                            .user(message)
-                            .system(s -> s.param("current_date", today))
-                            .advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, chatId))
-                            //.advisors(loveAppRagCloudAdvisor)
-                            .advisors(tourismAppRagCustomAdvisor)
-                            .toolCallbacks(allTools)
-                            .call()
-                            .entity(ItineraryResponse.class);
-
-                    if (itinerary != null) {
-                        // 发送单个事件
-                        return Flux.just(Map.of("type", "card", "data", itinerary));
-                    } else {
-                        return Flux.error(new RuntimeException("数据生成异常"));
-                    }
-                } catch (Exception e) {
-                    return Flux.error(e);
-                }
+            // 本地分类器足够确定时无需投机
+            Optional<Boolean> localIntent = localIntentClassifier.classify(message);
+            if (localIntent.isPresent()) {
+                return localIntent.get()
+                        ? doChatWithCardByStream(message, chatId)
+                        : doChatWithTextByStream(message, chatId);
+            }
 
-            } else {
-                // === 分支 B：普通对话 (返回 Text 流) ===
-                // 使用 stream() 接口，将每个 token 包装成 Map 返回
+            AtomicLong speculativeTokens = new AtomicLong();
+            StringBuilder answer = new StringBuilder();
+            Map<String, Object> toolContext = TimeSensitiveToolCallback.newContext();
+            List<Message> history = messageWindowChatMemory.get(chatId);
+            ConnectableFlux<String> speculativeText = speculativeChatClient
+                    .prompt()
+                    .messages(history)
+                    .user(message)
+                    .system(s -> s.param("current_date", today))
+                    .advisors(tourismAppRagCustomAdvisor)
+                    .toolCallbacks(allTools)
+                    .toolContext(toolContext)
+                    .stream()
+                    .content()
+                    .doOnNext(content -> {
+                        speculativeTokens.addAndGet(StreamCancellationMetrics.estimateTokens(content));
+                        answer.append(content);
+                    })
+                    .replay();
+            // 立即开始生成并缓存
+            Disposable speculation = speculativeText.connect();
+
+            return Mono.fromCallable(() -> checkIntentByModel(INTENT_SYSTEM_RESOURCE, message))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .doOnCancel(speculation::dispose)
+                    .flatMapMany(isPlanning -> {
+                        if (isPlanning) {
+                            speculation.dispose();
+                            meterRegistry.counter("tourism.chat.speculative", "outcome", "discarded").increment();
+                            meterRegistry.counter("tourism.chat.speculative.wasted.tokens").increment(speculativeTokens.get());
+                            return doChatWithCardByStream(message, chatId);
+                        }
+                        meterRegistry.counter("tourism.chat.speculative", "outcome", "released").increment();
+                        return speculativeText
+                                .doOnComplete(() -> {
+                                    // 采用投机结果后再写入会话记忆
+                                    messageWindowChatMemory.add(chatId, List.of(new UserMessage(message), new AssistantMessage(answer.toString())));
+                                    if (history.isEmpty() && !TimeSensitiveToolCallback.invoked(toolContext)) {
+                                        // 投机流只取文本，未记录引用的片段，知识库任何变更都会使其失效；
+                                        // 写入缓存需要 Embedding，不在流的完成线程上执行
+                                        Schedulers.boundedElastic().schedule(
+                                                () -> semanticAnswerCache.put(message, answer.toString(), List.of()));
+                                    }
+                                    streamCancellationMetrics.recordCompleted(StreamCancellationMetrics.BRANCH_TEXT, speculativeTokens.get());
+                                })
+                                .doOnCancel(() -> {
+                                    speculation.dispose();
+                                    streamCancellationMetrics.recordCancelled(StreamCancellationMetrics.BRANCH_TEXT, speculativeTokens.get());
+                                })
+                                .map(content -> Map.<String, Object>of("type", "text", "data", content));
+                    });
+        });
+    }
+
+    /**
+     * 分支 A：意图为生成行程单 (返回 Card)
+     * 流式结构化输出：边生成边解析，标题和每天的行程解析出来就推送 card_partial，生成结束后推送完整的 card；
+     * 取消订阅时大模型流随之取消
+     */
+    private Flux<Map<String, Object>> doChatWithCardByStream(String message, String chatId) {
+        if (!cardStreaming) {
+            return doChatWithCardByCall(message, chatId);
+        }
+        return Flux.defer(() -> {
+            ItineraryStreamParser parser = new ItineraryStreamParser();
+            AtomicLong generatedTokens = new AtomicLong();
+            return chatClient
+                    .prompt()
+                    .user(message)
+                    .system(s -> s.text(cardSystemText)
+                            .param("current_date", today)
+                            .param("format", parser.format()))
+                    .advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, chatId))
+                    .advisors(tourismAppRagCustomAdvisor)
+                    .toolCallbacks(allTools)
+                    .stream()
+                    .content()
+                    .doOnNext(content -> generatedTokens.addAndGet(StreamCancellationMetrics.estimateTokens(content)))
+                    .concatMapIterable(parser::feed)
+                    .concatWith(Mono.fromCallable(() -> {
+                        ItineraryResponse itinerary = parser.result();
+                        if (itinerary == null) {
+                            throw new RuntimeException("数据生成异常");
+                        }
+                        return Map.<String, Object>of("type", "card", "data", itinerary);
+                    }))
+                    .doOnComplete(() -> streamCancellationMetrics.recordCompleted(
+                            StreamCancellationMetrics.BRANCH_CARD, generatedTokens.get()))
+                    .doOnCancel(() -> streamCancellationMetrics.recordCancelled(
+                            StreamCancellationMetrics.BRANCH_CARD, generatedTokens.get()));
+        });
+    }
 
-                return chatClient
+    /**
+     * 分支 A（tourism.plan.streaming.enabled=false）：生成完整对象后一次性返回；阻塞的 call() 在弹性线程池上执行，
+     * 取消订阅时会中断该线程，不再等待大模型返回
+     */
+    private Flux<Map<String, Object>> doChatWithCardByCall(String message, String chatId) {
+        return Mono.fromCallable(() -> chatClient
                         .prompt()
                         .user(message)
                         .system(s -> s.param("current_date", today))
@@ -218,16 +407,95 @@ public class TourismApp {
                         //.advisors(loveAppRagCloudAdvisor)
                         .advisors(tourismAppRagCustomAdvisor)
                         .toolCallbacks(allTools)
-                        .stream()
-                        .content() // 获取流式字符串内容
-                        .map(content -> {
-                            // 将每个字符串片段包装成前端需要的格式
-                            return Map.of("type", "text", "data", content);
-                        });
-            }
+                        .call()
+                        .responseEntity(ItineraryResponse.class))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(entity -> streamCancellationMetrics.recordCompleted(
+                        StreamCancellationMetrics.BRANCH_CARD, completionTokens(entity)))
+                .doOnCancel(() -> streamCancellationMetrics.recordCancelled(StreamCancellationMetrics.BRANCH_CARD, 0))
+                .flatMapMany(entity -> {
+                    ItineraryResponse itinerary = entity.entity();
+                    if (itinerary == null) {
+                        return Flux.error(new RuntimeException("数据生成异常"));
+                    }
+                    // 发送单个事件
+                    return Flux.just(Map.<String, Object>of("type", "card", "data", itinerary));
+                });
+    }
+
+    /**
+     * 分支 B：普通对话 (返回 Text 流)
+     * 使用 stream() 接口，将每个 token 包装成 Map 返回
+     * 会话首轮的问题先查语义缓存，命中时直接分片推送缓存的回答；查找需要 Embedding，在弹性线程池上执行
+     */
+    private Flux<Map<String, Object>> doChatWithTextByStream(String message, String chatId) {
+        return Mono.fromCallable(() -> isFirstTurn(chatId)
+                        ? Optional.of(semanticAnswerCache.lookup(message))
+                        : Optional.<SemanticAnswerCache.Lookup>empty())
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(lookup -> lookup.flatMap(SemanticAnswerCache.Lookup::answer)
+                        .map(answer -> streamCachedAnswer(message, chatId, answer))
+                        .orElseGet(() -> streamText(message, chatId, lookup.orElse(null))));
+    }
+
+    /**
+     * 生成文本回答；cacheLookup 不为空（会话首轮）时完整回答复用其中的问题向量写入语义缓存（流被取消或调用过实时数据工具时不缓存）
+     */
+    private Flux<Map<String, Object>> streamText(String message, String chatId, SemanticAnswerCache.Lookup cacheLookup) {
+        return Flux.defer(() -> {
+            AtomicLong generatedTokens = new AtomicLong();
+            StringBuilder answer = new StringBuilder();
+            List<Document> sources = new ArrayList<>();
+            Map<String, Object> toolContext = TimeSensitiveToolCallback.newContext();
+            return chatClient
+                    .prompt()
+                    .user(message)
+                    .system(s -> s.param("current_date", today))
+                    .advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, chatId))
+                    //.advisors(loveAppRagCloudAdvisor)
+                    .advisors(tourismAppRagCustomAdvisor)
+                    .toolCallbacks(allTools)
+                    .toolContext(toolContext)
+                    .stream()
+                    .chatResponse()
+                    .doOnNext(response -> {
+                        if (sources.isEmpty()) {
+                            sources.addAll(SemanticAnswerCache.sources(response));
+                        }
+                    })
+                    // 获取流式字符串内容
+                    .mapNotNull(response -> response.getResult() == null ? null : response.getResult().getOutput().getText())
+                    .doOnNext(content -> {
+                        generatedTokens.addAndGet(StreamCancellationMetrics.estimateTokens(content));
+                        answer.append(content);
+                    })
+                    .doOnComplete(() -> {
+                        streamCancellationMetrics.recordCompleted(StreamCancellationMetrics.BRANCH_TEXT, generatedTokens.get());
+                        if (cacheLookup != null && !TimeSensitiveToolCallback.invoked(toolContext)) {
+                            semanticAnswerCache.put(cacheLookup, answer.toString(), sources);
+                        }
+                    })
+                    .doOnCancel(() -> streamCancellationMetrics.recordCancelled(
+                            StreamCancellationMetrics.BRANCH_TEXT, generatedTokens.get()))
+                    // 将每个字符串片段包装成前端需要的格式
+                    .map(content -> Map.<String, Object>of("type", "text", "data", content));
         });
     }
 
+    /**
+     * 从响应中获取生成的 Token 数，模型未返回用量时按内容估算
+     */
+    private long completionTokens(ResponseEntity<ChatResponse, ItineraryResponse> entity) {
+        ChatResponse response = entity.response();
+        if (response != null && response.getMetadata() != null && response.getMetadata().getUsage() != null
+                && response.getMetadata().getUsage().getCompletionTokens() != null) {
+            return response.getMetadata().getUsage().getCompletionTokens();
+        }
+        return StreamCancellationMetrics.estimateTokens(String.valueOf(entity.entity()));
+    }
+
+    private static final Resource INTENT_SYSTEM_RESOURCE = new ClassPathResource("/prompts/system-message-intention-judgment.st");
+
     /**
      * 意图判断逻辑 (用 便宜AI 实现)
      * @param systemResource
@@ -235,7 +503,18 @@ public class TourismApp {
      * @return
      */
     private boolean checkIntent(Resource systemResource,String message) {
+        // 本地快速分类，置信度足够时不再调用大模型
+        Optional<Boolean> localIntent = localIntentClassifier.classify(message);
+        if (localIntent.isPresent()) {
+            return localIntent.get();
+        }
+        return checkIntentByModel(systemResource, message);
+    }
 
+    /**
+     * 调用大模型判断意图
+     */
+    private boolean checkIntentByModel(Resource systemResource, String message) {
         try {
             DashScopeChatOptions dashScopeChatOptions = DashScopeChatOptions.builder().withModel("qwen-flash").build();
             String content = this.chatClient.prompt()
@@ -247,7 +526,9 @@ public class TourismApp {
             // 清洗结果（防止 AI 偶尔输出 "TRUE." 或 "Result: TRUE"）
             assert content != null;
             String cleanResult = content.trim().toUpperCase().replaceAll("[^A-Z]", "");
-            return "TRUE".equals(cleanResult);
+            boolean isPlanning = "TRUE".equals(cleanResult);
+            localIntentClassifier.recordLabel(message, isPlanning);
+            return isPlanning;
         } catch (Exception e) {
             // 兜底逻辑：如果 AI 调用失败，回退到简单的关键词判断，保证系统不挂
             System.err.println("意图识别服务异常: " + e.getMessage());
@@ -257,6 +538,6 @@ public class TourismApp {
 
     // 重载方法
     private boolean checkIntent(String message) {
-        return checkIntent(new ClassPathResource("/prompts/system-message-intention-judgment.st"), message);
+        return checkIntent(INTENT_SYSTEM_RESOURCE, message);
     }
 }
@@ -7,7 +7,6 @@ import com.alibaba.cloud.ai.graph.*;
 import com.alibaba.cloud.ai.graph.action.*;
 import com.alibaba.cloud.ai.graph.agent.ReactAgent;
 import com.alibaba.cloud.ai.graph.checkpoint.config.SaverConfig;
-import com.alibaba.cloud.ai.graph.checkpoint.savers.MemorySaver;
 import com.alibaba.cloud.ai.graph.exception.GraphStateException;
 import com.alibaba.cloud.ai.graph.state.StateSnapshot;
 import com.alibaba.cloud.ai.graph.streaming.StreamingOutput;
@@ -15,7 +14,9 @@ import com.learn.aiintelligenttourism.Model.ChatRequest;
 import com.learn.aiintelligenttourism.Model.ItineraryResponse;
 import com.learn.aiintelligenttourism.agent.*;
 import com.learn.aiintelligenttourism.config.ChatClientConfig;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 
@@ -23,14 +24,27 @@ import org.springframework.ai.chat.messages.UserMessage;
 
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import static com.alibaba.cloud.ai.graph.StateGraph.END;
 import static com.alibaba.cloud.ai.graph.StateGraph.START;
@@ -57,10 +71,64 @@ public class TourismGraphService {
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        checkpointSweeper.shutdownNow();
+    }
+
     /**
      * 处理聊天请求（核心业务逻辑）
      */
     public Map<String, Object> handleChat(ChatRequest request) throws Exception {
+        GraphInvocation invocation = prepareInvocation(request);
+        return executeGraph(invocation.input(), invocation.config(), request.getThreadId());
+    }
+
+    /**
+     * 处理聊天请求（流式）
+     * 与 handleChat 使用相同的中断/恢复语义，但每个 NodeOutput 产生时立即推送：
+     *  - 节点完成：{"type": "node", "data": "节点名"}
+     *  - 调研结果：{"type": "research", "data": "searchResults"}，fanout 模式附带 "timings"（分支节点名 -> 毫秒）
+     *  - 流式片段：{"type": "partial", "data": {"node": "节点名", "chunk": "部分字符"}}
+     *  - 行程单片段：{"type": "card_partial", "data": {"title": 标题} 或 {"day": 单日行程}}（规划节点生成过程中推送）
+     *  - 最终结果：与 handleChat 相同（中断追问为 text，行程单为 card）
+     */
+    public Flux<Map<String, Object>> streamChat(ChatRequest request) {
+        return Flux.defer(() -> {
+            GraphInvocation invocation;
+            try {
+                invocation = prepareInvocation(request);
+            } catch (Exception e) {
+                return Flux.error(e);
+            }
+            AtomicReference<NodeOutput> lastOutputRef = new AtomicReference<>();
+            // 规划节点生成过程中的 card_partial 事件（由节点线程推送，先于规划节点的输出）
+            Sinks.Many<Map<String, Object>> partials = Sinks.many().unicast().onBackpressureBuffer();
+            Consumer<Map<String, Object>> listener = partials::tryEmitNext;
+            String threadId = request.getThreadId();
+            itineraryPartialPublisher.register(threadId, listener);
+            Flux<Map<String, Object>> events = compiledGraph.stream(invocation.input(), invocation.config())
+                    .doOnNext(lastOutputRef::set)
+                    .mapNotNull(this::toProgressEvent)
+                    .concatWith(Mono.fromSupplier(() -> toResultMap(lastOutputRef.get())))
+                    .onErrorResume(e -> {
+                        log.error("Graph execution error", e);
+                        return Flux.just(Map.of("type", "error", "data", "服务器出现问题"));
+                    })
+                    .doFinally(signal -> {
+                        itineraryPartialPublisher.unregister(threadId, listener);
+                        partials.tryEmitComplete();
+                    });
+            return Flux.merge(partials.asFlux(), events);
+        })
+        // Graph 节点内部都是阻塞调用，不能占用调用方（Servlet）线程
+        .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 根据会话当前状态决定是新对话还是从中断处恢复
+     */
+    private GraphInvocation prepareInvocation(ChatRequest request) throws Exception {
         String threadId = request.getThreadId();
         String userInput = request.getMessage();
         // 配置线程ID
@@ -85,9 +153,10 @@ public class TourismGraphService {
             // 获取当前挂起的节点（通常是 InterruptableAction 的节点）
             //String pendingNode = currentState.next().iterator().next();
             
-            // 更新状态（模拟用户填充了缺失信息）
+            // 更新状态：用户的补充信息同时追加到会话记录，信息提取节点基于完整对话重新提取
             Map<String, Object> stateUpdate = Map.of(
-                    "userMessage", userInput
+                    "userMessage", userInput,
+                    "messages", new UserMessage(userInput)
             );
             
             // updateState 会返回一个新的 config
@@ -99,7 +168,7 @@ public class TourismGraphService {
                     .build();
             
             // 恢复执行时，input 为 null (因为状态已通过 updateState 更新)
-            return executeGraph(null, config, threadId);
+            return new GraphInvocation(null, config);
 
         } else {
             log.info("Thread [{}] - Starting new conversation: {}", threadId, userInput);
@@ -109,7 +178,7 @@ public class TourismGraphService {
                     "chatId", request.getChatId() != null ? request.getChatId() : "default",
                     "userMessage", userInput
             );
-            return executeGraph(initialInput, config, threadId);
+            return new GraphInvocation(initialInput, config);
         }
     }
 
@@ -122,7 +191,7 @@ public class TourismGraphService {
         try {
             // 执行流
             // 这里可以根据实际输出结构收集文本，这里简单假设最后会有文本输出
-            // 如果需要流式推送到前端，这里需要改为 SSE 逻辑，本例先做同步返回
+            // 流式推送到前端请使用 streamChat
             compiledGraph.stream(input, config)
                     .doOnNext(lastOutputRef::set)
                     .blockLast(); 
@@ -131,7 +200,16 @@ public class TourismGraphService {
             return Map.of("type", "error", "data","服务器出现问题");
         }
 
-        NodeOutput lastOutput = lastOutputRef.get();
+        return toResultMap(lastOutputRef.get());
+    }
+
+    /**
+     * 将 Graph 最后一个输出转换为前端结果（中断追问 或 最终回复）
+     */
+    private Map<String, Object> toResultMap(NodeOutput lastOutput) {
+        if (lastOutput == null) {
+            return Map.of("type", "error", "data","服务器出现问题");
+        }
 
         // 1. 判断是否中断
         if (lastOutput instanceof InterruptionMetadata interruption) {
@@ -143,8 +221,39 @@ public class TourismGraphService {
         // 尝试从状态中获取最后信息
 
         return getResultMap(lastOutput);
+    }
 
+    /**
+     * 将中间 NodeOutput 转换为进度事件；中断与起止节点返回 null，由 toResultMap 统一处理
+     */
+    private Map<String, Object> toProgressEvent(NodeOutput output) {
+        if (output instanceof InterruptionMetadata || output.isSTART() || output.isEND()) {
+            return null;
+        }
+        if (output instanceof StreamingOutput streamingOutput) {
+            String chunk = streamingOutput.chunk();
+            if (chunk == null || chunk.isEmpty()) {
+                return null;
+            }
+            return Map.of("type", "partial", "data", Map.of("node", streamingOutput.node(), "chunk", chunk));
+        }
+        if ("research_agent".equals(output.node())) {
+            Optional<Object> searchResults = output.state().value("searchResults");
+            if (searchResults.isPresent()) {
+                return Map.of("type", "research", "data", String.valueOf(searchResults.get()));
+            }
+        }
+        if (RESEARCH_JOIN.equals(output.node())) {
+            Optional<Object> searchResults = output.state().value("searchResults");
+            if (searchResults.isPresent()) {
+                return Map.of("type", "research", "data", String.valueOf(searchResults.get()),
+                        "timings", output.state().value("researchTimings").orElse(Map.of()));
+            }
+        }
+        return Map.of("type", "node", "data", output.node());
+    }
 
+    private record GraphInvocation(Map<String, Object> input, RunnableConfig config) {
     }
 
     // 辅助方法：从 Graph 状态中提取最后一条 AI 回复
@@ -184,22 +293,92 @@ public class TourismGraphService {
     @Autowired
     private SimpleChatNode simpleChatNode;
 
+    @Autowired
+    private ResearchPrefetcher researchPrefetcher;
+
+    @Autowired
+    private LocalIntentClassifier localIntentClassifier;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ItineraryPartialPublisher itineraryPartialPublisher;
+
+    // separate：意图判断、需求提取、追问分步调用；combined：一次结构化输出完成（IntentExtractorNode）
+    @Value("${tourism.graph.router.mode:separate}")
+    private String routerMode;
+
+    // 规划节点使用流式结构化输出，生成过程中推送 card_partial 事件
+    @Value("${tourism.plan.streaming.enabled:true}")
+    private boolean planStreaming;
+
+    // direct / fanout / agent，fanout 时调研拆分为并行分支
+    @Value("${tourism.research.mode:fanout}")
+    private String researchMode;
+
+    // 调研分支的默认超时，可按分支覆盖：tourism.research.branches.<分支>.timeout
+    @Value("${tourism.research.timeout:8s}")
+    private Duration researchTimeout;
+
+    private static final String RESEARCH_FANOUT = "research_fanout";
+    private static final String RESEARCH_JOIN = "research_join";
+
+    // 热层最多保留的会话数
+    @Value("${tourism.graph.checkpoint.max-threads:10000}")
+    private int checkpointMaxThreads;
+
+    // 会话空闲多久后从热层淘汰
+    @Value("${tourism.graph.checkpoint.ttl:2h}")
+    private Duration checkpointTtl;
+
+    // 冷层类型：file（本地文件）或 none（仅内存）
+    @Value("${tourism.graph.checkpoint.store:file}")
+    private String checkpointStore;
+
+    @Value("${tourism.graph.checkpoint.directory:data/checkpoints}")
+    private String checkpointDirectory;
+
+    // 冷层保留期：超过该时间未写入的会话文件被删除，每 sweep-interval 清理一次
+    @Value("${tourism.graph.checkpoint.retention:7d}")
+    private Duration checkpointRetention;
+
+    @Value("${tourism.graph.checkpoint.sweep-interval:1h}")
+    private Duration checkpointSweepInterval;
+
+    private final ScheduledExecutorService checkpointSweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "checkpoint-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * 这里复用你原有的 Graph 构建逻辑
      * 注意：researchNodeAction 需要包含在方法内或者作为类成员
      */
     private CompiledGraph createGraphWithInterruptableAction() throws GraphStateException {
 
+        boolean combinedRouter = "combined".equalsIgnoreCase(routerMode);
         // 意图路由节点
-        var intentRouterNodeAsync = AsyncNodeActionWithConfig.node_async(new IntentRouterNode(defaultChatClient));
+        var intentRouterNodeAsync = AsyncNodeActionWithConfig.node_async(combinedRouter
+                ? IntentExtractorNode.router(defaultChatClient, localIntentClassifier, researchPrefetcher)
+                : new IntentRouterNode(defaultChatClient, localIntentClassifier));
         // 仅聊天节点
         var simpleChatNodeAsync = AsyncNodeActionWithConfig.node_async(this.simpleChatNode);
 
-        // 循环检查旅游要素节点（实现 InterruptableAction）
-        var circularInformationExtractor = new CircularInformationExtractorNode(defaultChatClient,"circular_information_extractor");
+        // 循环检查旅游要素节点（无状态，可被多个会话并发执行）
+        var circularInformationExtractor = AsyncNodeActionWithConfig.node_async(combinedRouter
+                ? IntentExtractorNode.extractor(defaultChatClient, researchPrefetcher)
+                : new CircularInformationExtractorNode(defaultChatClient, researchPrefetcher));
+        // 人类反馈节点（实现 InterruptableAction），信息不全时中断等待用户补充
+        var humanFeedback = new HumanFeedbackNode();
 
         // 规划生成智能体
-        var planGeneratorNodeAsync = AsyncNodeActionWithConfig.node_async(new PlanGeneratorNode(defaultChatClient));
+        var planGeneratorNodeAsync = AsyncNodeActionWithConfig.node_async(new PlanGeneratorNode(defaultChatClient,
+                planStreaming ? itineraryPartialPublisher : null));
 
         // 配置 KeyStrategyFactory
         KeyStrategyFactory keyStrategyFactory = TourismAppKeyStrategyFactory.createKeyStrategyFactory();
@@ -208,27 +387,61 @@ public class TourismGraphService {
         StateGraph workflow = new StateGraph(keyStrategyFactory)
                 .addNode("intent_router", intentRouterNodeAsync)
                 .addNode("simple_chat", simpleChatNodeAsync)
-                .addNode("circular_information_extractor", circularInformationExtractor)  // 使用可中断节点
+                .addNode("circular_information_extractor", circularInformationExtractor)
+                .addNode("human_feedback", humanFeedback)  // 使用可中断节点
                 .addNode("research_agent",AsyncNodeActionWithConfig.node_async(researchNode))
                 .addNode("plan_generator", planGeneratorNodeAsync)
                 .addEdge(START, "intent_router")
                 .addEdge("simple_chat", END)
-                .addEdge("circular_information_extractor", "research_agent")
+                .addEdge("human_feedback", "circular_information_extractor")
                 .addEdge("research_agent", "plan_generator")
                 .addEdge("plan_generator", END);
 
-        // 添加条件边（基于节点返回的 next_node）
-        workflow.addConditionalEdges("intent_router",
-                edge_async(state -> {
-                    return (String) state.value("next_node").orElse("simple_chat");
-                }),
+        // fanout 模式：扇出节点 -> 各调研分支（并行） -> 汇合节点 -> 规划
+        boolean fanout = ResearchNode.MODE_FANOUT.equalsIgnoreCase(researchMode);
+        if (fanout) {
+            addResearchBranches(workflow);
+        }
+
+        String researchTarget = fanout ? RESEARCH_FANOUT : "research_agent";
+        if (combinedRouter) {
+            // combined 模式：意图与需求已在一次调用中得到，直接去闲聊、追问或调研
+            workflow.addConditionalEdges("intent_router",
+                    edge_async(IntentExtractorNode::route),
+                    Map.of(
+                            IntentExtractorNode.SIMPLE_CHAT, "simple_chat",
+                            CircularInformationExtractorNode.HUMAN_FEEDBACK, "human_feedback",
+                            CircularInformationExtractorNode.RESEARCH, researchTarget
+                    ));
+        } else {
+            // 添加条件边（基于节点返回的 next_node）
+            workflow.addConditionalEdges("intent_router",
+                    edge_async(state -> {
+                        return (String) state.value("next_node").orElse("simple_chat");
+                    }),
+                    Map.of(
+                            "simple_chat", "simple_chat",
+                            "circular_information_extractor", "circular_information_extractor"
+                    ));
+        }
+
+        // 信息提取后：缺失关键信息则中断追问，否则进入调研
+        workflow.addConditionalEdges("circular_information_extractor",
+                edge_async(CircularInformationExtractorNode::route),
                 Map.of(
-                        "simple_chat", "simple_chat",
-                        "circular_information_extractor", "circular_information_extractor"
+                        CircularInformationExtractorNode.HUMAN_FEEDBACK, "human_feedback",
+                        CircularInformationExtractorNode.RESEARCH, researchTarget
                 ));
 
-        // 配置内存保存器（用于状态持久化）
-        var saver = new MemorySaver();
+        // 配置分层保存器（用于状态持久化）：内存 LRU/TTL 热层 + 可选的文件冷层，每个会话只保留最新 Checkpoint
+        CheckpointStore coldStore = "file".equalsIgnoreCase(checkpointStore)
+                ? createFileCheckpointStore(workflow)
+                : null;
+        var saver = new TieredCheckpointSaver(checkpointMaxThreads, checkpointTtl, coldStore, meterRegistry);
+        if (coldStore != null) {
+            checkpointSweeper.scheduleWithFixedDelay(() -> saver.sweepCold(checkpointRetention),
+                    0, checkpointSweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
 
         var compileConfig = CompileConfig.builder()
                 .saverConfig(SaverConfig.builder()
@@ -240,4 +453,28 @@ public class TourismGraphService {
         return workflow.compile(compileConfig);
     }
 
+    /**
+     * 同一节点出发的多条普通边构成并行分支，分支全部完成后才进入汇合节点
+     */
+    private void addResearchBranches(StateGraph workflow) throws GraphStateException {
+        workflow.addNode(RESEARCH_FANOUT, new ResearchFanoutNode(researchPrefetcher))
+                .addNode(RESEARCH_JOIN, AsyncNodeActionWithConfig.node_async(new ResearchJoinNode(researchPrefetcher, meterRegistry)))
+                .addEdge(RESEARCH_JOIN, "plan_generator");
+        for (ResearchBranch branch : ResearchBranch.values()) {
+            Duration timeout = environment.getProperty(
+                    "tourism.research.branches." + branch.configName() + ".timeout", Duration.class, researchTimeout);
+            workflow.addNode(branch.node(), new ResearchBranchNode(branch, timeout, researchPrefetcher, meterRegistry))
+                    .addEdge(RESEARCH_FANOUT, branch.node())
+                    .addEdge(branch.node(), RESEARCH_JOIN);
+        }
+    }
+
+    private CheckpointStore createFileCheckpointStore(StateGraph workflow) {
+        try {
+            return new FileSystemCheckpointStore(Path.of(checkpointDirectory), workflow.getStateSerializer());
+        } catch (IOException e) {
+            throw new IllegalStateException("Checkpoint 目录不可用: " + checkpointDirectory, e);
+        }
+    }
+
 }
\ No newline at end of file
@@ -13,9 +13,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
 
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
 
 @Slf4j
@@ -23,6 +27,7 @@ import java.util.Map;
 @RequestMapping("/ai")
 public class AiController {
 
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
 
     @Resource
     private TourismApp tourismApp;
@@ -37,36 +42,66 @@ public class AiController {
     @GetMapping(value = "/tourism_app/chat/sse_emitter")
     public SseEmitter doChatWithTourismAppSseEmitter(String message, String chatId) {
         SseEmitter emitter = new SseEmitter(180000L); // 3分钟超时
-        tourismApp.doChatWithIntentionJudgmentByStream(message, chatId)
-                .subscribe(
-                        // onNext: 处理每一个数据块
-                        dataMap -> {
-                            try {
-                                // 直接发送 Map，Spring MVC 会自动将其序列化为 JSON
-                                // 前端收到的 data 字段形如： {"type": "text", "data": "你好"}
-                                emitter.send(dataMap);
-                            } catch (IOException e) {
-                                emitter.completeWithError(e);
-                            }
-                        },
-                        // onError: 处理异常
-                        error -> {
-                            try {
-                                // 可以发送一个特殊的错误类型给前端
-                                emitter.send(Map.of("type", "error", "data", "内部服务异常"));
-                            } catch (IOException e) {
-                                // ignore
-                            }
-                            emitter.completeWithError(error);
-                        },
-                        // onComplete: 完成
-                        emitter::complete
-                );
-
+        subscribeToEmitter(tourismApp.doChatWithIntentionJudgmentByStream(message, chatId), emitter);
         return emitter;
 
     }
 
+    /**
+     * 将数据流推送到 SseEmitter
+     * 前端收到的 data 字段形如： {"type": "text", "data": "你好"}
+     * 客户端断开（关闭页面）、超时或发送失败时取消订阅，上游的大模型流、工具调用和 RAG 检索随之停止
+     * @param dataStream
+     * @param emitter
+     */
+    private void subscribeToEmitter(Flux<Map<String, Object>> dataStream, SseEmitter emitter) {
+        // 先注册回调再订阅，避免数据流同步结束时回调尚未注册
+        Disposable.Composite subscriptions = Disposables.composite();
+        emitter.onCompletion(subscriptions::dispose);
+        emitter.onTimeout(subscriptions::dispose);
+        emitter.onError(e -> subscriptions.dispose());
+
+        // 心跳：生成行程单期间长时间没有数据，依靠心跳尽早发现客户端已断开
+        subscriptions.add(Flux.interval(HEARTBEAT_INTERVAL)
+                .subscribe(tick -> {
+                    try {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } catch (IOException e) {
+                        subscriptions.dispose();
+                        emitter.completeWithError(e);
+                    }
+                }));
+
+        subscriptions.add(dataStream.subscribe(
+                // onNext: 处理每一个数据块
+                dataMap -> {
+                    try {
+                        // 直接发送 Map，Spring MVC 会自动将其序列化为 JSON
+                        emitter.send(dataMap);
+                    } catch (IOException e) {
+                        subscriptions.dispose();
+                        emitter.completeWithError(e);
+                    }
+                },
+                // onError: 处理异常
+                error -> {
+                    try {
+                        // 可以发送一个特殊的错误类型给前端
+                        emitter.send(Map.of("type", "error", "data", "内部服务异常"));
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                    subscriptions.dispose();
+                    emitter.completeWithError(error);
+                },
+                // onComplete: 完成
+                () -> {
+                    subscriptions.dispose();
+                    emitter.complete();
+                }
+        ));
+    }
+
     @Autowired
     private TourismGraphService tourismGraphService;
 
@@ -90,4 +125,25 @@ public class AiController {
 
     }
 
+    /**
+     * 统一对话接口（流式）
+     * 与 /tourism_app/chat/manus 相同的中断/恢复语义，每个节点完成时即推送进度，
+     * 最后一条事件为追问文本(text) 或 行程单(card)
+     */
+    @GetMapping(value = "/tourism_app/chat/manus/sse_emitter")
+    public SseEmitter doChatWithManusSseEmitter(String message, String threadId, String chatId) {
+        // 校验
+        if (threadId == null || threadId.isEmpty()) {
+            throw new IllegalArgumentException("ThreadId cannot be null");
+        }
+        ChatRequest request = new ChatRequest();
+        request.setThreadId(threadId);
+        request.setMessage(message);
+        request.setChatId(chatId);
+
+        SseEmitter emitter = new SseEmitter(180000L); // 3分钟超时
+        subscribeToEmitter(tourismGraphService.streamChat(request), emitter);
+        return emitter;
+    }
+
 }
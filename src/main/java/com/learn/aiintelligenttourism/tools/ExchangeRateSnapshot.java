@@ -0,0 +1,112 @@
+package com.learn.aiintelligenttourism.tools;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * 汇率基准表快照（不可变）
+ * 保存 1 人民币可兑换的各币种数量，任意两个币种之间的汇率（含反向、交叉汇率）都由基准表在本地计算。
+ * 每个币种单独记录拉取时间：部分币种刷新失败时沿用旧值，也沿用旧值的拉取时间
+ *
+ * @param ratesPerCny 币种代码 -> 1 CNY 可兑换的数量（不含 CNY 本身）
+ * @param fetchedAt   币种代码 -> 该币种汇率的拉取时间
+ */
+public record ExchangeRateSnapshot(Map<String, BigDecimal> ratesPerCny, Map<String, Instant> fetchedAt) {
+
+    public static final String BASE = "CNY";
+
+    public static final ExchangeRateSnapshot EMPTY = new ExchangeRateSnapshot(Map.of(), Map.of());
+
+    public ExchangeRateSnapshot {
+        ratesPerCny = Map.copyOf(ratesPerCny);
+        fetchedAt = Map.copyOf(fetchedAt);
+    }
+
+    /**
+     * 所有币种在同一时间拉取
+     */
+    public ExchangeRateSnapshot(Map<String, BigDecimal> ratesPerCny, Instant fetchedAt) {
+        this(ratesPerCny, stamp(ratesPerCny, fetchedAt));
+    }
+
+    /**
+     * 1 个 from 可兑换多少 to；任一币种不在基准表中、或快照为空（尚未成功拉取过，CNY -> CNY 也不回答）时返回 empty
+     */
+    public Optional<BigDecimal> rate(String from, String to) {
+        if (isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<BigDecimal> fromPerCny = perCny(from);
+        Optional<BigDecimal> toPerCny = perCny(to);
+        if (fromPerCny.isEmpty() || toPerCny.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(toPerCny.get().divide(fromPerCny.get(), MathContext.DECIMAL64));
+    }
+
+    public boolean contains(String currency) {
+        return perCny(currency).isPresent();
+    }
+
+    public boolean isEmpty() {
+        return ratesPerCny.isEmpty();
+    }
+
+    /**
+     * from -> to 的汇率所依据的拉取时间（两个币种中较早的一个，CNY 不参与比较）；任一币种不在基准表中时返回 empty
+     */
+    public Optional<Instant> fetchedAt(String from, String to) {
+        if (rate(from, to).isEmpty()) {
+            return Optional.empty();
+        }
+        return Stream.of(normalize(from), normalize(to))
+                .map(fetchedAt::get)
+                .filter(Objects::nonNull)
+                .min(Instant::compareTo)
+                .or(this::oldest);
+    }
+
+    /**
+     * 最旧的一个币种距今的时间，空快照返回 empty
+     */
+    public Optional<Duration> age(Instant now) {
+        return oldest().map(time -> Duration.between(time, now));
+    }
+
+    /**
+     * from -> to 的汇率距今的时间
+     */
+    public Optional<Duration> age(String from, String to, Instant now) {
+        return fetchedAt(from, to).map(time -> Duration.between(time, now));
+    }
+
+    private Optional<BigDecimal> perCny(String currency) {
+        String code = normalize(currency);
+        if (BASE.equals(code)) {
+            return Optional.of(BigDecimal.ONE);
+        }
+        return Optional.ofNullable(ratesPerCny.get(code));
+    }
+
+    private Optional<Instant> oldest() {
+        return fetchedAt.values().stream().min(Instant::compareTo);
+    }
+
+    private static Map<String, Instant> stamp(Map<String, BigDecimal> ratesPerCny, Instant fetchedAt) {
+        Map<String, Instant> stamped = new HashMap<>();
+        ratesPerCny.keySet().forEach(currency -> stamped.put(currency, fetchedAt));
+        return stamped;
+    }
+
+    public static String normalize(String currency) {
+        return currency == null ? "" : currency.strip().toUpperCase(Locale.ROOT);
+    }
+}
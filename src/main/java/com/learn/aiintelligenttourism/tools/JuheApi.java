@@ -1,42 +1,135 @@
 package com.learn.aiintelligenttourism.tools;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
-
+/**
+ * 聚合数据接口调用
+ * 所有工具共享一个 HttpClient（连接复用 / keep-alive，服务端支持时走 HTTP/2），
+ * 带连接超时与请求超时，并按 host 限制同时在途的请求数，超出的请求排队等待而不占用线程
+ */
 public class JuheApi {
 
-    public static String callApi(String apiUrl,Map<String, String> map) throws IOException {
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final int maxConcurrentPerHost;
+    private final ConcurrentMap<String, HostLimiter> limiters = new ConcurrentHashMap<>();
 
-        URL url = new URL(String.format("%s?%s", apiUrl, params(map)));
-        BufferedReader in = new BufferedReader(new InputStreamReader((url.openConnection()).getInputStream()));
-        String inputLine;
-        StringBuffer response = new StringBuffer();
-        while ((inputLine = in.readLine()) != null) {
-            response.append(inputLine);
+    public JuheApi(Duration connectTimeout, Duration requestTimeout, int maxConcurrentPerHost) {
+        if (maxConcurrentPerHost <= 0) {
+            throw new IllegalArgumentException("maxConcurrentPerHost must be positive");
         }
-        in.close();
-        return response.toString();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)  // 服务端不支持时自动降级为 HTTP/1.1
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.requestTimeout = requestTimeout;
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+    }
+
+    /**
+     * 同步调用，超时或非 2xx 响应抛出 IOException
+     */
+    public String get(String apiUrl, Map<String, String> map) throws IOException {
+        try {
+            return getAsync(apiUrl, map).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("请求被中断: " + apiUrl, e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause(), apiUrl);
+        }
+    }
 
+    /**
+     * 异步调用，同一 host 的在途请求达到上限时排队，拿到许可后才真正发出请求
+     */
+    public CompletableFuture<String> getAsync(String apiUrl, Map<String, String> map) {
+        URI uri = URI.create(String.format("%s?%s", apiUrl, params(map)));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        HostLimiter limiter = limiters.computeIfAbsent(uri.getHost(), host -> new HostLimiter(maxConcurrentPerHost));
+        return limiter.acquire()
+                .thenCompose(ignored -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)))
+                .whenComplete((response, error) -> limiter.release())
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new CompletionException(new IOException("HTTP " + response.statusCode() + ": " + apiUrl));
+                    }
+                    return response.body();
+                });
     }
 
     public static String params(Map<String, String> map) {
         return map.entrySet().stream()
-                .map(entry -> {
-                    try {
-                        return entry.getKey() + "=" + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        return entry.getKey() + "=" + entry.getValue();
-                    }
-                })
+                .map(entry -> entry.getKey() + "=" + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8))
                 .collect(Collectors.joining("&"));
     }
+
+    private static IOException unwrap(Throwable cause, String apiUrl) {
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof IOException ioException) {
+            return ioException;
+        }
+        return new IOException("请求失败: " + apiUrl, cause);
+    }
+
+    /**
+     * 按 host 的并发许可，等待者以 CompletableFuture 排队（不阻塞线程）
+     */
+    private static final class HostLimiter {
+        private final Queue<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        private int available;
+
+        private HostLimiter(int permits) {
+            this.available = permits;
+        }
+
+        private CompletableFuture<Void> acquire() {
+            synchronized (this) {
+                if (available > 0) {
+                    available--;
+                    return CompletableFuture.completedFuture(null);
+                }
+                CompletableFuture<Void> waiter = new CompletableFuture<>();
+                waiters.add(waiter);
+                return waiter;
+            }
+        }
+
+        private void release() {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiters.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            // 许可直接转交给下一个等待者，在锁外完成以免在锁内执行后续回调
+            next.complete(null);
+        }
+    }
 }
@@ -1,17 +1,38 @@
 package com.learn.aiintelligenttourism.tools;
 
 
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.web.client.RestClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 聚合数据  汇率  查询工具
+ * 定时拉取以人民币为基准的汇率表，保存为不可变快照并原子替换；
+ * 任意币种对（含反向、交叉汇率）直接用快照在本地计算，只有快照里没有的币种才实时调用接口；
+ * 刷新持续失败、快照中的汇率超过 max-age 时不再使用，改为实时调用接口
  */
 @Component
 @Slf4j
@@ -20,12 +41,65 @@ public class JuheExchangeRateTool {
 
     private String apiKey;
 
-    // 聚合数据天气接口地址
+    private final JuheApi juheApi;
+
+    private final List<String> snapshotCurrencies;
+    private final Duration refreshInterval;
+    private final Duration maxAge;
+    private final Clock clock;
+    private final AtomicReference<ExchangeRateSnapshot> snapshot = new AtomicReference<>(ExchangeRateSnapshot.EMPTY);
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "exchange-rate-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 聚合数据汇率接口地址
     private static final String API_URL = "http://op.juhe.cn/onebox/exchange/currency";
 
 
-    public JuheExchangeRateTool(@Value("${juhe.exchange_rate.key}") String apiKey) {
+    public JuheExchangeRateTool(@Value("${juhe.exchange_rate.key}") String apiKey,
+                                JuheApi juheApi,
+                                MeterRegistry meterRegistry,
+                                @Value("${juhe.exchange_rate.snapshot.currencies:USD,EUR,JPY,HKD,GBP,KRW,THB,SGD,AUD,MOP,TWD,MYR,CAD,CHF,NZD}") List<String> snapshotCurrencies,
+                                @Value("${juhe.exchange_rate.snapshot.refresh-interval:30m}") Duration refreshInterval,
+                                @Value("${juhe.exchange_rate.snapshot.max-age:2h}") Duration maxAge) {
+        this(apiKey, juheApi, meterRegistry, snapshotCurrencies, refreshInterval, maxAge, Clock.systemUTC());
+    }
+
+    JuheExchangeRateTool(String apiKey, JuheApi juheApi, MeterRegistry meterRegistry, List<String> snapshotCurrencies,
+                         Duration refreshInterval, Duration maxAge, Clock clock) {
         this.apiKey = apiKey;
+        this.juheApi = juheApi;
+        this.snapshotCurrencies = snapshotCurrencies.stream()
+                .map(ExchangeRateSnapshot::normalize)
+                .filter(code -> !code.isEmpty() && !ExchangeRateSnapshot.BASE.equals(code))
+                .distinct()
+                .toList();
+        this.refreshInterval = refreshInterval;
+        this.maxAge = maxAge;
+        this.clock = clock;
+        // 尚未成功拉取过时没有年龄，上报 NaN
+        meterRegistry.gauge("juhe.exchange_rate.snapshot.age.seconds", this,
+                tool -> tool.snapshotAge().map(age -> (double) age.toSeconds()).orElse(Double.NaN));
+    }
+
+    @PostConstruct
+    public void startRefresh() {
+        // 首次拉取也放到后台，不阻塞启动；拉取完成前的查询走实时接口
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refreshSnapshot();
+            } catch (RuntimeException e) {
+                // 异常不能抛出，否则后续的定时刷新会被取消
+                log.error("汇率基准表刷新异常", e);
+            }
+        }, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopRefresh() {
+        refresher.shutdownNow();
     }
 
     /**
@@ -36,14 +110,13 @@ public class JuheExchangeRateTool {
     public String getExchangeRate(@ToolParam(description = "Currency code before exchange rate conversion such as EUR, USD, GBP, etc.") String from,
                                   @ToolParam(description = "Currency code converted to exchange rate such as EUR, USD, GBP, etc.") String to) {
 
-        try {
-            HashMap<String, String> map = new HashMap<>();
-            map.put("key", apiKey);
-            map.put("from", from);
-            map.put("to", to);
-            map.put("version", "2");
+        Optional<String> local = fromSnapshot(from, to);
+        if (local.isPresent()) {
+            return local.get();
+        }
 
-            return JuheApi.callApi(API_URL,map);
+        try {
+            return juheApi.get(API_URL, params(from, to));
 
         } catch (Exception e) {
             // 如果出错，返回错误信息给大模型，让大模型告诉用户“查询失败”
@@ -51,5 +124,116 @@ public class JuheExchangeRateTool {
         }
     }
 
+    /**
+     * 异步查询汇率（供并行调研使用），失败时同样返回错误 JSON
+     */
+    public CompletableFuture<String> getExchangeRateAsync(String from, String to) {
+        Optional<String> local = fromSnapshot(from, to);
+        if (local.isPresent()) {
+            return CompletableFuture.completedFuture(local.get());
+        }
+        return juheApi.getAsync(API_URL, params(from, to))
+                .exceptionally(e -> String.format("{\"error\": \"查询汇率失败: %s\"}", e.getMessage()));
+    }
+
+    /**
+     * 当前快照中最旧的一个币种距上次成功拉取的时间，尚未成功拉取过时返回 empty
+     */
+    public Optional<Duration> snapshotAge() {
+        return snapshot.get().age(clock.instant());
+    }
+
+    /**
+     * 拉取基准汇率表并原子替换快照；个别币种拉取失败时沿用上一份快照中的值和拉取时间
+     */
+    void refreshSnapshot() {
+        ExchangeRateSnapshot previous = snapshot.get();
+        Map<String, CompletableFuture<Optional<BigDecimal>>> futures = new HashMap<>();
+        for (String currency : snapshotCurrencies) {
+            futures.put(currency, juheApi.getAsync(API_URL, params(ExchangeRateSnapshot.BASE, currency))
+                    .thenApply(body -> parseRate(body, ExchangeRateSnapshot.BASE, currency))
+                    .exceptionally(e -> {
+                        log.warn("拉取汇率失败: {} -> {}: {}", ExchangeRateSnapshot.BASE, currency, e.getMessage());
+                        return Optional.empty();
+                    }));
+        }
+        CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).join();
+
+        Map<String, BigDecimal> rates = new HashMap<>(previous.ratesPerCny());
+        Map<String, Instant> fetchedAt = new HashMap<>(previous.fetchedAt());
+        Instant now = clock.instant();
+        int fetched = 0;
+        for (Map.Entry<String, CompletableFuture<Optional<BigDecimal>>> entry : futures.entrySet()) {
+            Optional<BigDecimal> rate = entry.getValue().join();
+            if (rate.isPresent()) {
+                rates.put(entry.getKey(), rate.get());
+                fetchedAt.put(entry.getKey(), now);
+                fetched++;
+            }
+        }
+        if (fetched == 0) {
+            log.warn("汇率基准表刷新失败，继续使用旧快照（已过去 {}，超过 {} 的汇率改为实时查询）",
+                    snapshotAge().map(Duration::toString).orElse("尚未拉取成功"), maxAge);
+            return;
+        }
+        snapshot.set(new ExchangeRateSnapshot(rates, fetchedAt));
+        log.info("汇率基准表已刷新: {}/{} 个币种", fetched, snapshotCurrencies.size());
+    }
+
+    /**
+     * 用快照回答；币种不在快照中或汇率超过 max-age 时返回 empty，由调用方实时查询
+     */
+    private Optional<String> fromSnapshot(String from, String to) {
+        ExchangeRateSnapshot current = snapshot.get();
+        Instant now = clock.instant();
+        Optional<Duration> age = current.age(from, to, now);
+        if (age.isEmpty()) {
+            return Optional.empty();
+        }
+        if (age.get().compareTo(maxAge) > 0) {
+            log.warn("汇率快照已过期（{} -> {} 已过去 {}），改为实时查询", from, to, age.get());
+            return Optional.empty();
+        }
+        return current.rate(from, to).map(rate -> String.format(
+                "{\"from\": \"%s\", \"to\": \"%s\", \"exchange\": \"%s\", \"updateTime\": \"%s\", \"snapshotAgeSeconds\": %d}",
+                ExchangeRateSnapshot.normalize(from),
+                ExchangeRateSnapshot.normalize(to),
+                rate.setScale(6, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString(),
+                current.fetchedAt(from, to).orElseThrow(),
+                age.get().toSeconds()));
+    }
+
+    /**
+     * 解析接口返回（version=2）：result 数组中 currencyF -> currencyT 这一项的 exchange
+     */
+    static Optional<BigDecimal> parseRate(String body, String from, String to) {
+        JSONObject json = JSONUtil.parseObj(body);
+        if (json.getInt("error_code", -1) != 0) {
+            log.warn("汇率接口返回错误: {}", body);
+            return Optional.empty();
+        }
+        JSONArray result = json.getJSONArray("result");
+        if (result == null) {
+            return Optional.empty();
+        }
+        for (int i = 0; i < result.size(); i++) {
+            JSONObject item = result.getJSONObject(i);
+            if (from.equalsIgnoreCase(item.getStr("currencyF")) && to.equalsIgnoreCase(item.getStr("currencyT"))) {
+                BigDecimal exchange = item.getBigDecimal("exchange");
+                return exchange == null || exchange.signum() <= 0 ? Optional.empty() : Optional.of(exchange);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private HashMap<String, String> params(String from, String to) {
+        HashMap<String, String> map = new HashMap<>();
+        map.put("key", apiKey);
+        map.put("from", from);
+        map.put("to", to);
+        map.put("version", "2");
+        return map;
+    }
+
 
-}
\ No newline at end of file
+}
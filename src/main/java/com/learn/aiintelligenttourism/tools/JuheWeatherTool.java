@@ -1,17 +1,29 @@
 package com.learn.aiintelligenttourism.tools;
 
 
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestClient;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * 聚合数据天气查询工具
+ * 结果按规范化后的城市名缓存：同一城市并发未命中只发一次请求，
+ * 超过 refresh-after-write 后先返回旧值再后台刷新，查询失败（error_code != 0）的结果不缓存
  */
 @Component
 @Slf4j
@@ -21,11 +33,34 @@ public class JuheWeatherTool {
 
     private String apiKey;
 
+    private final JuheApi juheApi;
+
+    private final AsyncLoadingCache<String, String> weatherCache;
+
     // 聚合数据天气接口地址
     private static final String API_URL = "http://apis.juhe.cn/simpleWeather/query";
 
-    public JuheWeatherTool(@Value("${juhe.weather.key}") String apiKey) {
+    public JuheWeatherTool(@Value("${juhe.weather.key}") String apiKey,
+                           JuheApi juheApi,
+                           MeterRegistry meterRegistry,
+                           @Value("${juhe.weather.cache.expire-after-write:30m}") Duration expireAfterWrite,
+                           @Value("${juhe.weather.cache.refresh-after-write:10m}") Duration refreshAfterWrite,
+                           @Value("${juhe.weather.cache.maximum-size:1000}") long maximumSize) {
+        this(apiKey, juheApi, meterRegistry, expireAfterWrite, refreshAfterWrite, maximumSize, Ticker.systemTicker());
+    }
+
+    JuheWeatherTool(String apiKey, JuheApi juheApi, MeterRegistry meterRegistry, Duration expireAfterWrite,
+                    Duration refreshAfterWrite, long maximumSize, Ticker ticker) {
         this.apiKey = apiKey;
+        this.juheApi = juheApi;
+        this.weatherCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .refreshAfterWrite(refreshAfterWrite)
+                .recordStats()
+                .ticker(ticker)
+                .buildAsync((city, executor) -> fetch(city));
+        CaffeineCacheMetrics.monitor(meterRegistry, weatherCache, "juhe.weather");
     }
 
     /**
@@ -37,17 +72,78 @@ public class JuheWeatherTool {
 
 
         try {
-            HashMap<String, String> map = new HashMap<>();
-            map.put("key", apiKey);
-            map.put("city", city);
+            return weatherCache.get(normalizeCity(city)).get();
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return String.format("{\"error\": \"查询天气失败: %s\"}", e.getMessage());
+        } catch (ExecutionException e) {
+            return errorResult(e.getCause());
+        }
+    }
 
-            return JuheApi.callApi(API_URL, map);
+    /**
+     * 异步查询天气（供并行调研使用），失败时同样返回错误 JSON
+     */
+    public CompletableFuture<String> getWeatherAsync(String city) {
+        return weatherCache.get(normalizeCity(city))
+                .exceptionally(JuheWeatherTool::errorResult);
+    }
 
-        } catch (Exception e) {
-            // 如果出错，返回错误信息给大模型，让大模型告诉用户“查询失败”
-            return String.format("{\"error\": \"查询天气失败: %s\"}", e.getMessage());
+    /**
+     * 城市名规范化：去空白、去掉末尾的“市”、英文统一小写（“北京市 ”、“北京”命中同一条缓存）
+     */
+    static String normalizeCity(String city) {
+        String normalized = city == null ? "" : city.strip();
+        if (normalized.length() > 1 && normalized.endsWith("市")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 查询接口；业务失败时以异常结束，Caffeine 不会缓存失败的结果（刷新失败则继续使用旧值）
+     */
+    private CompletableFuture<String> fetch(String city) {
+        return juheApi.getAsync(API_URL, params(city))
+                .thenApply(body -> {
+                    if (JSONUtil.parseObj(body).getInt("error_code", -1) != 0) {
+                        log.warn("天气查询失败，不缓存: city={}, response={}", city, body);
+                        throw new UncachedResponseException(body);
+                    }
+                    return body;
+                });
+    }
+
+    private static String errorResult(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof UncachedResponseException uncached) {
+            // 原样返回接口的错误信息，让大模型告诉用户“查询失败”的原因
+            return uncached.body;
+        }
+        // 如果出错，返回错误信息给大模型，让大模型告诉用户“查询失败”
+        return String.format("{\"error\": \"查询天气失败: %s\"}", error.getMessage());
+    }
+
+    private HashMap<String, String> params(String city) {
+        HashMap<String, String> map = new HashMap<>();
+        map.put("key", apiKey);
+        map.put("city", city);
+        return map;
+    }
+
+    /**
+     * 接口返回了业务错误（error_code != 0），携带原始响应体
+     */
+    private static final class UncachedResponseException extends RuntimeException {
+        private final String body;
+
+        private UncachedResponseException(String body) {
+            super(body, null, false, false);
+            this.body = body;
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.learn.aiintelligenttourism.tools;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 返回实时数据的工具（天气、汇率）
+ * 调用时在本次请求的 ToolContext 中做标记：回答用到了实时数据，不能写入语义缓存。
+ * 问题里不一定有"天气"、"汇率"这样的关键词（"去日本带多少现金合适"），只靠关键词排除不够
+ * 用法：请求时通过 {@code .toolContext(TimeSensitiveToolCallback.newContext())} 传入上下文，
+ * 回答结束后用 {@link #invoked(Map)} 判断是否调用过
+ */
+public class TimeSensitiveToolCallback implements ToolCallback {
+
+    public static final String INVOKED = "timeSensitiveToolInvoked";
+
+    private final ToolCallback delegate;
+
+    public TimeSensitiveToolCallback(ToolCallback delegate) {
+        this.delegate = delegate;
+    }
+
+    public static ToolCallback[] wrap(ToolCallback... callbacks) {
+        return Arrays.stream(callbacks)
+                .map(TimeSensitiveToolCallback::new)
+                .toArray(ToolCallback[]::new);
+    }
+
+    /**
+     * 每个请求一个新的上下文
+     */
+    public static Map<String, Object> newContext() {
+        Map<String, Object> context = new HashMap<>();
+        context.put(INVOKED, new AtomicBoolean());
+        return context;
+    }
+
+    public static boolean invoked(Map<String, Object> context) {
+        return context.get(INVOKED) instanceof AtomicBoolean flag && flag.get();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return delegate.call(toolInput);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        if (toolContext != null && toolContext.getContext().get(INVOKED) instanceof AtomicBoolean flag) {
+            flag.set(true);
+        }
+        return delegate.call(toolInput, toolContext);
+    }
+}
@@ -1,30 +1,34 @@
 package com.learn.aiintelligenttourism.tools;
 
-import jakarta.annotation.Resource;
 import org.springframework.ai.support.ToolCallbacks;
 import org.springframework.ai.tool.ToolCallback;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
 @Configuration
 public class ToolRegistration {
 
     @Value("${search-api.api-key}")
     private String searchApiKey;
 
-    @Value("${juhe.weather.key}")
-    private String weatherKey;
-
-    @Value("${juhe.exchange_rate.key}")
-    private String exchangeRateKey;
-
-    @Resource
-    private VectorStore vectorStore;
+    /**
+     * 聚合数据接口共享的 HTTP 客户端（连接复用、超时、按 host 限流）
+     */
+    @Bean
+    public JuheApi juheApi(@Value("${juhe.http.connect-timeout:3s}") Duration connectTimeout,
+                           @Value("${juhe.http.request-timeout:10s}") Duration requestTimeout,
+                           @Value("${juhe.http.max-concurrent-per-host:16}") int maxConcurrentPerHost) {
+        return new JuheApi(connectTimeout, requestTimeout, maxConcurrentPerHost);
+    }
 
     @Bean
-    public ToolCallback[] allTools(){
+    public ToolCallback[] allTools(TourismKnowledgeTool tourismKnowledgeTool, JuheWeatherTool juheWeatherTool,
+                                   JuheExchangeRateTool juheExchangeRateTool){
         //FileOperationTool fileOperationTool = new FileOperationTool();
         //WebSearchTool webSearchTool = new WebSearchTool(searchApiKey);
         //WebScrapingTool webScrapingTool = new WebScrapingTool();
@@ -32,10 +36,10 @@ public class ToolRegistration {
         //TerminalOperationTool terminalOperationTool = new TerminalOperationTool();
         //PDFGenerationTool pdfGenerationTool = new PDFGenerationTool();
         //TerminateTool terminateTool = new TerminateTool();
-        JuheWeatherTool juheWeatherTool = new JuheWeatherTool(weatherKey);
-        JuheExchangeRateTool juheExchangeRateTool = new JuheExchangeRateTool(exchangeRateKey);
-        TourismKnowledgeTool tourismKnowledgeTool = new TourismKnowledgeTool(vectorStore);
-        return ToolCallbacks.from(
+        // 天气、汇率返回实时数据，调用后回答不写入语义缓存
+        ToolCallback[] timeSensitiveTools = TimeSensitiveToolCallback.wrap(
+                ToolCallbacks.from(juheWeatherTool, juheExchangeRateTool));
+        ToolCallback[] tools = ToolCallbacks.from(
                 //fileOperationTool,
                 //webSearchTool,
                 //webScrapingTool,
@@ -43,10 +47,10 @@ public class ToolRegistration {
                 //terminalOperationTool,
                 //pdfGenerationTool,
                 //terminateTool,
-                tourismKnowledgeTool,
-                juheWeatherTool,
-                juheExchangeRateTool
+                tourismKnowledgeTool
         );
+        return Stream.concat(Arrays.stream(tools), Arrays.stream(timeSensitiveTools))
+                .toArray(ToolCallback[]::new);
     }
 
 
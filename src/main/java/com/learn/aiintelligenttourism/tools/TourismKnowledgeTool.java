@@ -1,41 +1,52 @@
 package com.learn.aiintelligenttourism.tools;
 
-import jakarta.annotation.Resource;
+import com.learn.aiintelligenttourism.RAG.LocationFilterResolver;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
 import org.springframework.stereotype.Component;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Component
 public class TourismKnowledgeTool {
 
     private final VectorStore vectorStore;
+    private final LocationFilterResolver locationFilterResolver;
 
-    public TourismKnowledgeTool(VectorStore vectorStore) {
+    public TourismKnowledgeTool(VectorStore vectorStore, LocationFilterResolver locationFilterResolver) {
         this.vectorStore = vectorStore;
+        this.locationFilterResolver = locationFilterResolver;
     }
 
     @Tool(description = "查询目的地的旅游攻略、避坑指南、景点介绍或当地政策。")
-    public String searchTravelGuide(@ToolParam(description = "查询关键词，如'京都避坑'、'长滩岛签证'") String query) {
+    public String searchTravelGuide(@ToolParam(description = "查询关键词，如'京都避坑'、'长滩岛签证'") String query,
+                                    @ToolParam(description = "目的地（城市或国家，如'京都'、'日本'），已知时填写以缩小检索范围", required = false) String destination) {
         // 执行向量检索
-        SearchRequest requestQuery = SearchRequest.builder()
+        SearchRequest.Builder requestQuery = SearchRequest.builder()
                 .query(query)
                 .topK(3)                  // 返回最相似的5个结果
-                .similarityThreshold(0.7) // 相似度阈值，0.0-1.0之间
-                .build();
-        var results = vectorStore.similaritySearch(requestQuery);
+                .similarityThreshold(0.7); // 相似度阈值，0.0-1.0之间
+        // 按目的地（未填写时从查询关键词中识别）只检索对应地区和通用的攻略
+        Optional<Filter.Expression> filterExpression = locationFilterResolver.resolve(destination, query);
+        filterExpression.ifPresent(requestQuery::filterExpression);
+        var results = vectorStore.similaritySearch(requestQuery.build());
+        // 旧流程入库的文档没有分区字段，过滤后为空时不过滤再查一次
+        if (results != null && results.isEmpty() && filterExpression.isPresent()) {
+            results = vectorStore.similaritySearch(requestQuery.filterExpression((Filter.Expression) null).build());
+        }
 
         assert results != null;
         if (results.isEmpty()) {
             return "未找到相关攻略信息。";
         }
-        
+
         // 将检索到的文档拼接成字符串返回给 Agent
         return results.stream()
                 .map(Document::getText)
                 .collect(Collectors.joining("\n---\n"));
     }
-}
\ No newline at end of file
+}
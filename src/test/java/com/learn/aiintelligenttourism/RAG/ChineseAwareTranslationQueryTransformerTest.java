@@ -0,0 +1,52 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.rag.Query;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChineseAwareTranslationQueryTransformerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger llmCalls = new AtomicInteger();
+    private final ChineseAwareTranslationQueryTransformer transformer = new ChineseAwareTranslationQueryTransformer(
+            query -> {
+                llmCalls.incrementAndGet();
+                return query.mutate().text("京都美食推荐").build();
+            }, Caffeine.newBuilder().maximumSize(100).<String, String>build(), meterRegistry);
+
+    @Test
+    void detectsChineseByScript() {
+        assertTrue(ChineseAwareTranslationQueryTransformer.isChinese("京都避坑"));
+        assertTrue(ChineseAwareTranslationQueryTransformer.isChinese("去Tokyo玩三天"));
+        assertTrue(ChineseAwareTranslationQueryTransformer.isChinese("2025"));
+        assertFalse(ChineseAwareTranslationQueryTransformer.isChinese("What to eat in Kyoto"));
+        assertFalse(ChineseAwareTranslationQueryTransformer.isChinese("京都のおすすめ"));
+        assertFalse(ChineseAwareTranslationQueryTransformer.isChinese("서울 여행"));
+    }
+
+    @Test
+    void chineseQueryIsNotTranslated() {
+        Query query = new Query("京都避坑");
+
+        assertEquals(query, transformer.transform(query));
+        assertEquals(0, llmCalls.get());
+        assertEquals(1.0, meterRegistry.counter("tourism.rag.translation", "outcome", "skipped").count());
+    }
+
+    @Test
+    void translationIsCached() {
+        assertEquals("京都美食推荐", transformer.transform(new Query("What to eat in Kyoto")).text());
+        assertEquals("京都美食推荐", transformer.transform(new Query("  What to eat   in Kyoto ")).text());
+
+        assertEquals(1, llmCalls.get());
+        assertEquals(1.0, meterRegistry.counter("tourism.rag.translation", "outcome", "translated").count());
+        assertEquals(1.0, meterRegistry.counter("tourism.rag.translation", "outcome", "cached").count());
+    }
+}
@@ -0,0 +1,80 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DocumentDirectoryWatcherTest {
+
+    private static final Duration DEBOUNCE = Duration.ofMillis(500);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void burstOfFileEventsTriggersSingleIngest() throws Exception {
+        CountingIngestionService ingestionService = new CountingIngestionService();
+        DocumentDirectoryWatcher watcher = new DocumentDirectoryWatcher(new DirectoryReader(directory),
+                ingestionService, DEBOUNCE);
+        watcher.start();
+        try {
+            // 模拟批量拷贝：短时间内新增、修改、删除多个文件
+            for (int i = 0; i < 5; i++) {
+                Files.writeString(directory.resolve("guide-" + i + ".md"), "# 京都 " + i);
+            }
+            Files.writeString(directory.resolve("guide-0.md"), "# 京都 清水寺");
+            Files.delete(directory.resolve("guide-4.md"));
+            // 非 markdown 文件不触发入库
+            Files.writeString(directory.resolve("notes.txt"), "ignored");
+
+            awaitIngest(ingestionService, Duration.ofSeconds(15));
+            // 再等待几个 debounce 周期，确认没有补发的入库
+            Thread.sleep(DEBOUNCE.multipliedBy(3).toMillis());
+            assertEquals(1, ingestionService.calls.get());
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    private static void awaitIngest(CountingIngestionService ingestionService, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (ingestionService.calls.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static class DirectoryReader extends TourismAppDocumentReader {
+
+        private final Path directory;
+
+        DirectoryReader(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public Path externalDirectory() {
+            return directory;
+        }
+    }
+
+    private static class CountingIngestionService extends DocumentIngestionService {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        CountingIngestionService() {
+            super(null, null, null, null, null, null, "manifest.json", false);
+        }
+
+        @Override
+        public IngestionReport ingest() {
+            calls.incrementAndGet();
+            return new IngestionReport(0, 0, 0, 0, 0, Duration.ZERO);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DocumentIngestionServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final RecordingVectorStore vectorStore = new RecordingVectorStore();
+    private final StubDocumentReader reader = new StubDocumentReader();
+    private final List<Object> events = new ArrayList<>();
+    private DocumentIngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        // 每批 1 个片段、不重试，便于让单个片段写入失败
+        IngestionExecutor executor = new IngestionExecutor(new SimpleMeterRegistry(), 1, 1, 1, 1, Duration.ofMillis(1));
+        service = new DocumentIngestionService(vectorStore, reader, new KeywordIndex(), new LocationFilterResolver(),
+                events::add, executor, directory.resolve("manifest.json").toString(), false);
+    }
+
+    @Test
+    void writesOnlyChangedChunksAndDeletesRemovedOnes() {
+        reader.chunks = List.of(chunk("京都：清水寺"), chunk("大阪：道顿堀"), chunk("奈良：东大寺"));
+        assertReport(service.ingest(), 3, 0, 0, 0);
+        assertEquals(Set.of("京都：清水寺", "大阪：道顿堀", "奈良：东大寺"), vectorStore.texts());
+
+        // 未变化的片段不再写入
+        assertReport(service.ingest(), 0, 3, 0, 0);
+        assertEquals(3, vectorStore.addCalls.get());
+
+        // 修改一个片段、删除一个片段：旧版本和被删除的片段都从向量库移除
+        reader.chunks = List.of(chunk("京都：清水寺"), chunk("大阪：道顿堀、黑门市场"));
+        assertReport(service.ingest(), 1, 1, 2, 0);
+        assertEquals(Set.of("京都：清水寺", "大阪：道顿堀、黑门市场"), vectorStore.texts());
+        // 第一次和第三次入库有变更
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void failedBatchKeepsStaleChunksUntilRetried() {
+        reader.chunks = List.of(chunk("京都：清水寺"), chunk("大阪：道顿堀"));
+        service.ingest();
+
+        reader.chunks = List.of(chunk("京都：清水寺"), chunk("大阪：道顿堀、黑门市场"));
+        vectorStore.failing = "黑门市场";
+        assertReport(service.ingest(), 0, 1, 0, 1);
+        // 新版本写入失败时旧版本保留，知识库不出现空档
+        assertEquals(Set.of("京都：清水寺", "大阪：道顿堀"), vectorStore.texts());
+
+        vectorStore.failing = null;
+        assertReport(service.ingest(), 1, 1, 1, 0);
+        assertEquals(Set.of("京都：清水寺", "大阪：道顿堀、黑门市场"), vectorStore.texts());
+    }
+
+    private static void assertReport(IngestionReport report, int added, int unchanged, int deleted, int failed) {
+        assertEquals(added, report.added(), report.toString());
+        assertEquals(unchanged, report.unchanged(), report.toString());
+        assertEquals(deleted, report.deleted(), report.toString());
+        assertEquals(failed, report.failed(), report.toString());
+    }
+
+    private static Document chunk(String text) {
+        return Document.builder()
+                .text(text)
+                .metadata(Map.of("filename", "guide.md"))
+                .build();
+    }
+
+    private static class StubDocumentReader extends TourismAppDocumentReader {
+
+        private List<Document> chunks = List.of();
+
+        @Override
+        public List<Document> loadMarkdowns() {
+            return chunks;
+        }
+    }
+
+    /**
+     * 模拟外部向量库（pgvector）：按 ID 保存文档，正文包含 failing 的文档写入失败
+     */
+    private static class RecordingVectorStore implements VectorStore {
+
+        private final Map<String, Document> documents = new ConcurrentHashMap<>();
+        private final AtomicInteger addCalls = new AtomicInteger();
+        private volatile String failing;
+
+        @Override
+        public void add(List<Document> batch) {
+            addCalls.incrementAndGet();
+            if (failing != null && batch.stream().anyMatch(document -> document.getText().contains(failing))) {
+                throw new IllegalStateException("write failed");
+            }
+            batch.forEach(document -> documents.put(document.getId(), document));
+        }
+
+        @Override
+        public void delete(List<String> idList) {
+            idList.forEach(documents::remove);
+        }
+
+        @Override
+        public void delete(Filter.Expression filterExpression) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return List.of();
+        }
+
+        Set<String> texts() {
+            return documents.values().stream().map(Document::getText).collect(Collectors.toSet());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HNSW 与暴力检索的召回率对比（聚类数据，近似真实 Embedding 的分布）；延迟对比为可选的基准测试
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSION = 64;
+    private static final int CLUSTERS = 20;
+
+    private final Random random = new Random(7);
+    private final float[][] centers = new float[CLUSTERS][DIMENSION];
+
+    HnswIndexTest() {
+        for (float[] center : centers) {
+            for (int i = 0; i < DIMENSION; i++) {
+                center[i] = (float) random.nextGaussian();
+            }
+        }
+    }
+
+    @Test
+    void recallAgainstBruteForce() {
+        int size = 3000;
+        int k = 10;
+        int queries = 200;
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 200);
+        for (int i = 0; i < size; i++) {
+            index.add(sample());
+        }
+
+        int hits = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = sample();
+            List<HnswIndex.Scored> approximate = index.search(query, k, 64, null);
+            List<HnswIndex.Scored> exact = index.bruteForce(query, k, null);
+
+            Set<Integer> expected = new HashSet<>();
+            exact.forEach(s -> expected.add(s.node()));
+            hits += (int) approximate.stream().filter(s -> expected.contains(s.node())).count();
+        }
+
+        double recall = (double) hits / (queries * k);
+        assertTrue(recall >= 0.95, "recall " + recall);
+    }
+
+    /**
+     * 延迟测量，只在设置了 TOURISM_BENCHMARK=true 时运行，结果输出到标准输出
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "TOURISM_BENCHMARK", matches = "true")
+    void latencyBenchmarkAgainstBruteForce() {
+        int size = 3000;
+        int k = 10;
+        int queries = 200;
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 200);
+        for (int i = 0; i < size; i++) {
+            index.add(sample());
+        }
+
+        long hnswNanos = 0;
+        long bruteNanos = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = sample();
+            long start = System.nanoTime();
+            index.search(query, k, 64, null);
+            hnswNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            index.bruteForce(query, k, null);
+            bruteNanos += System.nanoTime() - start;
+        }
+
+        System.out.printf("HNSW avg latency %.3f ms (brute force %.3f ms), top %d of %d vectors%n",
+                hnswNanos / 1e6 / queries, bruteNanos / 1e6 / queries, k, size);
+    }
+
+    @Test
+    void filterAndDeleteAreRespected() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50);
+        for (int i = 0; i < 500; i++) {
+            index.add(sample());
+        }
+        index.delete(0);
+
+        List<HnswIndex.Scored> filtered = index.search(sample(), 5, 64, node -> node % 10 == 0);
+        assertEquals(5, filtered.size());
+        assertTrue(filtered.stream().allMatch(s -> s.node() % 10 == 0));
+        assertFalse(filtered.stream().anyMatch(s -> s.node() == 0));
+    }
+
+    @Test
+    void resultsAreSortedBySimilarity() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50);
+        float[] target = sample();
+        int targetNode = index.add(target);
+        for (int i = 0; i < 200; i++) {
+            index.add(sample());
+        }
+
+        List<HnswIndex.Scored> results = index.search(target, 5, 32, null);
+        assertEquals(targetNode, results.get(0).node());
+        assertEquals(1.0f, results.get(0).score(), 1e-5);
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).score() >= results.get(i).score());
+        }
+    }
+
+    private float[] sample() {
+        float[] center = centers[random.nextInt(CLUSTERS)];
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = center[i] + 0.5f * (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
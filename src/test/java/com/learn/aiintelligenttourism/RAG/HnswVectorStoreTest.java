@@ -0,0 +1,160 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswVectorStoreTest {
+
+    private final HnswVectorStore store = new HnswVectorStore(new FakeEmbeddingModel(), 16, 100, 64);
+
+    @Test
+    void updateSwapsAdditionsAndDeletionsAtomically() throws Exception {
+        int size = 20;
+        int generations = 50;
+        store.add(generation(0, size));
+        // 所有文档都在同一分区，过滤检索走暴力计算，结果不受 HNSW 近似的影响
+        SearchRequest request = SearchRequest.builder()
+                .query("京都")
+                .topK(size * 2)
+                .filterExpression(new FilterExpressionBuilder().eq(LocationFilterResolver.COUNTRY, "日本").build())
+                .build();
+
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService searchers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(searchers.submit(() -> {
+                    int searches = 0;
+                    do {
+                        // 每次检索只能看到某一代的完整文档集合：不会新旧混杂，也不会缺失
+                        List<Document> documents = store.similaritySearch(request);
+                        Set<String> seen = documents.stream()
+                                .map(document -> document.getId().substring(0, document.getId().indexOf('-')))
+                                .collect(Collectors.toSet());
+                        assertEquals(size, documents.size(), documents.toString());
+                        assertEquals(1, seen.size(), seen.toString());
+                        searches++;
+                    } while (!done.get());
+                    return searches;
+                }));
+            }
+            for (int g = 1; g <= generations; g++) {
+                store.update(generation(g, size), ids(g - 1, size));
+            }
+            done.set(true);
+            for (Future<Integer> result : results) {
+                assertTrue(result.get() > 0);
+            }
+        } finally {
+            searchers.shutdownNow();
+        }
+
+        assertEquals(size, store.size());
+        assertTrue(store.similaritySearch(request).stream().allMatch(document -> document.getId().startsWith("g" + generations + "-")));
+    }
+
+    @Test
+    void partitionFiltersReturnOnlyMatchingShardsAndGlobalDocuments() {
+        List<Document> documents = List.of(
+                document("kyoto", "日本, 京都, 岚山"),
+                document("osaka", "日本, 大阪"),
+                document("japan", "日本"),
+                document("changsha", "中国, 长沙"),
+                document("scams", null));
+        store.add(documents);
+        LocationFilterResolver resolver = new LocationFilterResolver();
+        resolver.rebuild(documents);
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+
+        // 城市：country == 日本 且 city in (京都, *)，加上全球分区
+        assertEquals(Set.of("kyoto", "japan", "scams"), search(resolver.resolve("岚山", null).orElseThrow()));
+        // 国家：country == 日本，加上全球分区
+        assertEquals(Set.of("kyoto", "osaka", "japan", "scams"), search(resolver.resolve("日本", null).orElseThrow()));
+        assertEquals(Set.of("osaka", "changsha", "scams"), search(b.or(
+                b.eq(LocationFilterResolver.COUNTRY, LocationFilterResolver.GLOBAL),
+                b.in(LocationFilterResolver.CITY, "大阪", "长沙")).build()));
+        assertEquals(Set.of("changsha"), search(b.eq(LocationFilterResolver.CITY, "长沙").build()));
+    }
+
+    private Set<String> search(Filter.Expression expression) {
+        return store.similaritySearch(SearchRequest.builder().query("攻略").topK(10).filterExpression(expression).build())
+                .stream()
+                .map(Document::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private static List<Document> generation(int generation, int size) {
+        List<Document> documents = new ArrayList<>();
+        for (String id : ids(generation, size)) {
+            documents.add(document(id, "日本, 京都"));
+        }
+        return documents;
+    }
+
+    private static List<String> ids(int generation, int size) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ids.add("g" + generation + "-" + i);
+        }
+        return ids;
+    }
+
+    private static Document document(String id, String location) {
+        Map<String, Object> metadata = new HashMap<>(LocationFilterResolver.partition(location));
+        if (location != null) {
+            metadata.put("location", location);
+        }
+        return Document.builder().id(id).text(id).metadata(metadata).build();
+    }
+
+    /**
+     * 按文本哈希生成的正值向量：相似度恒为正，不会被相似度阈值过滤
+     */
+    private static class FakeEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(vector(text), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[8];
+            int hash = text.hashCode();
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = 1 + ((hash >>> (i * 4)) & 0xF);
+            }
+            return vector;
+        }
+    }
+}
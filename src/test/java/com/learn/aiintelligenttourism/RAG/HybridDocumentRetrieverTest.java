@@ -0,0 +1,94 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HybridDocumentRetrieverTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final KeywordIndex keywordIndex = new KeywordIndex();
+
+    HybridDocumentRetrieverTest() {
+        keywordIndex.rebuild(List.of(
+                document("kyoto", "京都岚山竹林清晨人少，建议早上七点前到达"),
+                document("tokyo", "东京入境前需要在 Visit Japan Web 填写海关申报"),
+                document("changsha", "长沙美食推荐：臭豆腐、糖油粑粑")));
+    }
+
+    @Test
+    void tokenizesChineseIntoBigramsWithoutStopwords() {
+        assertEquals(List.of("岚山", "visit", "japan"), KeywordIndex.tokenize("岚山，Visit Japan"));
+        assertEquals(List.of("竹林"), KeywordIndex.tokenize("竹林怎么去"));
+        assertEquals(List.of(), KeywordIndex.tokenize("你好"));
+    }
+
+    @Test
+    void chitChatMatchesNothing() {
+        assertEquals(List.of(), keywordIndex.search("你好", 3));
+        assertEquals(List.of(), keywordIndex.search("怎么去", 3));
+    }
+
+    @Test
+    void keywordSearchRanksExactTermsFirst() {
+        List<Document> results = keywordIndex.search("岚山竹林", 3);
+        assertEquals("kyoto", results.get(0).getId());
+        assertEquals("tokyo", keywordIndex.search("visit japan web", 3).get(0).getId());
+    }
+
+    @Test
+    void fusesByReciprocalRank() {
+        List<Document> fused = HybridDocumentRetriever.fuse(List.of(
+                List.of(document("a", "a"), document("b", "b")),
+                List.of(document("b", "b"), document("c", "c"))), 3);
+        assertEquals(List.of("b", "a", "c"), fused.stream().map(Document::getId).toList());
+        assertEquals(1.0 / 61 + 1.0 / 62, fused.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    void fusesSameChunkWithDifferentIds() {
+        // 旧流程写入向量库的片段是随机 ID，关键词索引是内容哈希 ID
+        List<Document> fused = HybridDocumentRetriever.fuse(List.of(
+                List.of(document("3f2a-uuid", "京都岚山竹林")),
+                List.of(document("sha-kyoto", "京都岚山竹林"), document("sha-tokyo", "东京入境"))), 3);
+        assertEquals(List.of("3f2a-uuid", "sha-tokyo"), fused.stream().map(Document::getId).toList());
+    }
+
+    @Test
+    void fallsBackToKeywordResultsWhenVectorSearchTimesOut() {
+        HybridDocumentRetriever retriever = new HybridDocumentRetriever(query -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of();
+        }, keywordIndex, 4, Duration.ofMillis(50), meterRegistry);
+
+        long start = System.nanoTime();
+        List<Document> results = retriever.retrieve(new Query("长沙美食"));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 500);
+        assertEquals("changsha", results.get(0).getId());
+        assertEquals(1.0, meterRegistry.counter("tourism.rag.hybrid", "outcome", "keyword_only").count());
+    }
+
+    @Test
+    void fallsBackToKeywordResultsWhenVectorStoreFails() {
+        HybridDocumentRetriever retriever = new HybridDocumentRetriever(query -> {
+            throw new IllegalStateException("vector store down");
+        }, keywordIndex, 4, Duration.ofSeconds(1), meterRegistry);
+
+        assertEquals("kyoto", retriever.retrieve(new Query("岚山")).get(0).getId());
+    }
+
+    private static Document document(String id, String text) {
+        return Document.builder().id(id).text(text).build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestionExecutorTest {
+
+    private final IngestionExecutor executor = new IngestionExecutor(new SimpleMeterRegistry(),
+            10, 8, 3, 3, Duration.ofMillis(1));
+
+    @Test
+    void retriesFailedBatchesAndBoundsInFlightRequests() {
+        List<Document> documents = documents(100);
+        Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        executor.begin(documents.size());
+        int failed = executor.write(documents, batch -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                String first = batch.get(0).getId();
+                int attempt = attempts.computeIfAbsent(first, id -> new AtomicInteger()).incrementAndGet();
+                // 第 1 批首次失败、重试成功；第 5 批始终失败
+                if (first.equals("doc-0") && attempt == 1 || first.equals("doc-40")) {
+                    throw new IllegalStateException("write failed");
+                }
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+
+        assertEquals(10, failed);
+        assertEquals(2, attempts.get("doc-0").get());
+        assertEquals(3, attempts.get("doc-40").get());
+        assertTrue(maxInFlight.get() <= 3, "in flight " + maxInFlight.get());
+        assertEquals(1.0, executor.progress(), 1e-9);
+        assertTrue(executor.throughput() > 0);
+    }
+
+    @Test
+    void embedsInBatchesPreservingOrder() {
+        List<Document> documents = documents(50);
+        List<float[]> embeddings = executor.embed(new FakeEmbeddingModel(), documents);
+
+        assertEquals(50, embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            assertEquals(i, embeddings.get(i)[0], 0f);
+        }
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(Document.builder().id("doc-" + i).text("片段 " + i).metadata(Map.of()).build());
+        }
+        return documents;
+    }
+
+    /**
+     * 向量只有一维，值为片段编号
+     */
+    private static class FakeEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(new float[]{Float.parseFloat(text.substring(3))}, embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocationFallbackDocumentRetrieverTest {
+
+    private final List<Query> queries = new ArrayList<>();
+
+    @Test
+    void retriesWithoutFilterWhenFilteredSearchIsEmpty() {
+        // 模拟旧数据：没有分区字段，带过滤条件时查不到
+        LocationFallbackDocumentRetriever retriever = new LocationFallbackDocumentRetriever(query -> {
+            queries.add(query);
+            return query.context().containsKey(VectorStoreDocumentRetriever.FILTER_EXPRESSION)
+                    ? List.of()
+                    : List.of(Document.builder().id("legacy").text("京都岚山攻略").build());
+        });
+
+        List<Document> results = retriever.retrieve(filtered("岚山怎么去"));
+
+        assertEquals(List.of("legacy"), results.stream().map(Document::getId).toList());
+        assertEquals(2, queries.size());
+    }
+
+    @Test
+    void keepsFilteredResultsAndUnfilteredMisses() {
+        LocationFallbackDocumentRetriever retriever = new LocationFallbackDocumentRetriever(query -> {
+            queries.add(query);
+            return query.context().containsKey(VectorStoreDocumentRetriever.FILTER_EXPRESSION)
+                    ? List.of(Document.builder().id("kyoto").text("京都岚山攻略").build())
+                    : List.of();
+        });
+
+        assertEquals(1, retriever.retrieve(filtered("岚山怎么去")).size());
+        assertEquals(0, retriever.retrieve(new Query("你好")).size());
+        assertEquals(2, queries.size());
+    }
+
+    private static Query filtered(String text) {
+        return Query.builder()
+                .text(text)
+                .context(Map.of(VectorStoreDocumentRetriever.FILTER_EXPRESSION, "country == '日本'"))
+                .build();
+    }
+}
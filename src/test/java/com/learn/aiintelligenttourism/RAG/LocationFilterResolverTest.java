@@ -0,0 +1,78 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationFilterResolverTest {
+
+    private final List<Document> documents = List.of(
+            document("kyoto", "日本, 京都, 岚山"),
+            document("japan", "日本"),
+            document("changsha", "中国, 长沙"),
+            document("scams", null));
+    private final LocationFilterResolver resolver = new LocationFilterResolver();
+
+    LocationFilterResolverTest() {
+        resolver.rebuild(documents);
+    }
+
+    @Test
+    void partitionsByCountryAndCity() {
+        assertEquals(Map.of("country", "日本", "city", "京都"), LocationFilterResolver.partition("日本, 京都, 岚山"));
+        assertEquals(Map.of("country", "日本", "city", "*"), LocationFilterResolver.partition("日本"));
+        assertEquals(Map.of("country", "全球", "city", "*"), LocationFilterResolver.partition(null));
+    }
+
+    @Test
+    void cityFilterKeepsCountryWideAndGlobalDocuments() {
+        MetadataFilter filter = new MetadataFilter(resolver.resolve("岚山", "怎么去").orElseThrow());
+        assertEquals(List.of("kyoto", "japan", "scams"), accepted(filter));
+    }
+
+    @Test
+    void detectsDestinationInQueryWhenNoneGiven() {
+        MetadataFilter filter = new MetadataFilter(resolver.resolve(null, "长沙有什么好吃的").orElseThrow());
+        assertEquals(List.of("changsha", "scams"), accepted(filter));
+        assertTrue(resolver.resolve("", "有什么避坑建议").isEmpty());
+    }
+
+    @Test
+    void partitionsNarrowCandidatesToMatchingShards() {
+        Map<String, Map<Object, BitSet>> partitions = new HashMap<>();
+        for (int node = 0; node < documents.size(); node++) {
+            for (String key : LocationFilterResolver.PARTITION_KEYS) {
+                partitions.computeIfAbsent(key, k -> new HashMap<>())
+                        .computeIfAbsent(documents.get(node).getMetadata().get(key), v -> new BitSet())
+                        .set(node);
+            }
+        }
+        Filter.Expression expression = resolver.resolve("长沙", null).orElseThrow();
+        BitSet candidates = HnswVectorStore.candidates(expression, partitions);
+        assertTrue(candidates.get(2));
+        assertTrue(candidates.get(3));
+        assertFalse(candidates.get(0));
+        assertFalse(candidates.get(1));
+    }
+
+    private List<String> accepted(MetadataFilter filter) {
+        return documents.stream().filter(filter).map(Document::getId).toList();
+    }
+
+    private static Document document(String id, String location) {
+        Map<String, Object> metadata = new HashMap<>(LocationFilterResolver.partition(location));
+        if (location != null) {
+            metadata.put("location", location);
+        }
+        return Document.builder().id(id).text(id).metadata(metadata).build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * int8 粗排 + float 精排与精确检索的召回率、内存对比（聚类数据，近似真实 Embedding 的分布）
+ */
+class QuantizedVectorIndexTest {
+
+    private static final int DIMENSION = 256;
+    private static final int CLUSTERS = 20;
+
+    private final Random random = new Random(7);
+    private final float[][] centers = new float[CLUSTERS][DIMENSION];
+
+    QuantizedVectorIndexTest() {
+        for (float[] center : centers) {
+            for (int i = 0; i < DIMENSION; i++) {
+                center[i] = (float) random.nextGaussian();
+            }
+        }
+    }
+
+    @Test
+    void recallAndMemoryAgainstExactSearch() {
+        int size = 5000;
+        int k = 10;
+        int queries = 200;
+        QuantizedVectorIndex quantized = new QuantizedVectorIndex(DIMENSION);
+        HnswIndex exact = new HnswIndex(DIMENSION, 8, 50);
+        for (int i = 0; i < size; i++) {
+            float[] vector = sample();
+            quantized.add(vector);
+            exact.add(vector);
+        }
+
+        int rerankedHits = 0;
+        int int8Hits = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = ScalarQuantizer.normalize(sample());
+            List<HnswIndex.Scored> reranked = quantized.search(query, k, 4, null, exact::vector);
+            List<HnswIndex.Scored> expected = exact.bruteForce(query, k, null);
+
+            Set<Integer> expectedNodes = new HashSet<>();
+            expected.forEach(s -> expectedNodes.add(s.node()));
+            rerankedHits += (int) reranked.stream().filter(s -> expectedNodes.contains(s.node())).count();
+            int8Hits += (int) quantized.search(query, k, 4, null, null).stream()
+                    .filter(s -> expectedNodes.contains(s.node())).count();
+        }
+
+        double recall = (double) rerankedHits / (queries * k);
+        double int8Recall = (double) int8Hits / (queries * k);
+        assertTrue(int8Recall >= 0.9, "int8 recall " + int8Recall);
+        assertTrue(recall >= 0.99, "recall " + recall);
+        assertEquals(DIMENSION + 4, quantized.bytesPerVector());
+    }
+
+    @Test
+    void rerankedScoresAreExact() {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION);
+        HnswIndex exact = new HnswIndex(DIMENSION, 8, 50);
+        float[] target = sample();
+        int targetNode = index.add(target);
+        exact.add(target);
+        for (int i = 0; i < 200; i++) {
+            float[] vector = sample();
+            index.add(vector);
+            exact.add(vector);
+        }
+
+        List<HnswIndex.Scored> results = index.search(ScalarQuantizer.normalize(target), 5, 4,
+                node -> node % 2 == 0, exact::vector);
+        assertEquals(targetNode, results.get(0).node());
+        assertEquals(1.0f, results.get(0).score(), 1e-5f);
+        assertTrue(results.stream().allMatch(s -> s.node() % 2 == 0));
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).score() >= results.get(i).score());
+        }
+    }
+
+    private float[] sample() {
+        float[] center = centers[random.nextInt(CLUSTERS)];
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = center[i] + 0.5f * (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
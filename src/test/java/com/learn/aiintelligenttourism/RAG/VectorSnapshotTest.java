@@ -0,0 +1,95 @@
+package com.learn.aiintelligenttourism.RAG;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VectorSnapshotTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void writesAndSearchesMappedSnapshot() throws IOException {
+        for (boolean quantized : new boolean[]{false, true}) {
+            Path path = Files.createTempFile("vector-snapshot-", ".bin");
+            try {
+                List<float[]> vectors = vectors(200);
+                VectorSnapshot.write(path, DIMENSION, quantized, documents(vectors.size()), vectors);
+
+                VectorSnapshot snapshot = VectorSnapshot.open(path);
+                snapshot.verify();
+                assertEquals(200, snapshot.size());
+                assertEquals(quantized, snapshot.isQuantized());
+
+                List<HnswIndex.Scored> hits = snapshot.search(ScalarQuantizer.normalize(vectors.get(42)), 3, null);
+                assertEquals(42, hits.get(0).node());
+                assertTrue(hits.get(0).score() > 0.99f);
+                Document document = snapshot.document(42);
+                assertEquals("doc-42", document.getId());
+                assertEquals("日本", document.getMetadata().get("country"));
+
+                // 过滤掉命中的文档后返回其他文档
+                assertTrue(snapshot.search(ScalarQuantizer.normalize(vectors.get(42)), 3, node -> node != 42)
+                        .stream().noneMatch(hit -> hit.node() == 42));
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void detectsCorruptedSnapshot() throws IOException {
+        Path path = Files.createTempFile("vector-snapshot-", ".bin");
+        try {
+            List<float[]> vectors = vectors(10);
+            VectorSnapshot.write(path, DIMENSION, false, documents(vectors.size()), vectors);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{0x7f}), channel.size() - 5);
+            }
+
+            VectorSnapshot snapshot = VectorSnapshot.open(path);
+            assertThrows(IllegalStateException.class, snapshot::verify);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static List<float[]> vectors(int count) {
+        Random random = new Random(11);
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int j = 0; j < DIMENSION; j++) {
+                vector[j] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(Document.builder()
+                    .id("doc-" + i)
+                    .text("片段 " + i)
+                    .metadata(Map.of("country", "日本", "city", "京都"))
+                    .build());
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,167 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.graph.CompileConfig;
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.NodeOutput;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.StateGraph;
+import com.alibaba.cloud.ai.graph.action.InterruptionMetadata;
+import com.alibaba.cloud.ai.graph.checkpoint.config.SaverConfig;
+import com.alibaba.cloud.ai.graph.state.StateSnapshot;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.alibaba.cloud.ai.graph.StateGraph.END;
+import static com.alibaba.cloud.ai.graph.StateGraph.START;
+import static com.alibaba.cloud.ai.graph.action.AsyncEdgeAction.edge_async;
+import static com.alibaba.cloud.ai.graph.action.AsyncNodeActionWithConfig.node_async;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 多个会话并发执行同一个 CompiledGraph：每个会话先被追问中断，再补充出行时间后恢复，
+ * 最终提取到的目的地必须是自己会话里说的那个
+ */
+class CircularInformationExtractorNodeConcurrencyTest {
+
+    private static final int THREADS = 100;
+
+    private CompiledGraph compiledGraph;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ChatClient chatClient = ChatClient.create(new FakeExtractionChatModel());
+
+        StateGraph workflow = new StateGraph(TourismAppKeyStrategyFactory.createKeyStrategyFactory())
+                .addNode("circular_information_extractor", node_async(new CircularInformationExtractorNode(chatClient)))
+                .addNode("human_feedback", new HumanFeedbackNode())
+                .addNode("research_agent", node_async((state, config) -> Map.of()))
+                .addEdge(START, "circular_information_extractor")
+                .addEdge("human_feedback", "circular_information_extractor")
+                .addEdge("research_agent", END);
+        workflow.addConditionalEdges("circular_information_extractor",
+                edge_async(CircularInformationExtractorNode::route),
+                Map.of(
+                        CircularInformationExtractorNode.HUMAN_FEEDBACK, "human_feedback",
+                        CircularInformationExtractorNode.RESEARCH, "research_agent"
+                ));
+
+        var saver = new TieredCheckpointSaver(THREADS * 2, Duration.ofHours(1), null, new SimpleMeterRegistry());
+        compiledGraph = workflow.compile(CompileConfig.builder()
+                .saverConfig(SaverConfig.builder().register(saver).build())
+                .build());
+    }
+
+    @Test
+    void concurrentThreadsKeepTheirOwnRequirements() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Callable<String>> conversations = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int index = i;
+                conversations.add(() -> converse("thread-" + index, "城市" + index));
+            }
+
+            List<Future<String>> results = executor.invokeAll(conversations, 2, TimeUnit.MINUTES);
+            for (int i = 0; i < THREADS; i++) {
+                assertEquals("城市" + i, results.get(i).get(), "thread-" + i + " 的需求被其他会话覆盖");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 模拟一次完整对话：只说目的地 -> 被追问中断 -> 补充出行时间 -> 恢复执行到结束，返回最终提取到的目的地
+     */
+    private String converse(String threadId, String destination) throws Exception {
+        RunnableConfig config = RunnableConfig.builder().threadId(threadId).build();
+
+        String firstInput = "我想去" + destination + "玩";
+        NodeOutput interrupted = compiledGraph.stream(Map.of(
+                        "messages", new UserMessage(firstInput),
+                        "userMessage", firstInput), config)
+                .blockLast();
+        assertInstanceOf(InterruptionMetadata.class, interrupted, threadId + " 信息不全时应中断追问");
+
+        StateSnapshot snapshot = compiledGraph.getState(config);
+        String reply = "明天出发";
+        RunnableConfig resumeConfig = compiledGraph.updateState(config, Map.of(
+                "userMessage", reply,
+                "messages", new UserMessage(reply)), snapshot.next());
+        resumeConfig = RunnableConfig.builder(resumeConfig)
+                .addMetadata(RunnableConfig.HUMAN_FEEDBACK_METADATA_KEY, "true")
+                .build();
+        compiledGraph.stream(null, resumeConfig).blockLast();
+
+        TravelRequirements requirements = compiledGraph.getState(config).state()
+                .value("travelRequirements")
+                .map(TravelRequirements::from)
+                .orElse(null);
+        assertNotNull(requirements, threadId + " 未提取到需求");
+        assertNotNull(requirements.travelDate(), threadId + " 未提取到出行时间");
+        return requirements.destination();
+    }
+
+    /**
+     * 假的模型：只根据 Prompt 里的用户消息作答，并随机延迟让不同会话的调用交错执行
+     */
+    private static final class FakeExtractionChatModel implements ChatModel {
+
+        private static final Pattern DESTINATION = Pattern.compile("城市\\d+");
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            String userText = prompt.getInstructions().stream()
+                    .filter(UserMessage.class::isInstance)
+                    .map(message -> message.getText())
+                    .collect(Collectors.joining("\n"));
+            pause();
+
+            if (userText.contains("请生成一句自然的话术")) {
+                return response("请问您打算什么时候出发呢？");
+            }
+            Matcher matcher = DESTINATION.matcher(userText);
+            String destination = matcher.find() ? "\"" + matcher.group() + "\"" : "null";
+            String travelDate = userText.contains("明天出发") ? "\"2026-01-02\"" : "null";
+            return response("{\"destination\": " + destination + ", \"travelDate\": " + travelDate
+                    + ", \"budget\": null, \"preference\": null}");
+        }
+
+        private static ChatResponse response(String text) {
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+        }
+
+        private static void pause() {
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(1, 10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
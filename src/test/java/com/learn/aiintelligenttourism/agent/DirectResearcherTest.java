@@ -0,0 +1,105 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.learn.aiintelligenttourism.RAG.LocationFilterResolver;
+import com.learn.aiintelligenttourism.tools.TourismKnowledgeTool;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectResearcherTest {
+
+    // 工具均为 null：这里只覆盖不需要调用工具的逻辑
+    private final DirectResearcher researcher = new DirectResearcher(null, null, null, locationFilterResolver(),
+            Duration.ofMillis(100));
+
+    @Test
+    void resolvesCurrencyFromGazetteerThenName() {
+        // 小樽不在货币表中，由地名表识别为日本
+        assertEquals(Optional.of("JPY"), researcher.currency("小樽"));
+        // 地名表中没有曼谷，按城市名匹配
+        assertEquals(Optional.of("THB"), researcher.currency("曼谷"));
+        assertEquals(Optional.of("KRW"), researcher.currency("首尔明洞"));
+    }
+
+    @Test
+    void domesticDestinationHasNoCurrency() {
+        assertTrue(researcher.currency("长沙").isEmpty());
+        assertTrue(researcher.currency("").isEmpty());
+        assertNull(researcher.entryPolicy("长沙").join());
+        assertNull(researcher.exchangeRate("长沙").join());
+    }
+
+    @Test
+    void unknownForeignDestinationStillSearchesEntryPolicy() {
+        TourismKnowledgeTool knowledgeTool = new TourismKnowledgeTool(null, null) {
+            @Override
+            public String searchTravelGuide(String query, String destination) {
+                return "入境资讯：" + query;
+            }
+        };
+        DirectResearcher researcher = new DirectResearcher(null, knowledgeTool, null, locationFilterResolver(),
+                Duration.ofMillis(100));
+
+        // 长滩岛不在货币表和地名表中：不能确定是国内，照常检索入境政策，汇率记为未检索到数据
+        assertFalse(researcher.domestic("长滩岛"));
+        assertEquals("入境资讯：长滩岛 入境政策 签证 海关", researcher.entryPolicy("长滩岛").join());
+        assertEquals("", researcher.exchangeRate("长滩岛").join());
+        assertTrue(researcher.domestic("湖南张家界"));
+        assertFalse(researcher.domestic("香港"));
+    }
+
+    @Test
+    void errorResponsesAreNotTreatedAsData() {
+        assertEquals("", DirectResearcher.dataOrEmpty("{\"reason\":\"暂不支持该城市\",\"result\":null,\"error_code\":207301}"));
+        assertEquals("", DirectResearcher.dataOrEmpty("{\"error\": \"查询天气失败: HTTP 503\"}"));
+        String weather = "{\"reason\":\"查询成功!\",\"result\":{\"city\":\"长沙\"},\"error_code\":0}";
+        assertEquals(weather, DirectResearcher.dataOrEmpty(weather));
+        assertEquals("晴", DirectResearcher.dataOrEmpty("晴"));
+    }
+
+    @Test
+    void failedOrTimedOutLookupDegradesToNoData() {
+        DirectResearcher.Lookups lookups = new DirectResearcher.Lookups("东京",
+                CompletableFuture.failedFuture(new IOException("HTTP 503")),
+                new CompletableFuture<>(),
+                CompletableFuture.completedFuture("持护照免签入境"),
+                CompletableFuture.completedFuture("{\"exchange\": \"21.0\"}"));
+
+        String result = researcher.research(lookups);
+
+        assertTrue(result.contains("【天气数据】：\n" + DirectResearcher.NO_DATA), result);
+        assertTrue(result.contains("【搜集到的资讯】：\n" + DirectResearcher.NO_DATA), result);
+        assertTrue(result.contains("【入境政策】：\n持护照免签入境"), result);
+        assertTrue(result.contains("【汇率数据】：\n{\"exchange\": \"21.0\"}"), result);
+    }
+
+    @Test
+    void formatOmitsEntryPolicyAndExchangeRateForDomesticDestination() {
+        String domestic = DirectResearcher.format("晴 25℃", "橘子洲头", null, null);
+
+        assertEquals("【天气数据】：\n晴 25℃\n\n【搜集到的资讯】：\n橘子洲头", domestic);
+        assertFalse(domestic.contains("【入境政策】"));
+        assertFalse(domestic.contains("【汇率数据】"));
+        // 出境目的地查询为空时仍输出该项
+        assertTrue(DirectResearcher.format("晴", "", "", "").contains("【汇率数据】：\n" + DirectResearcher.NO_DATA));
+    }
+
+    private static LocationFilterResolver locationFilterResolver() {
+        LocationFilterResolver resolver = new LocationFilterResolver();
+        resolver.rebuild(List.of(
+                Document.builder().text("otaru").metadata(Map.of("location", "日本, 北海道, 小樽")).build(),
+                Document.builder().text("changsha").metadata(Map.of("location", "中国, 长沙")).build()));
+        return resolver;
+    }
+}
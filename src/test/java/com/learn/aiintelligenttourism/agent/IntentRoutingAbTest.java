@@ -0,0 +1,241 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.dashscope.api.DashScopeApi;
+import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatModel;
+import com.alibaba.cloud.ai.graph.CompileConfig;
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.StateGraph;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.cloud.ai.graph.StateGraph.END;
+import static com.alibaba.cloud.ai.graph.StateGraph.START;
+import static com.alibaba.cloud.ai.graph.action.AsyncEdgeAction.edge_async;
+import static com.alibaba.cloud.ai.graph.action.AsyncNodeActionWithConfig.node_async;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分步（意图判断 + 需求提取 + 追问，最多三次调用）与合并（IntentExtractorNode，一次调用）两种路由的 A/B 对比
+ * 调用真实的 DashScope 模型，只在设置了 DASHSCOPE_API_KEY 且 TOURISM_INTENT_AB=true 时运行：
+ *  - 意图准确率：intent-training-data.txt 中的标注样本（关闭本地分类器，全部交给模型判断）
+ *  - 需求提取：目的地与是否提取到出行时间
+ *  - 两种路由的去向（闲聊 / 追问 / 调研）一致率，以及每条消息的平均与 P90 延迟
+ * 报告输出到标准输出
+ */
+@EnabledIfEnvironmentVariable(named = "DASHSCOPE_API_KEY", matches = ".+")
+@EnabledIfEnvironmentVariable(named = "TOURISM_INTENT_AB", matches = "true")
+class IntentRoutingAbTest {
+
+    // 需求提取样本：用户输入、期望的目的地、是否应提取到出行时间
+    private static final List<SlotCase> SLOT_CASES = List.of(
+            new SlotCase("帮我规划去京都的3天行程，下周六出发", "京都", true),
+            new SlotCase("帮我安排周末去苏州的两日游", "苏州", true),
+            new SlotCase("我想去大理玩4天，帮我规划每天去哪", "大理", false),
+            new SlotCase("安排行程，去长沙，后天出发", "长沙", true),
+            new SlotCase("给我排一下重庆三天的行程，预算3000", "重庆", false),
+            new SlotCase("下个月去西藏，帮我规划一下每天的行程", "西藏", true),
+            new SlotCase("帮我规划一下行程", null, false),
+            new SlotCase("十月一号带爸妈去桂林，帮我安排五天行程", "桂林", true));
+
+    @Test
+    void compareSeparateAndCombinedRouting() throws Exception {
+        DashScopeChatModel chatModel = DashScopeChatModel.builder()
+                .dashScopeApi(DashScopeApi.builder().apiKey(System.getenv("DASHSCOPE_API_KEY")).build())
+                .build();
+        ChatClient chatClient = ChatClient.create(chatModel);
+        // 关闭本地分类器，两种路由都由模型判断意图
+        LocalIntentClassifier localIntentClassifier = new LocalIntentClassifier(false, 0.9, "", new SimpleMeterRegistry());
+
+        CompiledGraph separate = separateGraph(chatClient, localIntentClassifier);
+        CompiledGraph combined = combinedGraph(chatClient, localIntentClassifier);
+
+        List<Sample> samples = loadSamples();
+        Stats separateStats = new Stats();
+        Stats combinedStats = new Stats();
+        int agreed = 0;
+        int index = 0;
+        for (Sample sample : samples) {
+            Outcome a = run(separate, sample.message(), "ab-separate-" + index);
+            Outcome b = run(combined, sample.message(), "ab-combined-" + index);
+            index++;
+            separateStats.intent(a, sample.planning());
+            combinedStats.intent(b, sample.planning());
+            if (a.route().equals(b.route())) {
+                agreed++;
+            }
+        }
+        for (SlotCase slotCase : SLOT_CASES) {
+            Outcome a = run(separate, slotCase.message(), "ab-separate-" + index);
+            Outcome b = run(combined, slotCase.message(), "ab-combined-" + index);
+            index++;
+            separateStats.slots(a, slotCase);
+            combinedStats.slots(b, slotCase);
+            if (a.route().equals(b.route())) {
+                agreed++;
+            }
+        }
+        double agreement = (double) agreed / (samples.size() + SLOT_CASES.size());
+
+        System.out.println("""
+                === 意图路由 A/B（%d 条意图样本，%d 条需求样本） ===
+                路由       意图准确率  需求准确率  平均延迟(ms)  P90延迟(ms)
+                separate   %.3f       %.3f       %8.0f      %8d
+                combined   %.3f       %.3f       %8.0f      %8d
+                两种路由去向一致率：%.3f
+                """.formatted(samples.size(), SLOT_CASES.size(),
+                separateStats.intentAccuracy(), separateStats.slotAccuracy(), separateStats.meanMillis(), separateStats.p90Millis(),
+                combinedStats.intentAccuracy(), combinedStats.slotAccuracy(), combinedStats.meanMillis(), combinedStats.p90Millis(),
+                agreement));
+
+        assertTrue(combinedStats.intentAccuracy() >= separateStats.intentAccuracy() - 0.05, "合并路由的意图准确率明显下降");
+        assertTrue(combinedStats.slotAccuracy() >= separateStats.slotAccuracy() - 0.05, "合并路由的需求准确率明显下降");
+    }
+
+    /**
+     * 分步路由：intent_router -> circular_information_extractor -> 追问 / 调研（与 TourismGraphService 的 separate 模式相同）
+     */
+    private static CompiledGraph separateGraph(ChatClient chatClient, LocalIntentClassifier localIntentClassifier) throws Exception {
+        StateGraph workflow = terminals(new StateGraph(TourismAppKeyStrategyFactory.createKeyStrategyFactory()))
+                .addNode("intent_router", node_async(new IntentRouterNode(chatClient, localIntentClassifier)))
+                .addNode("circular_information_extractor", node_async(new CircularInformationExtractorNode(chatClient)))
+                .addEdge(START, "intent_router");
+        workflow.addConditionalEdges("intent_router",
+                edge_async(state -> (String) state.value("next_node").orElse("simple_chat")),
+                Map.of(
+                        "simple_chat", "simple_chat",
+                        "circular_information_extractor", "circular_information_extractor"));
+        workflow.addConditionalEdges("circular_information_extractor",
+                edge_async(CircularInformationExtractorNode::route),
+                Map.of(
+                        CircularInformationExtractorNode.HUMAN_FEEDBACK, "human_feedback",
+                        CircularInformationExtractorNode.RESEARCH, "research_agent"));
+        return workflow.compile(CompileConfig.builder().build());
+    }
+
+    /**
+     * 合并路由：intent_router（IntentExtractorNode）直接去闲聊 / 追问 / 调研（与 combined 模式相同）
+     */
+    private static CompiledGraph combinedGraph(ChatClient chatClient, LocalIntentClassifier localIntentClassifier) throws Exception {
+        StateGraph workflow = terminals(new StateGraph(TourismAppKeyStrategyFactory.createKeyStrategyFactory()))
+                .addNode("intent_router", node_async(IntentExtractorNode.router(chatClient, localIntentClassifier, null)))
+                .addEdge(START, "intent_router");
+        workflow.addConditionalEdges("intent_router",
+                edge_async(IntentExtractorNode::route),
+                Map.of(
+                        IntentExtractorNode.SIMPLE_CHAT, "simple_chat",
+                        CircularInformationExtractorNode.HUMAN_FEEDBACK, "human_feedback",
+                        CircularInformationExtractorNode.RESEARCH, "research_agent"));
+        return workflow.compile(CompileConfig.builder().build());
+    }
+
+    /**
+     * 路由去向只记录节点名（写入 finalResponse），不执行真正的闲聊、追问和调研
+     */
+    private static StateGraph terminals(StateGraph workflow) throws Exception {
+        for (String node : List.of("simple_chat", "human_feedback", "research_agent")) {
+            workflow.addNode(node, node_async((state, config) -> Map.of("finalResponse", node)))
+                    .addEdge(node, END);
+        }
+        return workflow;
+    }
+
+    private static Outcome run(CompiledGraph graph, String message, String threadId) {
+        long start = System.nanoTime();
+        OverAllState state = graph.stream(Map.of(
+                        "messages", new UserMessage(message),
+                        "userMessage", message),
+                RunnableConfig.builder().threadId(threadId).build()).blockLast().state();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new Outcome(
+                (String) state.value("finalResponse").orElse(""),
+                state.value("travelRequirements").map(TravelRequirements::from).orElse(null),
+                millis);
+    }
+
+    private static List<Sample> loadSamples() throws IOException {
+        String text = new ClassPathResource("/prompts/intent-training-data.txt").getContentAsString(StandardCharsets.UTF_8);
+        List<Sample> samples = new ArrayList<>();
+        for (String line : text.split("\\R")) {
+            String[] parts = line.split("\t", 2);
+            if (line.startsWith("#") || parts.length != 2) {
+                continue;
+            }
+            samples.add(new Sample(parts[1].trim(), "TRUE".equals(parts[0].trim())));
+        }
+        return samples;
+    }
+
+    private record Sample(String message, boolean planning) {
+    }
+
+    private record SlotCase(String message, String destination, boolean hasDate) {
+    }
+
+    private record Outcome(String route, TravelRequirements requirements, long millis) {
+
+        boolean planning() {
+            return !"simple_chat".equals(route);
+        }
+    }
+
+    private static final class Stats {
+
+        private final List<Long> latencies = new ArrayList<>();
+        private int intentTotal;
+        private int intentCorrect;
+        private int slotTotal;
+        private int slotCorrect;
+
+        void intent(Outcome outcome, boolean expected) {
+            latencies.add(outcome.millis());
+            intentTotal++;
+            if (outcome.planning() == expected) {
+                intentCorrect++;
+            }
+        }
+
+        void slots(Outcome outcome, SlotCase slotCase) {
+            latencies.add(outcome.millis());
+            slotTotal++;
+            TravelRequirements requirements = outcome.requirements();
+            String destination = requirements == null ? null : requirements.destination();
+            boolean destinationCorrect = slotCase.destination() == null
+                    ? destination == null || destination.isBlank()
+                    : destination != null && destination.contains(slotCase.destination());
+            boolean hasDate = requirements != null && requirements.travelDate() != null && !requirements.travelDate().isBlank();
+            if (outcome.planning() && destinationCorrect && hasDate == slotCase.hasDate()) {
+                slotCorrect++;
+            }
+        }
+
+        double intentAccuracy() {
+            return intentTotal == 0 ? 0 : (double) intentCorrect / intentTotal;
+        }
+
+        double slotAccuracy() {
+            return slotTotal == 0 ? 0 : (double) slotCorrect / slotTotal;
+        }
+
+        double meanMillis() {
+            return latencies.stream().mapToLong(Long::longValue).average().orElse(0);
+        }
+
+        long p90Millis() {
+            List<Long> sorted = latencies.stream().sorted().toList();
+            return sorted.isEmpty() ? 0 : sorted.get((int) Math.ceil(sorted.size() * 0.9) - 1);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.learn.aiintelligenttourism.Model.ItineraryResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItineraryStreamParserTest {
+
+    private static final String OUTPUT = """
+            ```json
+            {
+              "title": "东京 \\"樱花\\" 3日游",
+              "days": [
+                {"day": 1, "city": "东京", "activities": ["浅草寺 {雷门}", "晴空塔"], "note": "带伞]"},
+                {"day": 2, "city": "东京", "activities": ["上野公园"], "note": null}
+              ],
+              "totalBudget": 6800.0
+            }
+            ```""";
+
+    @Test
+    void emitsTitleAndEachDayAsSoonAsTheyClose() {
+        ItineraryStreamParser parser = new ItineraryStreamParser();
+        List<Map<String, Object>> events = new ArrayList<>();
+        List<Integer> emittedAt = new ArrayList<>();
+        // 逐字符输入，模拟最细粒度的流式片段
+        for (int i = 0; i < OUTPUT.length(); i++) {
+            for (Map<String, Object> event : parser.feed(String.valueOf(OUTPUT.charAt(i)))) {
+                events.add(event);
+                emittedAt.add(i);
+            }
+        }
+
+        assertEquals(3, events.size());
+        events.forEach(event -> assertEquals(ItineraryStreamParser.CARD_PARTIAL, event.get("type")));
+        assertEquals(Map.of("title", "东京 \"樱花\" 3日游"), events.get(0).get("data"));
+
+        ItineraryResponse.DailyPlan first = (ItineraryResponse.DailyPlan) ((Map<?, ?>) events.get(1).get("data")).get("day");
+        assertEquals(1, first.getDay());
+        assertEquals(List.of("浅草寺 {雷门}", "晴空塔"), first.getActivities());
+        assertEquals("带伞]", first.getNote());
+        // 第一天在第一个对象闭合时产出，不等第二天
+        assertEquals(OUTPUT.indexOf("},"), emittedAt.get(1).intValue());
+
+        ItineraryResponse.DailyPlan second = (ItineraryResponse.DailyPlan) ((Map<?, ?>) events.get(2).get("data")).get("day");
+        assertEquals(2, second.getDay());
+
+        ItineraryResponse result = parser.result();
+        assertEquals("东京 \"樱花\" 3日游", result.getTitle());
+        assertEquals(List.of(first, second), result.getDays());
+        assertEquals(6800.0, result.getTotalBudget());
+    }
+
+    @Test
+    void ignoresNestedTitleKeys() {
+        ItineraryStreamParser parser = new ItineraryStreamParser();
+        List<Map<String, Object>> events = parser.feed(
+                "{\"days\": [{\"day\": 1, \"city\": \"大阪\", \"activities\": [], \"note\": \"title\"}], \"title\": \"大阪\"}");
+
+        assertEquals(2, events.size());
+        assertTrue(((Map<?, ?>) events.get(0).get("data")).containsKey("day"));
+        assertEquals(Map.of("title", "大阪"), events.get(1).get("data"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.learn.aiintelligenttourism.agent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class LocalIntentClassifierTest {
+
+    // 不在内置训练样本中的同类表述
+    private static final List<String> HELD_OUT_PLANNING = List.of(
+            "帮我规划去大阪4天的行程",
+            "帮我安排一个西安三日游",
+            "给我做一份北京两天的行程单",
+            "帮我规划一下去厦门的五日游",
+            "帮我制定一个成都四日游计划");
+    private static final List<String> HELD_OUT_CHAT = List.of(
+            "大阪明天天气怎么样",
+            "欧元兑人民币汇率是多少",
+            "去泰国需要签证吗",
+            "杭州有什么好吃的");
+    // 只有地名或关键词，意图不明确
+    private static final List<String> AMBIGUOUS = List.of("行程", "西安", "旅游攻略");
+
+    private final LocalIntentClassifier classifier = new LocalIntentClassifier(true, 0.9, "", new SimpleMeterRegistry());
+
+    LocalIntentClassifierTest() {
+        classifier.init();
+    }
+
+    @Test
+    void classifiesHeldOutMessagesAboveThreshold() throws IOException {
+        String trainingData = new ClassPathResource("/prompts/intent-training-data.txt").getContentAsString(StandardCharsets.UTF_8)
+                + new ClassPathResource("/prompts/system-message-intention-judgment.st").getContentAsString(StandardCharsets.UTF_8);
+        for (String message : HELD_OUT_PLANNING) {
+            assertFalse(trainingData.contains(message), message);
+            assertEquals(Optional.of(true), classifier.classify(message), message);
+        }
+        for (String message : HELD_OUT_CHAT) {
+            assertFalse(trainingData.contains(message), message);
+            assertEquals(Optional.of(false), classifier.classify(message), message);
+        }
+    }
+
+    @Test
+    void returnsEmptyBelowThreshold() {
+        for (String message : AMBIGUOUS) {
+            assertEquals(Optional.empty(), classifier.classify(message), message);
+        }
+        assertEquals(Optional.empty(), classifier.classify(" "));
+    }
+
+    @Test
+    void disabledClassifierAlwaysDefersToModel() {
+        LocalIntentClassifier disabled = new LocalIntentClassifier(false, 0.9, "", new SimpleMeterRegistry());
+        disabled.init();
+        assertEquals(Optional.empty(), disabled.classify(HELD_OUT_PLANNING.get(0)));
+    }
+}
@@ -0,0 +1,121 @@
+package com.learn.aiintelligenttourism.agent;
+
+import com.alibaba.cloud.ai.graph.CompileConfig;
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.NodeOutput;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.StateGraph;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.alibaba.cloud.ai.graph.StateGraph.END;
+import static com.alibaba.cloud.ai.graph.StateGraph.START;
+import static com.alibaba.cloud.ai.graph.action.AsyncNodeActionWithConfig.node_async;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 调研分支并行执行：总耗时约等于最慢的分支，超时的分支降级为未检索到数据，不影响其他分支
+ */
+class ResearchFanoutTest {
+
+    private static final Duration BRANCH_TIMEOUT = Duration.ofMillis(300);
+
+    @Test
+    void branchesRunConcurrentlyAndTimeoutDegrades() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SlowResearcher researcher = new SlowResearcher();
+        long start = System.nanoTime();
+        OverAllState state = run(researcher, "东京", meterRegistry);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        String searchResults = (String) state.value("searchResults").orElseThrow();
+        assertTrue(searchResults.contains("东京晴"), searchResults);
+        assertTrue(searchResults.contains("东京攻略"), searchResults);
+        assertTrue(searchResults.contains("东京入境"), searchResults);
+        // 汇率分支超时，降级为未检索到数据
+        assertTrue(searchResults.contains("【汇率数据】：\n" + DirectResearcher.NO_DATA), searchResults);
+        // 三个 200ms 的分支与一个 300ms 超时并行，串行执行至少需要 900ms
+        assertTrue(elapsedMillis < 800, "调研分支未并行执行，耗时 " + elapsedMillis + " ms");
+
+        Map<?, ?> timings = (Map<?, ?>) state.value("researchTimings").orElseThrow();
+        assertEquals(ResearchBranch.values().length, timings.size());
+        assertEquals(1, meterRegistry.find("tourism.research.branch")
+                .tags("branch", ResearchBranch.CURRENCY.node(), "outcome", "timeout").timers().size());
+        // 超时只作用于分支自己的 future，共享的预取查询不被改写
+        assertFalse(researcher.currency.isDone());
+    }
+
+    @Test
+    void notApplicableBranchIsSkippedNotTimedOut() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OverAllState state = run(new SlowResearcher(), "长沙", meterRegistry);
+
+        String searchResults = (String) state.value("searchResults").orElseThrow();
+        assertFalse(searchResults.contains("【汇率数据】"), searchResults);
+        for (ResearchBranch branch : new ResearchBranch[]{ResearchBranch.ENTRY_POLICY, ResearchBranch.CURRENCY}) {
+            assertEquals(1, meterRegistry.find("tourism.research.branch")
+                    .tags("branch", branch.node(), "outcome", "skipped").timers().size());
+            assertEquals(0, meterRegistry.find("tourism.research.branch")
+                    .tags("branch", branch.node(), "outcome", "timeout").timers().size());
+        }
+    }
+
+    private static OverAllState run(DirectResearcher researcher, String destination, SimpleMeterRegistry meterRegistry)
+            throws Exception {
+        ResearchPrefetcher prefetcher = new ResearchPrefetcher(researcher, meterRegistry,
+                ResearchNode.MODE_FANOUT, true, Duration.ofMinutes(10), 100);
+
+        StateGraph workflow = new StateGraph(TourismAppKeyStrategyFactory.createKeyStrategyFactory())
+                .addNode("research_fanout", new ResearchFanoutNode(prefetcher))
+                .addNode("research_join", node_async(new ResearchJoinNode(prefetcher, meterRegistry)))
+                .addEdge(START, "research_fanout")
+                .addEdge("research_join", END);
+        for (ResearchBranch branch : ResearchBranch.values()) {
+            workflow.addNode(branch.node(), new ResearchBranchNode(branch, BRANCH_TIMEOUT, prefetcher, meterRegistry))
+                    .addEdge("research_fanout", branch.node())
+                    .addEdge(branch.node(), "research_join");
+        }
+        CompiledGraph graph = workflow.compile(CompileConfig.builder().build());
+
+        NodeOutput last = graph.stream(
+                Map.of("travelRequirements", new TravelRequirements(destination, "2026-01-02", null, null)),
+                RunnableConfig.builder().threadId("t1").build()).blockLast();
+        return last.state();
+    }
+
+    /**
+     * 每项查询 200ms 后完成，汇率查询永不完成；长沙（国内）的入境政策和汇率无需查询（立即返回 null）
+     */
+    private static class SlowResearcher extends DirectResearcher {
+
+        private final CompletableFuture<String> currency = new CompletableFuture<>();
+
+        SlowResearcher() {
+            super(null, null, null, null, Duration.ofSeconds(1));
+        }
+
+        @Override
+        public Lookups start(String destination) {
+            if ("长沙".equals(destination)) {
+                return new Lookups(destination, delayed(destination + "晴"), delayed(destination + "攻略"),
+                        CompletableFuture.completedFuture(null), CompletableFuture.completedFuture(null));
+            }
+            return new Lookups(destination, delayed(destination + "晴"), delayed(destination + "攻略"),
+                    delayed(destination + "入境"), currency);
+        }
+
+        private static CompletableFuture<String> delayed(String value) {
+            return CompletableFuture.supplyAsync(() -> value,
+                    CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+        }
+    }
+}
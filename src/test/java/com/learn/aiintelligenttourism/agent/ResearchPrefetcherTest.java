@@ -0,0 +1,65 @@
+package com.learn.aiintelligenttourism.agent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResearchPrefetcherTest {
+
+    private final CountingResearcher researcher = new CountingResearcher();
+    private final ResearchPrefetcher prefetcher = new ResearchPrefetcher(researcher, new SimpleMeterRegistry(),
+            ResearchNode.MODE_DIRECT, true, Duration.ofMinutes(10), 100);
+
+    @Test
+    void reusesPrefetchForSameDestination() {
+        prefetcher.prefetch("t1", "京都");
+        prefetcher.prefetch("t1", "京都 ");
+
+        assertEquals(1, researcher.started.get());
+        assertEquals("京都", prefetcher.take("t1", "京都").orElseThrow().destination());
+        // 取用后移除
+        assertTrue(prefetcher.take("t1", "京都").isEmpty());
+    }
+
+    @Test
+    void ignoresPrefetchForChangedDestination() {
+        prefetcher.prefetch("t1", "京都");
+        prefetcher.prefetch("t1", "大阪");
+
+        assertEquals(2, researcher.started.get());
+        assertTrue(prefetcher.take("t1", "京都").isEmpty());
+    }
+
+    @Test
+    void doesNothingInAgentMode() {
+        ResearchPrefetcher agentMode = new ResearchPrefetcher(researcher, new SimpleMeterRegistry(),
+                ResearchNode.MODE_AGENT, true, Duration.ofMinutes(10), 100);
+        agentMode.prefetch("t1", "京都");
+
+        assertEquals(0, researcher.started.get());
+        assertTrue(agentMode.take("t1", "京都").isEmpty());
+    }
+
+    private static class CountingResearcher extends DirectResearcher {
+
+        private final AtomicInteger started = new AtomicInteger();
+
+        CountingResearcher() {
+            super(null, null, null, null, Duration.ofSeconds(1));
+        }
+
+        @Override
+        public Lookups start(String destination) {
+            started.incrementAndGet();
+            CompletableFuture<String> done = CompletableFuture.completedFuture(destination);
+            CompletableFuture<String> notApplicable = CompletableFuture.completedFuture(null);
+            return new Lookups(destination, done, done, notApplicable, notApplicable);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.learn.aiintelligenttourism.agent;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.StateGraph;
+import com.alibaba.cloud.ai.graph.checkpoint.Checkpoint;
+import com.learn.aiintelligenttourism.Model.ItineraryResponse;
+import com.learn.aiintelligenttourism.Model.TravelRequirements;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TieredCheckpointSaverTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock();
+    private FileSystemCheckpointStore coldStore;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StateGraph graph = new StateGraph(TourismAppKeyStrategyFactory.createKeyStrategyFactory());
+        coldStore = new FileSystemCheckpointStore(directory, graph.getStateSerializer());
+    }
+
+    @Test
+    void keepsOnlyLatestCheckpointPerThread() throws Exception {
+        TieredCheckpointSaver saver = new TieredCheckpointSaver(10, Duration.ofHours(1), coldStore, meterRegistry, clock);
+        RunnableConfig config = config("t1");
+
+        saver.put(config, checkpoint("first"));
+        saver.put(config, checkpoint("second"));
+
+        assertEquals(1, saver.list(config).size());
+        assertEquals("second", saver.get(config).orElseThrow().getState().get("userMessage"));
+    }
+
+    @Test
+    void evictedThreadIsReloadedFromColdTier() throws Exception {
+        TieredCheckpointSaver saver = new TieredCheckpointSaver(2, Duration.ofHours(1), coldStore, meterRegistry, clock);
+        saver.put(config("t1"), checkpoint("m1"));
+        saver.put(config("t2"), checkpoint("m2"));
+        saver.put(config("t3"), checkpoint("m3"));
+
+        assertEquals(1.0, meterRegistry.counter("tourism.graph.checkpoint.evictions", "reason", "size").count());
+        assertEquals("m1", saver.get(config("t1")).orElseThrow().getState().get("userMessage"));
+        assertEquals(1.0, meterRegistry.counter("tourism.graph.checkpoint.requests", "tier", "cold").count());
+    }
+
+    @Test
+    void idleThreadExpiresFromHotTier() throws Exception {
+        TieredCheckpointSaver saver = new TieredCheckpointSaver(10, Duration.ofMinutes(30), null, meterRegistry, clock);
+        saver.put(config("t1"), checkpoint("m1"));
+
+        clock.advance(Duration.ofMinutes(31));
+
+        assertTrue(saver.get(config("t1")).isEmpty());
+        assertEquals(1.0, meterRegistry.counter("tourism.graph.checkpoint.evictions", "reason", "expired").count());
+    }
+
+    @Test
+    void checkpointSurvivesRestart() throws Exception {
+        TieredCheckpointSaver saver = new TieredCheckpointSaver(10, Duration.ofHours(1), coldStore, meterRegistry, clock);
+        Checkpoint checkpoint = checkpoint("待补充出行时间");
+        saver.put(config("t1"), checkpoint);
+
+        TieredCheckpointSaver restarted = new TieredCheckpointSaver(10, Duration.ofHours(1), coldStore, new SimpleMeterRegistry(), clock);
+        Optional<Checkpoint> loaded = restarted.get(config("t1"));
+
+        assertTrue(loaded.isPresent());
+        assertEquals(checkpoint.getId(), loaded.get().getId());
+        assertEquals("circular_information_extractor", loaded.get().getNextNodeId());
+        assertEquals("待补充出行时间", loaded.get().getState().get("userMessage"));
+    }
+
+    @Test
+    void graphStateRoundTripsThroughColdTier() throws Exception {
+        TieredCheckpointSaver saver = new TieredCheckpointSaver(10, Duration.ofHours(1), coldStore, meterRegistry, clock);
+        TravelRequirements requirements = new TravelRequirements("京都", "2026-04-01", "8000", "赏樱");
+        ItineraryResponse itinerary = new ItineraryResponse("京都 3 日赏樱", List.of(
+                new ItineraryResponse.DailyPlan(1, "京都", List.of("清水寺", "二年坂"), "早去避开人流"),
+                new ItineraryResponse.DailyPlan(2, "京都", List.of("岚山", "嵯峨野小火车"), null)), 7600.0);
+        Checkpoint checkpoint = Checkpoint.builder()
+                .state(Map.of(
+                        "messages", List.of(new UserMessage("4 月初去京都看樱花"), new AssistantMessage("预算大概多少？")),
+                        "travelRequirements", requirements,
+                        "itinerary", itinerary,
+                        "userMessage", "4 月初去京都看樱花"))
+                .nodeId("plan_generator")
+                .nextNodeId("__END__")
+                .build();
+        saver.put(config("t1"), checkpoint);
+
+        // 新实例的热层为空，只能从冷层读取
+        Map<String, Object> state = new TieredCheckpointSaver(10, Duration.ofHours(1), coldStore, new SimpleMeterRegistry(), clock)
+                .get(config("t1")).orElseThrow().getState();
+
+        List<?> messages = (List<?>) state.get("messages");
+        assertEquals(2, messages.size());
+        Message user = (Message) messages.get(0);
+        Message assistant = (Message) messages.get(1);
+        assertEquals(MessageType.USER, user.getMessageType());
+        assertEquals("4 月初去京都看樱花", user.getText());
+        assertEquals(MessageType.ASSISTANT, assistant.getMessageType());
+        assertEquals("预算大概多少？", assistant.getText());
+        assertEquals(requirements, TravelRequirements.from(state.get("travelRequirements")));
+        assertEquals(itinerary, BeanUtil.toBean(state.get("itinerary"), ItineraryResponse.class));
+    }
+
+    @Test
+    void coldTierFailureDoesNotFailPut() throws Exception {
+        CheckpointStore failing = new CheckpointStore() {
+            @Override
+            public Optional<Checkpoint> load(String threadId) {
+                return Optional.empty();
+            }
+
+            @Override
+            public void save(String threadId, Checkpoint checkpoint) throws IOException {
+                throw new IOException("磁盘已满");
+            }
+
+            @Override
+            public boolean delete(String threadId) {
+                return false;
+            }
+
+            @Override
+            public int deleteOlderThan(Instant cutoff) {
+                return 0;
+            }
+        };
+        TieredCheckpointSaver saver = new TieredCheckpointSaver(10, Duration.ofHours(1), failing, meterRegistry, clock);
+
+        saver.put(config("t1"), checkpoint("m1"));
+
+        assertEquals("m1", saver.get(config("t1")).orElseThrow().getState().get("userMessage"));
+        assertEquals(1.0, meterRegistry.counter("tourism.graph.checkpoint.cold.failures").count());
+    }
+
+    @Test
+    void clearRemovesBothTiers() throws Exception {
+        TieredCheckpointSaver saver = new TieredCheckpointSaver(10, Duration.ofHours(1), coldStore, meterRegistry, clock);
+        saver.put(config("t1"), checkpoint("m1"));
+
+        assertTrue(saver.clear(config("t1")));
+        assertTrue(saver.get(config("t1")).isEmpty());
+        assertFalse(coldStore.load("t1").isPresent());
+    }
+
+    @Test
+    void coldTierDropsThreadsPastRetention() throws Exception {
+        TieredCheckpointSaver saver = new TieredCheckpointSaver(10, Duration.ofHours(1), coldStore, meterRegistry, clock);
+        saver.put(config("stale"), checkpoint("m1"));
+        List<Path> staleFiles = files();
+        for (Path file : staleFiles) {
+            Files.setLastModifiedTime(file, FileTime.from(clock.instant().minus(Duration.ofDays(8))));
+        }
+        saver.put(config("fresh"), checkpoint("m2"));
+        for (Path file : files()) {
+            if (!staleFiles.contains(file)) {
+                Files.setLastModifiedTime(file, FileTime.from(clock.instant().minus(Duration.ofDays(1))));
+            }
+        }
+
+        assertEquals(1, saver.sweepCold(Duration.ofDays(7)));
+        assertFalse(coldStore.load("stale").isPresent());
+        assertTrue(coldStore.load("fresh").isPresent());
+        assertEquals(1.0, meterRegistry.counter("tourism.graph.checkpoint.cold.expired").count());
+    }
+
+    @Test
+    void longThreadIdUsesFixedLengthFileName() throws Exception {
+        String threadId = "会话".repeat(200);
+        coldStore.save(threadId, checkpoint("m1"));
+
+        assertEquals("m1", coldStore.load(threadId).orElseThrow().getState().get("userMessage"));
+        assertEquals(64 + ".checkpoint".length(), files().get(0).getFileName().toString().length());
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    private static RunnableConfig config(String threadId) {
+        return RunnableConfig.builder().threadId(threadId).build();
+    }
+
+    private static Checkpoint checkpoint(String userMessage) {
+        return Checkpoint.builder()
+                .state(Map.of("userMessage", userMessage, "intent", "PLAN"))
+                .nodeId("intent_router")
+                .nextNodeId("circular_information_extractor")
+                .build();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.learn.aiintelligenttourism.app;
+
+import com.learn.aiintelligenttourism.RAG.KnowledgeBaseChangedEvent;
+import com.learn.aiintelligenttourism.RAG.LocationFilterResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SemanticAnswerCacheTest {
+
+    // 措辞不同的同一问题向量相近，不同问题向量正交
+    private static final Map<String, float[]> VECTORS = Map.of(
+            "京都岚山怎么去", new float[]{1, 0, 0},
+            "怎么去京都的岚山", new float[]{0.98f, 0.2f, 0},
+            "长沙有什么好吃的", new float[]{0, 0, 1},
+            // 只差目的地的问题向量几乎相同
+            "京都有什么好玩的", new float[]{0, 1, 1},
+            "大阪有什么好玩的", new float[]{0, 0.99f, 1});
+
+    private final MutableClock clock = new MutableClock();
+    private final FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+    private final SemanticAnswerCache cache = new SemanticAnswerCache(embeddingModel, locationFilterResolver(),
+            new SimpleMeterRegistry(), true, 0.92, Duration.ofHours(6), 100, List.of("天气", "汇率"), clock);
+
+    @Test
+    void returnsAnswerForParaphrasedQuestion() {
+        cache.put("京都岚山怎么去", "坐 JR 嵯峨野线到嵯峨岚山站", List.of(source("kyoto.md", "日本", "京都")));
+
+        assertEquals(Optional.of("坐 JR 嵯峨野线到嵯峨岚山站"), cache.get("怎么去京都的岚山"));
+        assertTrue(cache.get("长沙有什么好吃的").isEmpty());
+    }
+
+    @Test
+    void requiresSamePlacesInQuestion() {
+        cache.put("京都有什么好玩的", "清水寺、伏见稻荷大社", List.of(source("kyoto.md", "日本", "京都")));
+
+        assertTrue(cache.get("大阪有什么好玩的").isEmpty());
+        assertEquals(Optional.of("清水寺、伏见稻荷大社"), cache.get("京都有什么好玩的"));
+    }
+
+    @Test
+    void reusesLookupEmbeddingOnPut() {
+        SemanticAnswerCache.Lookup lookup = cache.lookup("京都岚山怎么去");
+        assertTrue(lookup.answer().isEmpty());
+
+        cache.put(lookup, "坐 JR 嵯峨野线到嵯峨岚山站", List.of(source("kyoto.md", "日本", "京都")));
+
+        assertEquals(1, embeddingModel.calls.get());
+        assertEquals(Optional.of("坐 JR 嵯峨野线到嵯峨岚山站"), cache.lookup("怎么去京都的岚山").answer());
+    }
+
+    @Test
+    void excludesTimeSensitiveQuestionsAndAnswers() {
+        cache.put("京都岚山天气怎么样", "晴", List.of());
+        cache.put("京都岚山怎么去", "今天 25℃，坐 JR", List.of());
+
+        assertEquals(0, cache.size());
+        assertTrue(cache.get("京都岚山天气怎么样").isEmpty());
+    }
+
+    @Test
+    void expiresAfterTtl() {
+        cache.put("京都岚山怎么去", "坐 JR", List.of(source("kyoto.md", "日本", "京都")));
+        clock.advance(Duration.ofHours(7));
+
+        assertTrue(cache.get("京都岚山怎么去").isEmpty());
+    }
+
+    @Test
+    void invalidatesOnlyAnswersAffectedByChangedDocuments() {
+        cache.put("京都岚山怎么去", "坐 JR", List.of(source("kyoto.md", "日本", "京都")));
+        cache.put("长沙有什么好吃的", "臭豆腐", List.of(source("changsha.md", "中国", "长沙")));
+
+        // 新增日本国家级文档：京都的回答失效，长沙的保留
+        cache.onKnowledgeBaseChanged(new KnowledgeBaseChangedEvent(List.of(source("japan.md", "日本", "*")), true));
+
+        assertTrue(cache.get("京都岚山怎么去").isEmpty());
+        assertEquals(Optional.of("臭豆腐"), cache.get("长沙有什么好吃的"));
+
+        cache.onKnowledgeBaseChanged(new KnowledgeBaseChangedEvent(List.of(), false));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void splitsCachedAnswerIntoStreamChunks() {
+        assertEquals(List.of("01234567", "89"), SemanticAnswerCache.chunks("0123456789"));
+    }
+
+    private static Document source(String filename, String country, String city) {
+        return Document.builder()
+                .text(filename)
+                .metadata(Map.of("filename", filename, "country", country, "city", city))
+                .build();
+    }
+
+    private static LocationFilterResolver locationFilterResolver() {
+        LocationFilterResolver resolver = new LocationFilterResolver();
+        resolver.rebuild(List.of(
+                Document.builder().text("kyoto").metadata(Map.of("location", "日本, 京都, 岚山")).build(),
+                Document.builder().text("osaka").metadata(Map.of("location", "日本, 大阪")).build(),
+                Document.builder().text("changsha").metadata(Map.of("location", "中国, 长沙")).build()));
+        return resolver;
+    }
+
+    private static class FakeEmbeddingModel implements EmbeddingModel {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public float[] embed(String text) {
+            calls.incrementAndGet();
+            return VECTORS.getOrDefault(text, new float[]{0, 1, 0}).clone();
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
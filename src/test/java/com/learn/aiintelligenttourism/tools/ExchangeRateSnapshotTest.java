@@ -0,0 +1,60 @@
+package com.learn.aiintelligenttourism.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExchangeRateSnapshotTest {
+
+    private final Instant fetchedAt = Instant.parse("2026-01-01T00:00:00Z");
+    private final ExchangeRateSnapshot snapshot = new ExchangeRateSnapshot(Map.of(
+            "USD", new BigDecimal("0.14"),
+            "JPY", new BigDecimal("21.0")), fetchedAt);
+
+    @Test
+    void directInverseAndCrossRates() {
+        assertEquals(0, new BigDecimal("0.14").compareTo(snapshot.rate("CNY", "USD").orElseThrow()));
+        assertEquals(0, new BigDecimal("7.142857142857143").compareTo(snapshot.rate("usd", "cny").orElseThrow()));
+        assertEquals(0, new BigDecimal("150").compareTo(snapshot.rate("USD", "JPY").orElseThrow()));
+        assertEquals(0, BigDecimal.ONE.compareTo(snapshot.rate("JPY", "JPY").orElseThrow()));
+    }
+
+    @Test
+    void missingCurrencyIsNotAnswered() {
+        assertTrue(snapshot.rate("USD", "EUR").isEmpty());
+        assertTrue(ExchangeRateSnapshot.EMPTY.rate("CNY", "USD").isEmpty());
+    }
+
+    @Test
+    void reportsAge() {
+        assertEquals(Optional.of(Duration.ofMinutes(5)), snapshot.age(fetchedAt.plus(Duration.ofMinutes(5))));
+        assertEquals(Optional.of(Duration.ofMinutes(5)), snapshot.age("CNY", "CNY", fetchedAt.plus(Duration.ofMinutes(5))));
+    }
+
+    @Test
+    void emptySnapshotHasNoRateOrAge() {
+        assertTrue(ExchangeRateSnapshot.EMPTY.rate("CNY", "CNY").isEmpty());
+        assertTrue(ExchangeRateSnapshot.EMPTY.fetchedAt("CNY", "CNY").isEmpty());
+        assertTrue(ExchangeRateSnapshot.EMPTY.age(fetchedAt).isEmpty());
+    }
+
+    @Test
+    void parsesPairFromApiResponse() {
+        String body = """
+                {"reason":"查询成功!","result":[
+                  {"currencyF":"CNY","currencyF_Name":"人民币","currencyT":"USD","currencyT_Name":"美元","currencyFD":"1","exchange":"0.1401","result":"0.1401","updateTime":"2026-01-01 10:00:00"},
+                  {"currencyF":"USD","currencyF_Name":"美元","currencyT":"CNY","currencyT_Name":"人民币","currencyFD":"1","exchange":"7.1378","result":"7.1378","updateTime":"2026-01-01 10:00:00"}
+                ],"error_code":0}
+                """;
+
+        assertEquals(Optional.of(new BigDecimal("0.1401")), JuheExchangeRateTool.parseRate(body, "CNY", "USD"));
+        assertTrue(JuheExchangeRateTool.parseRate("{\"reason\":\"超过每日可允许请求次数!\",\"result\":null,\"error_code\":10012}", "CNY", "USD").isEmpty());
+    }
+}
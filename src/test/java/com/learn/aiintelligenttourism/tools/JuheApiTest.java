@@ -0,0 +1,146 @@
+package com.learn.aiintelligenttourism.tools;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用本地桩服务验证 JuheApi 的超时、按 host 限流；吞吐测量为可选的基准测试
+ */
+class JuheApiTest {
+
+    private static final int SERVICE_MILLIS = 20;
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/simpleWeather/query", exchange -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(SERVICE_MILLIS);
+                byte[] body = ("{\"error_code\":0,\"result\":{\"city\":\"" + exchange.getRequestURI().getQuery() + "\"}}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2_000);
+                exchange.sendResponseHeaders(200, -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.createContext("/error", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void returnsBodyWithEncodedParams() throws IOException {
+        JuheApi juheApi = new JuheApi(Duration.ofSeconds(1), Duration.ofSeconds(2), 4);
+
+        String body = juheApi.get(baseUrl + "/simpleWeather/query", Map.of("city", "北京"));
+
+        assertTrue(body.contains("city=%E5%8C%97%E4%BA%AC"), body);
+    }
+
+    @Test
+    void slowEndpointTimesOut() {
+        JuheApi juheApi = new JuheApi(Duration.ofSeconds(1), Duration.ofMillis(200), 4);
+
+        IOException e = assertThrows(IOException.class, () -> juheApi.get(baseUrl + "/slow", Map.of()));
+        assertInstanceOf(HttpTimeoutException.class, e);
+    }
+
+    @Test
+    void non2xxResponseFails() {
+        JuheApi juheApi = new JuheApi(Duration.ofSeconds(1), Duration.ofSeconds(2), 4);
+
+        IOException e = assertThrows(IOException.class, () -> juheApi.get(baseUrl + "/error", Map.of()));
+        assertTrue(e.getMessage().contains("503"), e.getMessage());
+    }
+
+    @Test
+    void concurrencyPerHostIsBounded() {
+        int limit = 4;
+        int requests = 200;
+        JuheApi juheApi = new JuheApi(Duration.ofSeconds(1), Duration.ofSeconds(10), limit);
+
+        List<CompletableFuture<String>> futures = sendAll(juheApi, requests);
+
+        assertEquals(requests, futures.stream().filter(f -> f.join().contains("error_code")).count());
+        assertTrue(maxInFlight.get() <= limit, "max in flight: " + maxInFlight.get());
+    }
+
+    /**
+     * 吞吐测量，只在设置了 TOURISM_BENCHMARK=true 时运行，结果输出到标准输出
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "TOURISM_BENCHMARK", matches = "true")
+    void throughputBenchmark() {
+        int limit = 4;
+        int requests = 200;
+        JuheApi juheApi = new JuheApi(Duration.ofSeconds(1), Duration.ofSeconds(10), limit);
+
+        long start = System.nanoTime();
+        sendAll(juheApi, requests);
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        System.out.printf("JuheApi benchmark: %d requests, limit %d, %d ms, %.1f req/s (stub latency %d ms)%n",
+                requests, limit, elapsedMillis, requests * 1000.0 / Math.max(elapsedMillis, 1), SERVICE_MILLIS);
+    }
+
+    private List<CompletableFuture<String>> sendAll(JuheApi juheApi, int requests) {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(juheApi.getAsync(baseUrl + "/simpleWeather/query", Map.of("city", "city" + i)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        return futures;
+    }
+}
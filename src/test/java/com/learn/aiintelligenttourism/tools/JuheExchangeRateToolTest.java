@@ -0,0 +1,129 @@
+package com.learn.aiintelligenttourism.tools;
+
+import cn.hutool.json.JSONUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JuheExchangeRateToolTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final StubJuheApi juheApi = new StubJuheApi();
+    private final JuheExchangeRateTool tool = new JuheExchangeRateTool("key", juheApi, new SimpleMeterRegistry(),
+            List.of("USD", "JPY"), Duration.ofMinutes(30), Duration.ofHours(2), clock);
+
+    @Test
+    void partialRefreshKeepsFetchTimeOfFailedCurrency() {
+        Instant first = clock.instant();
+        tool.refreshSnapshot();
+
+        clock.advance(Duration.ofMinutes(30));
+        Instant second = clock.instant();
+        juheApi.failing.add("JPY");
+        tool.refreshSnapshot();
+
+        clock.advance(Duration.ofMinutes(1));
+        // USD 已刷新，JPY 沿用旧值和旧的拉取时间；交叉汇率以较旧的一个为准
+        assertEquals(second.toString(), updateTime("CNY", "USD"));
+        assertEquals(first.toString(), updateTime("CNY", "JPY"));
+        assertEquals(first.toString(), updateTime("USD", "JPY"));
+        assertEquals(Optional.of(Duration.ofMinutes(31)), tool.snapshotAge());
+    }
+
+    @Test
+    void staleSnapshotFallsBackToLiveQuery() {
+        tool.refreshSnapshot();
+        assertEquals("0.14", JSONUtil.parseObj(tool.getExchangeRate("CNY", "USD")).getStr("exchange"));
+
+        // 刷新持续失败，超过 max-age 后不再使用快照
+        juheApi.failing.addAll(List.of("USD", "JPY"));
+        clock.advance(Duration.ofHours(2).plusMinutes(1));
+        tool.refreshSnapshot();
+        assertEquals(StubJuheApi.LIVE, tool.getExchangeRate("CNY", "USD"));
+        assertEquals(List.of("USD"), juheApi.liveQueries);
+    }
+
+    @Test
+    void emptySnapshotIsNotUsed() {
+        assertEquals(Optional.empty(), tool.snapshotAge());
+        // 尚未拉取成功时 CNY -> CNY 也实时查询，不报告 1970 年的拉取时间
+        assertEquals(StubJuheApi.LIVE, tool.getExchangeRate("CNY", "CNY"));
+        assertEquals(List.of("CNY"), juheApi.liveQueries);
+    }
+
+    private String updateTime(String from, String to) {
+        return JSONUtil.parseObj(tool.getExchangeRate(from, to)).getStr("updateTime");
+    }
+
+    /**
+     * 按 to 参数返回固定汇率，failing 中的币种请求失败；同步实时查询返回 LIVE 并记录币种
+     */
+    private static class StubJuheApi extends JuheApi {
+
+        private static final String LIVE = "{\"result\":\"live\",\"error_code\":0}";
+
+        private final Set<String> failing = ConcurrentHashMap.newKeySet();
+        private final List<String> liveQueries = new CopyOnWriteArrayList<>();
+
+        StubJuheApi() {
+            super(Duration.ofSeconds(1), Duration.ofSeconds(1), 1);
+        }
+
+        @Override
+        public String get(String apiUrl, Map<String, String> map) {
+            liveQueries.add(map.get("to"));
+            return LIVE;
+        }
+
+        @Override
+        public CompletableFuture<String> getAsync(String apiUrl, Map<String, String> map) {
+            String to = map.get("to");
+            if (failing.contains(to)) {
+                return CompletableFuture.failedFuture(new IOException("HTTP 503: " + apiUrl));
+            }
+            String exchange = "USD".equals(to) ? "0.14" : "21.0";
+            return CompletableFuture.completedFuture("""
+                    {"result":[{"currencyF":"CNY","currencyT":"%s","exchange":"%s"}],"error_code":0}
+                    """.formatted(to, exchange));
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.learn.aiintelligenttourism.tools;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JuheWeatherToolTest {
+
+    private final FakeTicker ticker = new FakeTicker();
+    private final StubJuheApi juheApi = new StubJuheApi();
+    private final JuheWeatherTool tool = new JuheWeatherTool("key", juheApi, new SimpleMeterRegistry(),
+            Duration.ofMinutes(30), Duration.ofMinutes(10), 100, ticker);
+
+    @Test
+    void normalizesCityBeforeCaching() {
+        assertEquals("北京", JuheWeatherTool.normalizeCity(" 北京市 "));
+        assertEquals("tokyo", JuheWeatherTool.normalizeCity("Tokyo"));
+        assertEquals("市", JuheWeatherTool.normalizeCity("市"));
+
+        juheApi.body = success("晴");
+        tool.getWeather("北京市");
+        tool.getWeather(" 北京 ");
+        tool.getWeatherAsync("北京").join();
+        // 三种写法命中同一条缓存，请求参数为规范化后的城市名
+        assertEquals(List.of("北京"), juheApi.cities);
+    }
+
+    @Test
+    void servesStaleValueAndRefreshesAfterWrite() throws InterruptedException {
+        juheApi.body = success("晴");
+        assertEquals(success("晴"), tool.getWeather("上海"));
+
+        juheApi.body = success("小雨");
+        ticker.advance(Duration.ofMinutes(5));
+        assertEquals(success("晴"), tool.getWeather("上海"));
+        assertEquals(1, juheApi.cities.size());
+
+        // 超过 refresh-after-write：先返回旧值，后台刷新
+        ticker.advance(Duration.ofMinutes(6));
+        assertEquals(success("晴"), tool.getWeather("上海"));
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!success("小雨").equals(tool.getWeather("上海")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(success("小雨"), tool.getWeather("上海"));
+        assertEquals(2, juheApi.cities.size());
+    }
+
+    @Test
+    void doesNotCacheErrorResponses() {
+        String error = "{\"reason\":\"暂不支持该城市\",\"result\":null,\"error_code\":207301}";
+        juheApi.body = error;
+        // 业务错误原样返回，且不缓存
+        assertEquals(error, tool.getWeather("火星"));
+        assertEquals(error, tool.getWeatherAsync("火星").join());
+        assertEquals(2, juheApi.cities.size());
+
+        juheApi.body = null;
+        assertTrue(tool.getWeather("火星").contains("查询天气失败"));
+        assertEquals(3, juheApi.cities.size());
+
+        juheApi.body = success("晴");
+        assertEquals(success("晴"), tool.getWeather("火星"));
+        assertEquals(success("晴"), tool.getWeather("火星"));
+        assertEquals(4, juheApi.cities.size());
+    }
+
+    private static String success(String info) {
+        return "{\"reason\":\"查询成功!\",\"result\":{\"realtime\":{\"info\":\"" + info + "\"}},\"error_code\":0}";
+    }
+
+    /**
+     * 返回 body 作为响应，body 为 null 时请求失败；记录每次请求的城市
+     */
+    private static class StubJuheApi extends JuheApi {
+
+        private final List<String> cities = new CopyOnWriteArrayList<>();
+        private volatile String body;
+
+        StubJuheApi() {
+            super(Duration.ofSeconds(1), Duration.ofSeconds(1), 1);
+        }
+
+        @Override
+        public CompletableFuture<String> getAsync(String apiUrl, Map<String, String> map) {
+            cities.add(map.get("city"));
+            String response = body;
+            return response == null
+                    ? CompletableFuture.failedFuture(new IOException("HTTP 503: " + apiUrl))
+                    : CompletableFuture.completedFuture(response);
+        }
+    }
+
+    private static class FakeTicker implements Ticker {
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        void advance(Duration duration) {
+            nanos.addAndGet(duration.toNanos());
+        }
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    }
+}
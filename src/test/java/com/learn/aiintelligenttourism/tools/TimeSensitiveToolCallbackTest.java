@@ -0,0 +1,53 @@
+package com.learn.aiintelligenttourism.tools;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSensitiveToolCallbackTest {
+
+    private final ToolCallback weather = new ToolCallback() {
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return ToolDefinition.builder().name("getWeather").description("weather").inputSchema("{}").build();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return "晴 25℃";
+        }
+
+        // 与 MethodToolCallback 一样接受非空的 ToolContext
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            return call(toolInput);
+        }
+    };
+
+    @Test
+    void marksRequestContextWhenInvoked() {
+        Map<String, Object> context = TimeSensitiveToolCallback.newContext();
+        ToolCallback callback = TimeSensitiveToolCallback.wrap(weather)[0];
+
+        assertFalse(TimeSensitiveToolCallback.invoked(context));
+        assertEquals("晴 25℃", callback.call("{\"city\":\"长沙\"}", new ToolContext(context)));
+        assertTrue(TimeSensitiveToolCallback.invoked(context));
+        assertEquals("getWeather", callback.getToolDefinition().name());
+    }
+
+    @Test
+    void callsWithoutContextStillWork() {
+        ToolCallback callback = new TimeSensitiveToolCallback(weather);
+
+        assertEquals("晴 25℃", callback.call("{}"));
+        assertEquals("晴 25℃", callback.call("{}", null));
+        assertEquals("晴 25℃", callback.call("{}", new ToolContext(Map.of())));
+    }
+}